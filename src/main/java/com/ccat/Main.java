@@ -1,14 +1,30 @@
 package com.ccat;
 
+import com.ccat.core.CameraController;
 import com.ccat.core.WindowManager;
+import com.ccat.core.challenge.CdlodTerrainChallenge;
+import com.ccat.core.challenge.TerrainChallenge;
+import com.ccat.core.challenge.TextureStressChallenge;
 import com.ccat.core.challenge.TexturedCubes;
 import com.ccat.core.challenge.TexturedPlane;
+import com.ccat.core.culling.HiZPyramid;
 import com.ccat.core.listener.KeyListener;
+import com.ccat.core.renderer.GLLoaderThread;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.SamplerCache;
+import com.ccat.core.renderer.ShaderLibrary;
+import com.ccat.core.renderer.TextureBakeCache;
+import com.ccat.core.renderer.TextureLoader;
+import com.ccat.core.renderer.TextureManager;
+import com.ccat.core.renderer.TextureStreamer;
+import com.ccat.core.util.FileReaderUtil;
+import org.joml.Vector3f;
 import org.lwjgl.Version;
 import org.lwjgl.glfw.GLFWErrorCallback;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_SRGB;
 
 public class Main {
     private static GLFWErrorCallback errorCallback;
@@ -34,6 +50,8 @@ public class Main {
         //Enable Transparency for Textures
         glEnable(GL_BLEND);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        //sRGB Textures are linearized when sampled - encode the output again
+        if(Boolean.getBoolean("otome.srgb")) glEnable(GL_FRAMEBUFFER_SRGB);
 
         loop();
 
@@ -45,20 +63,70 @@ public class Main {
         float delta;
         float frameStart = 0f;
         float keyDebounce = 0f;
+        long startupStart = System.nanoTime();
 
-//        MovingSquareChallenge challenge = new MovingSquareChallenge(window);
+        //-Dotome.loaderThread=true: texture, terrain and cube buffer uploads run on a hidden shared context instead of the render thread
+        GLLoaderThread loaderThread = null;
+        if(Boolean.getBoolean("otome.loaderThread")) {
+            loaderThread = new GLLoaderThread(window.createSharedContext());
+            TextureStreamer.setLoaderThread(loaderThread);
+        }
+
+        //Shared Camera - written once per frame into the Camera Uniform Block
+        CameraController camera = new CameraController(new Vector3f(0f, 4f, 10f), window.getWidth(), window.getHeight());
+
+//        MovingSquareChallenge challenge = new MovingSquareChallenge();
 //        challenge.initializeQuad();
 
-//        ShaderChallenge shaderChallenge = new ShaderChallenge(window);
+//        ShaderChallenge shaderChallenge = new ShaderChallenge();
 //        shaderChallenge.initNewChallenge();
 
-//        TerrainChallenge terrainChallenge = new TerrainChallenge(window);
-//        terrainChallenge.initNewChallenge();
+        //-Dotome.terrain=GRID|CDLOD: uniform grid or quadtree LOD terrain, the Camera then follows the terrain's orbit
+        //-Dotome.terrainMode=VERTEX_SHADER|CPU|COMPUTE: where the grid terrain computes its heights
+        //-Dotome.terrainIndices=AUTO|TRIANGLES_32|TRIANGLES_16|STRIP_32|STRIP_16: index encoding of the grid terrain
+        String terrainKind = System.getProperty("otome.terrain", "");
+        TerrainChallenge terrainChallenge = null;
+        if(terrainKind.equals("GRID")) {
+            TerrainChallenge.HeightMode heightMode = TerrainChallenge.HeightMode.valueOf(
+                    System.getProperty("otome.terrainMode", TerrainChallenge.HeightMode.VERTEX_SHADER.name()));
+            terrainChallenge = new TerrainChallenge(camera, heightMode, loaderThread);
+            terrainChallenge.initNewChallenge();
+        }
+        CdlodTerrainChallenge lodTerrain = null;
+        if(terrainKind.equals("CDLOD")) {
+            lodTerrain = new CdlodTerrainChallenge(camera);
+            lodTerrain.initNewChallenge();
+        }
+
+//        MeshBatchChallenge meshBatch = new MeshBatchChallenge(5000);
+//        meshBatch.initNewChallenge();
 
-        TexturedPlane texturedPlane = new TexturedPlane(window);
+        TexturedPlane texturedPlane = new TexturedPlane();
         texturedPlane.initNewChallenge();
 
-        TexturedCubes texturedCubes = new TexturedCubes(window, 6);
+        //Scene-size knob: -Dotome.cubes=<grid side> -Dotome.cubeMode=PER_OBJECT|INSTANCED|ATLAS
+        //-Dotome.gpuCulling=true: instanced cubes are culled by a compute pass
+        int cubeGrid = Integer.getInteger("otome.cubes", 6);
+        TexturedCubes.RenderMode cubeMode = TexturedCubes.RenderMode.valueOf(
+                System.getProperty("otome.cubeMode", TexturedCubes.RenderMode.INSTANCED.name()));
+        TexturedCubes texturedCubes = new TexturedCubes(cubeGrid, cubeMode, loaderThread);
+        //-Dotome.occlusion=true: with gpuCulling, cubes hidden in the depth of the last frame are culled too
+        HiZPyramid occluders = null;
+        if(Boolean.getBoolean("otome.occlusion") && Boolean.getBoolean("otome.gpuCulling")) {
+            occluders = new HiZPyramid();
+        }
+
+        //-Dotome.textureStress=<count>: streams that many separate Textures and reports the frame times meanwhile
+        int stressCount = Integer.getInteger("otome.textureStress", 0);
+        TextureStressChallenge textureStress = null;
+        if(stressCount > 0) {
+            textureStress = new TextureStressChallenge(stressCount);
+            textureStress.initNewChallenge();
+        }
+
+        System.out.printf("Startup ## Scenes created in %.2f ms%n", (System.nanoTime() - startupStart) / 1_000_000.0);
+        boolean shadersReported = false;
+        boolean texturesReported = false;
 
         while(!glfwWindowShouldClose(window.getWindow())) {
             delta = (float) glfwGetTime() - frameStart;
@@ -68,23 +136,67 @@ public class Main {
             glClearColor(0.3f, 0.4f, 0.5f, 1);
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
+            //Compile/link Programs in the background, scenes skip drawing until theirs is ready
+            ShaderLibrary.update();
+            if(!shadersReported && ShaderLibrary.isIdle()) {
+                System.out.printf("Startup ## Shaders ready in %.2f ms%n", (System.nanoTime() - startupStart) / 1_000_000.0);
+                ShaderLibrary.printReport();
+                shadersReported = true;
+            }
+
+            //Upload decoded Textures within the per-frame budget, placeholders until then
+            TextureStreamer.update();
+            TextureManager.update();
+            if(!texturesReported && TextureStreamer.isIdle()) {
+                System.out.printf("Startup ## Textures ready in %.2f ms%n", (System.nanoTime() - startupStart) / 1_000_000.0);
+                TextureStreamer.printReport();
+                TextureBakeCache.printReport();
+                TextureManager.printReport();
+                texturesReported = true;
+            }
+
+            //The terrains steer their own orbit - the Camera Uniform Block is written once, here
+            camera.orbit(frameStart, 10f, 4f);
+            if(terrainChallenge != null) terrainChallenge.updateCamera(frameStart);
+            if(lodTerrain != null) lodTerrain.updateCamera(frameStart);
+            camera.uploadFrame(frameStart);
+
 //            challenge.update(delta);
 //            shaderChallenge.drawCurrentChallenge();
-//            terrainChallenge.update(delta);
-            texturedPlane.drawCurrentChallenge();
-            texturedCubes.drawCubes();
+            if(terrainChallenge != null) terrainChallenge.update(delta);
+            if(lodTerrain != null) lodTerrain.update(delta);
+//            meshBatch.drawCurrentChallenge();
+            //-Dotome.noCulling=true: no frustum, everything is drawn
+            texturedPlane.draw(camera.getFrustum());
+            texturedCubes.drawCubes(camera.getFrustum(), occluders, camera.getPosition());
+            //The opaque scene is complete - its depth is the occluder set of the next frame
+            if(occluders != null) occluders.build(window.getFramebufferWidth(), window.getFramebufferHeight(), camera.getViewProjection());
+            if(textureStress != null) textureStress.update(delta);
 
             input(keyDebounce);
 
             glfwSwapBuffers(window.getWindow());
             glfwPollEvents();
+
+            RenderStats.endFrame(delta);
         }
 
 //        challenge.disposeCurrentChallenge();
 //        shaderChallenge.disposeCurrentChallenge();
-//        terrainChallenge.disposeCurrentChallenge();
+        if(terrainChallenge != null) terrainChallenge.disposeCurrentChallenge();
+        if(lodTerrain != null) lodTerrain.disposeCurrentChallenge();
+//        meshBatch.disposeCurrentChallenge();
         texturedPlane.disposeCurrentChallenge();
         texturedCubes.disposeCubes();
+        if(textureStress != null) textureStress.disposeCurrentChallenge();
+        if(occluders != null) occluders.destroy();
+        camera.destroy();
+        TextureManager.purge();
+        TextureStreamer.shutdown();
+        FileReaderUtil.shutdown();
+        if(loaderThread != null) loaderThread.shutdown();
+        TextureLoader.destroyPlaceholder();
+        SamplerCache.destroy();
     }
 
     /** Perform clean-up */
@@ -1,13 +1,32 @@
 package com.ccat.core;
 
+import com.ccat.core.renderer.UniformBuffer;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
 
 public class CameraController {
+    /** Binding point of the {@code Camera} uniform block in all shaders */
+    public static final int UNIFORM_BINDING = 0;
+
+    /** std140: view, projection, viewProjection (3 * mat4) + cameraPosition (vec3) + time (float) */
+    private static final int UNIFORM_BLOCK_SIZE = 3 * 16 * Float.BYTES + 4 * Float.BYTES;
+    /** -Dotome.noCulling=true: no frustum, every object is drawn */
+    private static final boolean CULLING = !Boolean.getBoolean("otome.noCulling");
 
     private final Matrix4f projection;
     private Matrix4f view;
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f position = new Vector3f();
+    private final FrustumIntersection frustum = new FrustumIntersection();
     private final Vector3f UP = new Vector3f(0f,1f,0f);
+    private final Vector3f CENTER = new Vector3f(0f,0f,0f);
+
+    private final UniformBuffer uniformBuffer;
+    private final ByteBuffer uniformData = MemoryUtil.memAlloc(UNIFORM_BLOCK_SIZE);
 
 
     public CameraController(Vector3f cameraPos, float width, float height) {
@@ -19,18 +38,53 @@ public class CameraController {
         this.projection = new Matrix4f()
                 .perspective(fov, aspect, zNear, zFar);
 
-        Vector3f center = new Vector3f(0f,0f,0f);
+        this.position.set(cameraPos);
+        this.view = new Matrix4f().lookAt(cameraPos, CENTER, UP);
 
-        this.view = new Matrix4f().lookAt(cameraPos, center, UP);
+        this.uniformBuffer = new UniformBuffer(UNIFORM_BINDING, UNIFORM_BLOCK_SIZE);
     }
 
     public Matrix4f updateCameraPos(Vector3f cameraPos) {
-        Vector3f center= new Vector3f(0f,0f,0f);
-        this.view = view.identity().lookAt(cameraPos, center, UP);
+        position.set(cameraPos);
+        this.view = view.identity().lookAt(cameraPos, CENTER, UP);
 
         return view;
     }
 
+    /**
+     * Moves the Camera on a circle around the origin, looking at the center
+     *
+     * @param angle Angle on the circle in radians
+     * @param radius Distance from the center on the xz-plane
+     * @param height Height of the Camera
+     * @return updated View Matrix
+     */
+    public Matrix4f orbit(float angle, float radius, float height) {
+        float camX = (float) (Math.sin(angle) * radius);
+        float camZ = (float) (Math.cos(angle) * radius);
+
+        return updateCameraPos(position.set(camX, height, camZ));
+    }
+
+    /**
+     * Writes the Camera Uniform Block once for the whole frame.
+     * Every shader declaring the {@code Camera} block reads from it without any per-object upload.
+     *
+     * @param time Time in seconds, exposed as {@code uTime}
+     */
+    public void uploadFrame(float time) {
+        projection.mul(view, viewProjection);
+        frustum.set(viewProjection);
+
+        view.get(0, uniformData);
+        projection.get(16 * Float.BYTES, uniformData);
+        viewProjection.get(32 * Float.BYTES, uniformData);
+        position.get(48 * Float.BYTES, uniformData);
+        uniformData.putFloat(51 * Float.BYTES, time);
+
+        uniformBuffer.upload(uniformData);
+    }
+
     public Matrix4f getProjection() {
         return projection;
     }
@@ -38,4 +92,22 @@ public class CameraController {
     public Matrix4f getView() {
         return view;
     }
+
+    public Matrix4f getViewProjection() {
+        return viewProjection;
+    }
+
+    public Vector3f getPosition() {
+        return position;
+    }
+
+    /** @return planes of the view-projection of the last {@link #uploadFrame}, null if culling is disabled */
+    public FrustumIntersection getFrustum() {
+        return CULLING ? frustum : null;
+    }
+
+    public void destroy() {
+        uniformBuffer.destroy();
+        MemoryUtil.memFree(uniformData);
+    }
 }
@@ -2,9 +2,14 @@ package com.ccat.core;
 
 import com.ccat.core.listener.KeyListener;
 import com.ccat.core.listener.MouseListener;
+import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL11.glViewport;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 public final class WindowManager {
@@ -12,7 +17,11 @@ public final class WindowManager {
     private final String title;
     private final int width;
     private final int height;
+    /** Size of the default framebuffer in pixels - larger than the window on HiDPI or scaled displays */
+    private int framebufferWidth;
+    private int framebufferHeight;
     private long window;
+    private final List<Long> sharedContexts = new ArrayList<>();
 
     private WindowManager(int width, int height, String title) {
         this.width = width;
@@ -51,14 +60,10 @@ public final class WindowManager {
      * Initializes and creates the glfwWindow, registers necessary InputListener Callbacks
      */
     public void init() {
-        glfwDefaultWindowHints();
+        applyContextHints();
         glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE);
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 5);
-        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
-        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
-        glfwWindowHint(GLFW_OPENGL_DEBUG_CONTEXT, GLFW_TRUE);
-        glfwWindowHint(GLFW_CONTEXT_DEBUG, GLFW_TRUE);
+        //Single-sampled, the HiZPyramid blits the depth buffer
+        glfwWindowHint(GLFW_SAMPLES, 0);
 
         window = glfwCreateWindow(
                 width, height, title,
@@ -79,9 +84,53 @@ public final class WindowManager {
 
         glfwMakeContextCurrent(window);
         GL.createCapabilities();
+
+        //The viewport always covers the whole default framebuffer
+        int[] framebufferWidth = new int[1];
+        int[] framebufferHeight = new int[1];
+        glfwGetFramebufferSize(window, framebufferWidth, framebufferHeight);
+        setFramebufferSize(framebufferWidth[0], framebufferHeight[0]);
+        glfwSetFramebufferSizeCallback(window, (handle, newWidth, newHeight) -> setFramebufferSize(newWidth, newHeight));
+    }
+
+    private void setFramebufferSize(int width, int height) {
+        this.framebufferWidth = width;
+        this.framebufferHeight = height;
+        glViewport(0, 0, width, height);
+    }
+
+    private static void applyContextHints() {
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 5);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        glfwWindowHint(GLFW_OPENGL_DEBUG_CONTEXT, GLFW_TRUE);
+        glfwWindowHint(GLFW_CONTEXT_DEBUG, GLFW_TRUE);
+    }
+
+    /**
+     * Creates a hidden window whose context shares textures, buffers and sync objects with the main window.
+     * Must be called on the main thread; make it current on exactly one other thread, e.g. a GLLoaderThread.
+     * Container objects (VAOs, framebuffers) are not shared.
+     *
+     * @return GLFW handle of the hidden window, destroyed in {@link #dispose()}
+     */
+    public long createSharedContext() {
+        applyContextHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+
+        long context = glfwCreateWindow(1, 1, title + " - Loader", NULL, window);
+        if(context == NULL) {
+            throw new RuntimeException("Failed to create the shared GLFW context");
+        }
+        sharedContexts.add(context);
+        return context;
     }
 
     public void dispose() {
+        sharedContexts.forEach(GLFW::glfwDestroyWindow);
+        sharedContexts.clear();
         glfwDestroyWindow(window);
     }
 
@@ -107,4 +156,14 @@ public final class WindowManager {
     public int getHeight() {
         return height;
     }
+
+    /** @return width of the default framebuffer in pixels, 0 while minimized */
+    public int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    /** @return height of the default framebuffer in pixels, 0 while minimized */
+    public int getFramebufferHeight() {
+        return framebufferHeight;
+    }
 }
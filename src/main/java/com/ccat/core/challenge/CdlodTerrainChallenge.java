@@ -0,0 +1,101 @@
+package com.ccat.core.challenge;
+
+import com.ccat.core.CameraController;
+import com.ccat.core.listener.KeyListener;
+import com.ccat.core.terrain.CdlodTerrain;
+import com.ccat.core.terrain.TerrainQuadtree;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Quadtree LOD terrain (CDLOD) in place of the single uniform grid of {@link TerrainChallenge}.
+ * Knobs: {@code -Dotome.terrainSize} edge length in units (default 4096),
+ * {@code -Dotome.terrainGrid} quads per patch edge (default 16),
+ * {@code -Dotome.terrainDetail} view range multiplier (default 1).
+ * UP/DOWN moves the Camera, a report of the selected nodes is printed about once per second.
+ */
+public class CdlodTerrainChallenge extends SimpleChallenge {
+    private static final float REPORT_INTERVAL = 1f;
+    private static final float LEAF_SIZE = 2f;
+    private static final float MIN_HEIGHT = -2f;
+    private static final float MAX_HEIGHT = 4f;
+
+    private final CameraController camera;
+    private CdlodTerrain terrain;
+
+    private float debounce = 0f;
+    private float camY = 10.0f;
+    private float sinceReport = 0f;
+
+    public CdlodTerrainChallenge(CameraController camera) {
+        this.camera = camera;
+    }
+
+    @Override
+    public void initNewChallenge() {
+        float size = Float.parseFloat(System.getProperty("otome.terrainSize", "4096"));
+        int gridSize = Integer.getInteger("otome.terrainGrid", 16);
+        float detail = Float.parseFloat(System.getProperty("otome.terrainDetail", "1"));
+
+        TerrainQuadtree quadtree = new TerrainQuadtree(size, LEAF_SIZE, MIN_HEIGHT, MAX_HEIGHT, detail);
+        this.terrain = new CdlodTerrain(quadtree, gridSize);
+    }
+
+    /**
+     * Orbits the Camera around the terrain - call before the frame's Camera Uniform Block is written
+     *
+     * @param time Time in seconds, the angle on the orbit
+     */
+    public void updateCamera(float time) {
+        float radius = 10.0f;
+
+        camera.orbit(time, radius, camY);
+
+        if(KeyListener.isKeyPressed(GLFW_KEY_UP) && debounce < 0) {
+            camY++;
+            debounce = 0.2f;
+        }
+        if(KeyListener.isKeyPressed(GLFW_KEY_DOWN) && debounce < 0) {
+            camY--;
+            debounce = 0.2f;
+        }
+    }
+
+    public void update(float delta) {
+        debounce -= delta;
+
+        terrain.update(camera.getPosition(), camera.getFrustum());
+        drawCurrentChallenge();
+
+        sinceReport += delta;
+        if(sinceReport >= REPORT_INTERVAL) {
+            printReport();
+            sinceReport = 0f;
+        }
+    }
+
+    private void printReport() {
+        TerrainQuadtree quadtree = terrain.getQuadtree();
+
+        StringBuilder perLod = new StringBuilder();
+        for (int lod = 0; lod < quadtree.getLodCount(); lod++) {
+            if(lod > 0) perLod.append('/');
+            perLod.append(quadtree.getNodeCount(lod));
+        }
+
+        System.out.printf("Terrain ## Size:%.0f - LODs:%d - Nodes:%d (%s) - Culled:%d - Vertices:%d - Select:%.3f ms%n",
+                quadtree.getSize(), quadtree.getLodCount(), quadtree.getNodeCount(), perLod, quadtree.getCulledCount(),
+                terrain.getVertexCount(), terrain.getSelectNanos() / 1_000_000.0
+        );
+    }
+
+    @Override
+    public void drawCurrentChallenge() {
+        terrain.draw();
+    }
+
+    @Override
+    public void disposeCurrentChallenge() {
+        terrain.destroy();
+    }
+}
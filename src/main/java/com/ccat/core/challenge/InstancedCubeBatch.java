@@ -0,0 +1,235 @@
+package com.ccat.core.challenge;
+
+import com.ccat.core.culling.GpuInstanceCuller;
+import com.ccat.core.culling.HiZPyramid;
+import com.ccat.core.renderer.GLLoaderThread;
+import com.ccat.core.renderer.LoadTask;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderLibrary;
+import com.ccat.core.renderer.ShaderProgram;
+import com.ccat.core.renderer.TextureSet;
+import com.ccat.core.util.ShapeUtil;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL31.glDrawArraysInstanced;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Draws many textured cubes from one shared cube mesh.
+ * Every instance carries its offset and the index of its texture in a TextureSet,
+ * so the set is bound once and all cubes go out in a single instanced draw call.
+ * Only the instances of visible cubes are copied to the front of the instance buffer every frame -
+ * or, with GPU culling, a compute pass compacts them and the draw takes its instance count from the GPU.
+ * Given a {@link GLLoaderThread}, the mesh and instance buffers are filled on its shared context and
+ * the render thread only attaches them to its VAO - the batch draws nothing until then.
+ */
+public class InstancedCubeBatch {
+    private static final int FLOAT_SIZE = Float.BYTES;
+    private static final int OFFSET_SIZE = 3;
+    /** vec3 offset + uint texture index */
+    private static final int INSTANCE_BYTES = OFFSET_SIZE * FLOAT_SIZE + Integer.BYTES;
+    /** Cube half extent, see ShapeUtil.getTexturedCubeVertexArray */
+    private static final float HALF_SIZE = 0.5f;
+    private static final int VERTEX_BYTES = (3 + 2) * FLOAT_SIZE;
+    private static final int MESH_BINDING = 0;
+    private static final int INSTANCE_BINDING = 1;
+
+    private final TextureSet textures;
+    private final int instances;
+    /** All instances on the CPU, the visible ones are compacted into visibleInstances - null with GPU culling */
+    private final ByteBuffer instanceData;
+    private final ByteBuffer visibleInstances;
+    private final GpuInstanceCuller gpuCuller;
+    private final int vertexCount;
+
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
+
+    private final int vao;
+    private int meshVbo;
+    private int instanceVbo;
+    /** Mesh and instance buffers being filled on the loader context, null once attached */
+    private LoadTask<int[]> bufferLoad;
+
+    /**
+     * @param textures Textures referenced by the instances
+     * @param instanceBuffer vec3 offset + uint texture index per instance, e.g. from EntityStore.extractInstances -
+     *                       owned and freed by the batch
+     * @param gpuCulling cull the instances in a compute pass instead of on the CPU
+     * @param loader fills the mesh and instance buffers on its shared context, null fills them right here
+     */
+    public InstancedCubeBatch(TextureSet textures, ByteBuffer instanceBuffer, boolean gpuCulling, GLLoaderThread loader) {
+        this.textures = textures;
+
+        final String vertexShaderFilepath = "shaders/vertex/vertex_shader_texture_instanced.glsl";
+        final String fragmentShaderFilepath = "shaders/fragment/texture_set_fragment_shader.glsl";
+
+        this.instances = instanceBuffer.remaining() / INSTANCE_BYTES;
+        for (int i = 0; i < instances; i++) {
+            int textureIndex = instanceBuffer.getInt(instanceBuffer.position() + i * INSTANCE_BYTES + OFFSET_SIZE * FLOAT_SIZE);
+            if(textureIndex < 0 || textureIndex >= textures.size()) {
+                MemoryUtil.memFree(instanceBuffer);
+                throw new IllegalArgumentException("Texture index out of range: " + textureIndex);
+            }
+        }
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath, textures.getShaderDefine());
+        pendingProgram.thenAccept(program -> this.shaderProgram = program);
+
+        float[] vertexArray = ShapeUtil.getTexturedCubeVertexArray();
+        int positionSize = 3;
+        int textureSize = 2;
+        this.vertexCount = vertexArray.length / (positionSize + textureSize);
+
+        //VAOs are not shared between contexts - only the buffers may come from the loader
+        this.vao = glCreateVertexArrays();
+
+        if(gpuCulling) {
+            //The instances live on the GPU only, the culler writes the visible ones for the draw
+            this.gpuCuller = new GpuInstanceCuller(instanceBuffer, HALF_SIZE, vertexCount);
+            MemoryUtil.memFree(instanceBuffer);
+            this.instanceData = null;
+            this.visibleInstances = null;
+            glVertexArrayVertexBuffer(vao, INSTANCE_BINDING, gpuCuller.getVisibleBuffer(), 0, INSTANCE_BYTES);
+        } else {
+            this.gpuCuller = null;
+            this.instanceData = instanceBuffer;
+            this.visibleInstances = MemoryUtil.memAlloc(instances * INSTANCE_BYTES);
+        }
+
+        ByteBuffer instanceSource = gpuCulling ? null : instanceBuffer;
+        if(loader != null) {
+            //The loader reads instanceData while the render thread waits for the buffers, it is not written meanwhile
+            this.bufferLoad = loader.submit(() -> createBuffers(vertexArray, instanceSource));
+        } else {
+            attachBuffers(createBuffers(vertexArray, instanceSource));
+        }
+        glVertexArrayBindingDivisor(vao, INSTANCE_BINDING, 1);
+
+        int positionAttribSlot = 0;
+        glVertexArrayAttribFormat(vao, positionAttribSlot, positionSize, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, positionAttribSlot, MESH_BINDING);
+        glEnableVertexArrayAttrib(vao, positionAttribSlot);
+
+        int textureAttribSlot = 1;
+        glVertexArrayAttribFormat(vao, textureAttribSlot, textureSize, GL_FLOAT, false, positionSize * FLOAT_SIZE);
+        glVertexArrayAttribBinding(vao, textureAttribSlot, MESH_BINDING);
+        glEnableVertexArrayAttrib(vao, textureAttribSlot);
+
+        int offsetAttribSlot = 2;
+        glVertexArrayAttribFormat(vao, offsetAttribSlot, OFFSET_SIZE, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, offsetAttribSlot, INSTANCE_BINDING);
+        glEnableVertexArrayAttrib(vao, offsetAttribSlot);
+
+        int textureIndexAttribSlot = 3;
+        glVertexArrayAttribIFormat(vao, textureIndexAttribSlot, 1, GL_UNSIGNED_INT, OFFSET_SIZE * FLOAT_SIZE);
+        glVertexArrayAttribBinding(vao, textureIndexAttribSlot, INSTANCE_BINDING);
+        glEnableVertexArrayAttrib(vao, textureIndexAttribSlot);
+    }
+
+    /**
+     * Creates and fills the mesh buffer and, without GPU culling, the instance buffer - on any context sharing with the VAO's
+     *
+     * @param instanceBuffer all instances, null for no instance buffer
+     * @return mesh buffer, instance buffer or 0
+     */
+    private static int[] createBuffers(float[] vertexArray, ByteBuffer instanceBuffer) {
+        int mesh = glCreateBuffers();
+        glNamedBufferStorage(mesh, vertexArray, 0);
+        if(instanceBuffer == null) return new int[]{ mesh, 0 };
+
+        int instance = glCreateBuffers();
+        glNamedBufferStorage(instance, instanceBuffer, GL_DYNAMIC_STORAGE_BIT);
+        return new int[]{ mesh, instance };
+    }
+
+    private void attachBuffers(int[] buffers) {
+        this.meshVbo = buffers[0];
+        this.instanceVbo = buffers[1];
+        glVertexArrayVertexBuffer(vao, MESH_BINDING, meshVbo, 0, VERTEX_BYTES);
+        if(instanceVbo != 0) glVertexArrayVertexBuffer(vao, INSTANCE_BINDING, instanceVbo, 0, INSTANCE_BYTES);
+    }
+
+    /** @return false while the loader still fills the buffers */
+    private boolean buffersReady() {
+        if(bufferLoad == null) return true;
+        if(!bufferLoad.isReady()) return false;
+
+        attachBuffers(bufferLoad.get());
+        bufferLoad = null;
+        return true;
+    }
+
+    /**
+     * Uploads the visible instances, binds the TextureSet once and issues a single instanced draw
+     *
+     * @param visible instance indices to draw
+     * @param visibleCount number of valid entries in visible
+     */
+    public void draw(int[] visible, int visibleCount) {
+        //Program still compiling or buffers still loading - nothing to draw yet
+        if(shaderProgram == null || visibleCount == 0 || !buffersReady()) return;
+
+        long source = MemoryUtil.memAddress(instanceData);
+        long target = MemoryUtil.memAddress(visibleInstances);
+        for (int i = 0; i < visibleCount; i++) {
+            MemoryUtil.memCopy(source + (long) visible[i] * INSTANCE_BYTES, target + (long) i * INSTANCE_BYTES, INSTANCE_BYTES);
+        }
+        nglNamedBufferSubData(instanceVbo, 0, (long) visibleCount * INSTANCE_BYTES, target);
+
+        shaderProgram.bind();
+        textures.bind();
+        glBindVertexArray(vao);
+
+        glDrawArraysInstanced(GL_TRIANGLES, 0, vertexCount, visibleCount);
+        RenderStats.countDrawCall();
+    }
+
+    /**
+     * Culls the instances on the GPU and draws the visible ones indirectly - no per-instance CPU work
+     *
+     * @param cull false draws every instance
+     * @param occluders depth of the last frame to cull hidden instances against, null tests the frustum only
+     */
+    public void drawGpuCulled(boolean cull, HiZPyramid occluders) {
+        //Program still compiling or buffers still loading - nothing to draw yet
+        if(shaderProgram == null || !buffersReady()) return;
+
+        gpuCuller.cull(cull, occluders);
+
+        shaderProgram.bind();
+        textures.bind();
+        glBindVertexArray(vao);
+        gpuCuller.draw(GL_TRIANGLES);
+
+        //Counts arrive a few frames late, none are reported until then
+        int visible = gpuCuller.getVisibleCount();
+        if(visible < 0) return;
+        int occluded = gpuCuller.getOccludedCount();
+        RenderStats.countCulling(visible, instances - visible - occluded);
+        RenderStats.countOcclusion(occluded, gpuCuller.getOccludedFragments());
+    }
+
+    public void dispose() {
+        //The loader may still read instanceData and fill the buffers
+        if(bufferLoad != null) attachBuffers(bufferLoad.join());
+
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(meshVbo);
+        if(gpuCuller != null) {
+            gpuCuller.destroy();
+        } else {
+            glDeleteBuffers(instanceVbo);
+            MemoryUtil.memFree(instanceData);
+            MemoryUtil.memFree(visibleInstances);
+        }
+
+        ShaderLibrary.release(pendingProgram);
+    }
+}
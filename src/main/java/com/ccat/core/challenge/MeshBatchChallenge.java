@@ -0,0 +1,114 @@
+package com.ccat.core.challenge;
+
+import com.ccat.core.renderer.DrawCommandBuffer;
+import com.ccat.core.renderer.MeshPool;
+import com.ccat.core.renderer.ShaderLibrary;
+import com.ccat.core.renderer.ShaderProgram;
+import com.ccat.core.renderer.StorageBuffer;
+import com.ccat.core.util.ShapeUtil;
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Draws thousands of different static meshes (cubes, planes, terrain grids, stars)
+ * from one MeshPool with a single glMultiDrawElementsIndirect call.
+ */
+public class MeshBatchChallenge extends SimpleChallenge {
+    private static final int INSTANCE_BINDING = 1;
+    private static final int DRAW_BINDING = 2;
+
+    private final int drawCount;
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
+
+    private MeshPool meshPool;
+    private DrawCommandBuffer drawCommands;
+    private StorageBuffer instanceData;
+    private StorageBuffer drawData;
+
+    /** @param drawCount Number of distinct mesh draws submitted per frame */
+    public MeshBatchChallenge(int drawCount) {
+        this.drawCount = drawCount;
+
+        final String vertexShaderFilepath = "shaders/vertex/vertex_shader_batch.glsl";
+        final String fragmentShaderFilepath = "shaders/fragment/batch_fragment_shader.glsl";
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath);
+        pendingProgram.thenAccept(program -> this.shaderProgram = program);
+    }
+
+    @Override
+    public void initNewChallenge() {
+        int gridSubdivisions = 16;
+        float[] cubeVertices = ShapeUtil.getTexturedCubeVertexArray();
+        int[] cubeElements = new int[cubeVertices.length / MeshPool.VERTEX_FLOATS];
+        for (int i = 0; i < cubeElements.length; i++) {
+            cubeElements[i] = i;
+        }
+
+        this.meshPool = new MeshPool(8192, 16384);
+        List<MeshPool.Mesh> meshes = List.of(
+                meshPool.add(cubeVertices, cubeElements),
+                meshPool.add(ShapeUtil.getTexturedQuadVertexArray(), ShapeUtil.getTexturedQuadElementArray()),
+                meshPool.add(ShapeUtil.getGridVertexArray(1f, gridSubdivisions), ShapeUtil.getGridElementArray(gridSubdivisions)),
+                meshPool.add(ShapeUtil.toTexturedVertexArray(ShapeUtil.getStarVertexArray()), ShapeUtil.getStarElementArray())
+        );
+
+        Random r = new Random();
+        Matrix4f transform = new Matrix4f();
+        FloatBuffer transforms = MemoryUtil.memAllocFloat(drawCount * 16);
+        FloatBuffer colors = MemoryUtil.memAllocFloat(drawCount * 4);
+        this.drawCommands = new DrawCommandBuffer(drawCount);
+
+        float extent = (float) Math.cbrt(drawCount) * 2f;
+        for (int i = 0; i < drawCount; i++) {
+            transform.translation(
+                    (r.nextFloat() - 0.5f) * extent,
+                    (r.nextFloat() - 0.5f) * extent,
+                    (r.nextFloat() - 0.5f) * extent)
+                    .rotateXYZ(r.nextFloat() * 6.28f, r.nextFloat() * 6.28f, 0f)
+                    .scale(0.5f + r.nextFloat());
+            transform.get(i * 16, transforms);
+            colors.put(i * 4, r.nextFloat()).put(i * 4 + 1, r.nextFloat()).put(i * 4 + 2, r.nextFloat()).put(i * 4 + 3, 1f);
+
+            //One instance per command, its data sits at index baseInstance = i
+            drawCommands.add(meshes.get(r.nextInt(meshes.size())), 1, i);
+        }
+        drawCommands.upload();
+
+        this.instanceData = new StorageBuffer(transforms);
+        this.drawData = new StorageBuffer(colors);
+        MemoryUtil.memFree(transforms);
+        MemoryUtil.memFree(colors);
+
+        System.out.printf("MeshBatch ## Meshes:%d - Draws:%d - Vertices:%d - Indices:%d%n",
+                meshes.size(), drawCount, meshPool.getVertexCount(), meshPool.getIndexCount());
+    }
+
+    @Override
+    public void drawCurrentChallenge() {
+        //Program still compiling - nothing to draw yet
+        if(shaderProgram == null) return;
+
+        shaderProgram.bind();
+        meshPool.bind();
+        instanceData.bind(INSTANCE_BINDING);
+        drawData.bind(DRAW_BINDING);
+
+        drawCommands.draw();
+    }
+
+    @Override
+    public void disposeCurrentChallenge() {
+        meshPool.destroy();
+        drawCommands.destroy();
+        instanceData.destroy();
+        drawData.destroy();
+
+        ShaderLibrary.release(pendingProgram);
+    }
+}
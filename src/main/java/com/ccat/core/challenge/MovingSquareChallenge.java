@@ -1,6 +1,5 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.WindowManager;
 import com.ccat.core.listener.KeyListener;
 import com.ccat.core.model.UniformType;
 import com.ccat.core.renderer.ShaderProgram;
@@ -21,52 +20,17 @@ import static org.lwjgl.opengl.GL45.*;
 public class MovingSquareChallenge extends SimpleChallenge{
     private final ShaderProgram shaderProgram;
     private Vector3f squarePos = new Vector3f(0.5f, 0.5f, 0f);
+    private final Matrix4f transform = new Matrix4f();
 
     private int vao;
     private int vbo;
     private int ebo;
 
-    public MovingSquareChallenge(WindowManager window) {
-        //Initialize Shader
+    public MovingSquareChallenge() {
+        //Initialize Shader - view/projection come from the per-frame Camera Uniform Block
         final String vertexShaderFilepath = "shaders/vertex/vertex_shader_base.glsl";
         final String fragmentShaderFilepath = "shaders/fragment/fragment_shader_base.glsl";
         this.shaderProgram = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
-
-        shaderProgram.bind();
-        initializeProjection(window.getWidth(), window.getHeight());
-        initializeCamera();
-    }
-
-    /**
-     * Uploads the Projection Matrix to the Vertex Shader
-     *
-     * @param windowWidth Window width
-     * @param windowHeight Window height
-     */
-    private void initializeProjection(int windowWidth, int windowHeight) {
-        float fov = 45f;
-        float zNear = 0.01f;
-        float zFar = 10000f;
-        float aspect = (float) windowWidth / (float) windowHeight;
-
-        Matrix4f projection = new Matrix4f();
-        projection.perspective(fov, aspect, zNear, zFar);
-
-        shaderProgram.uploadMat4(UniformType.PROJECTION.getName(), projection);
-    }
-
-    /**
-     * Uploads the View Matrix to the Vertex Shader
-     * (can be used in update())
-     */
-    private void initializeCamera() {
-        Vector3f cameraPos = new Vector3f(0f, 0f, 10f);
-        Vector3f cameraLookAt = new Vector3f(0f, 0f, 0f);
-        Vector3f up = new Vector3f(0f, 1f, 0f);
-
-        Matrix4f view = new Matrix4f().lookAt(cameraPos, cameraLookAt, up);
-
-        shaderProgram.uploadMat4(UniformType.VIEW.getName(), view);
     }
 
 
@@ -109,11 +73,11 @@ public class MovingSquareChallenge extends SimpleChallenge{
         moveQuad(delta);
 
         float rotation = 0.0f;
-        Matrix4f transform = new Matrix4f()
+        transform.identity()
                 .scale(1f)
                 .rotate(rotation, 0f, 0f, 0f)
                 .translate(squarePos);
-        shaderProgram.uploadMat4(UniformType.TRANSFORM.getName(), transform);
+        shaderProgram.uploadMat4(UniformType.TRANSFORM, transform);
 
         glBindVertexArray(vao);
         glDrawElements(GL_TRIANGLES,
@@ -1,6 +1,5 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.WindowManager;
 import com.ccat.core.model.UniformType;
 import com.ccat.core.renderer.ShaderProgram;
 import org.joml.Matrix4f;
@@ -11,7 +10,6 @@ import org.lwjgl.system.MemoryStack;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
-import static org.lwjgl.glfw.GLFW.glfwGetTime;
 import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
 import static org.lwjgl.opengl.GL30.glBindVertexArray;
@@ -23,37 +21,16 @@ public class ShaderChallenge extends SimpleChallenge {
     private int vbo;
     private int ebo;
     private final ShaderProgram program;
+    private final Vector3f position = new Vector3f(0f, 0f, 0f);
+    private final Vector2f resolution = new Vector2f(1f);
+    private final Matrix4f transform = new Matrix4f();
+    private final int resolutionLocation;
 
-    public ShaderChallenge(WindowManager window) {
+    public ShaderChallenge() {
         final String vertexShaderFilepath = "shaders/vertex/vertex_shader_base.glsl";
         final String fragmentShaderFilepath = "shaders/fragment/circle_fragment_shader.glsl";
         this.program = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
-
-        //todo: for each ShaderProgram, initialize:
-        program.bind();
-        initializeProjection(program, window.getWidth(), window.getHeight());
-        initializeCamera(program);
-    }
-
-    private void initializeProjection(ShaderProgram program, int width, int height) {
-        float fov = 45f;
-        float aspect = (float) width / (float) height;
-        float zNear = 0.01f;
-        float zFar = 10000f;
-
-        Matrix4f projection = new Matrix4f()
-                .perspective(fov, aspect, zNear, zFar);
-        program.uploadMat4(UniformType.PROJECTION.getName(), projection);
-    }
-
-    private void initializeCamera(ShaderProgram program) {
-        Vector3f eye = new Vector3f(0f,0f,2f);
-        Vector3f center = new Vector3f();
-        Vector3f up = new Vector3f(0f,1f,0f);
-
-        Matrix4f view = new Matrix4f()
-                .lookAt(eye, center, up);
-        program.uploadMat4(UniformType.VIEW.getName(), view);
+        this.resolutionLocation = program.getUniformLocation("uResolution");
     }
 
     private void initQuad() {
@@ -95,15 +72,13 @@ public class ShaderChallenge extends SimpleChallenge {
     public void drawCurrentChallenge() {
         program.bind();
 
-        final Vector3f position = new Vector3f(0f, 0f, 0f);
-        Matrix4f transform = new Matrix4f()
+        transform.identity()
                 .scale(1f)
                 .rotate(0f, 0f, 0f, 0f)
                 .translate(position);
 
-        program.uploadMat4(UniformType.TRANSFORM.getName(), transform);
-        program.uploadVec2("uResolution", new Vector2f(1f));
-        program.uploadFloat("uTime", (float)glfwGetTime());
+        program.uploadMat4(UniformType.TRANSFORM, transform);
+        program.uploadVec2(resolutionLocation, resolution);
 
         glBindVertexArray(vao);
         glDrawElements(GL_TRIANGLES,
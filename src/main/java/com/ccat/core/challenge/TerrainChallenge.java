@@ -1,129 +1,155 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.WindowManager;
+import com.ccat.core.CameraController;
 import com.ccat.core.listener.KeyListener;
-import com.ccat.core.model.UniformType;
+import com.ccat.core.renderer.GLLoaderThread;
+import com.ccat.core.renderer.GpuTimer;
+import com.ccat.core.renderer.LoadTask;
+import com.ccat.core.renderer.RenderStats;
 import com.ccat.core.renderer.ShaderProgram;
-import org.joml.Matrix4f;
-import org.joml.Vector3f;
-import org.lwjgl.system.MemoryStack;
-
-import java.nio.FloatBuffer;
+import com.ccat.core.renderer.StreamingUpload;
+import com.ccat.core.terrain.ComputeHeightField;
+import com.ccat.core.terrain.HeightField;
+import com.ccat.core.terrain.TerrainGrid;
+import org.joml.FrustumIntersection;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.Buffer;
 import java.nio.IntBuffer;
-import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
 import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 import static org.lwjgl.opengl.GL15.glDeleteBuffers;
-import static org.lwjgl.opengl.GL15.glGenBuffers;
-import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.glMultiDrawElementsBaseVertex;
+import static org.lwjgl.opengl.GL43.GL_PRIMITIVE_RESTART_FIXED_INDEX;
 import static org.lwjgl.opengl.GL45.*;
-import static org.lwjgl.opengl.GL45.glEnableVertexArrayAttrib;
 
 public class TerrainChallenge extends SimpleChallenge {
+    /** Where the terrain heights come from - {@code -Dotome.terrainMode} */
+    public enum HeightMode {
+        /** fbm noise evaluated five times per vertex and frame in the vertex shader */
+        VERTEX_SHADER,
+        /** {@link HeightField} generated on the CPU, uploaded only when it changed */
+        CPU,
+        /** {@link ComputeHeightField} generated by a compute shader into a storage buffer when it changed */
+        COMPUTE
+    }
+
+    private static final float REPORT_INTERVAL = 1f;
+    private static final float BASE_HEIGHT = -2f;
+    /** Every height source scales the fbm by 2 - its six octaves (1.5, 0.75, ...) sum below 3, so heights stay below 6 above the base */
+    private static final float MAX_RISE = 6f;
+    /** Grid bytes streamed into the GL buffers per frame */
+    private static final long UPLOAD_SLICE_BYTES = 4L << 20;
+
     private final int SIZE = 12;
     private int subdivisions = 10;
-    private float[] vertexArray;
-    private int[] elementArray;
 
     private float debounce = 0f;
     private float camY = 10.0f;
 
-    private void createGrid() {
-        float offset = (SIZE / 2f);
+    /** Written on a worker while a rebuild is pending, the drawn grid stays in the GL buffers meanwhile */
+    private final TerrainGrid grid = new TerrainGrid();
+    private CompletableFuture<TerrainGrid> pendingGrid;
+    private int drawnSubdivisions;
+    private int uploadFrames;
+    /** -Dotome.terrainIndices=AUTO|TRIANGLES_32|TRIANGLES_16|STRIP_32|STRIP_16 */
+    private final TerrainGrid.IndexMode indexMode = TerrainGrid.IndexMode.valueOf(
+            System.getProperty("otome.terrainIndices", TerrainGrid.IndexMode.AUTO.name()));
+    private final int maxSubdivisions = TerrainGrid.getMaxSubdivisions(indexMode);
 
-        LinkedList<Float> floats = new LinkedList<>();
-        float interval = (float) SIZE / subdivisions;
-        for (int y = 0; y <= subdivisions; y++) {
-            for (int x = 0; x <= subdivisions; x++) {
-                float xPos = x * interval - offset;
-                float zPos = y * interval - offset;
-                float yPos = -2f;
-
-                floats.add(xPos);
-                floats.add(yPos);
-                floats.add(zPos);
-            }
-        }
-
-        Object[] v = floats.toArray();
-        int length = v.length;
-        float[] vert = new float[length];
-        for (int i = 0; i < length; i++) {
-            vert[i] = (float) v[i];
-        }
-        this.vertexArray = vert;
-
-        int[] elements = new int[(subdivisions * subdivisions) * 6];
-        int quad = 1;
-        int row = 0;
-        for (int i = 0; i < (subdivisions * subdivisions); i++) {
-            //First Tris
-            elements[i * 6] = (row + i + subdivisions + 2);         // 4
-            elements[i * 6 + 1] = (row + i);                        // 0
-            elements[i * 6 + 2] = (row + i + subdivisions + 1);     // 3
-
-            //Second Tris
-            elements[i * 6 + 3] = (row + i + subdivisions + 2);     // 4
-            elements[i * 6 + 4] = (row + i + 1);                    // 1
-            elements[i * 6 + 5] = (row + i);                        // 0
-
-            if(quad % subdivisions == 0) row++; //next row
-            quad++;
-        }
-        this.elementArray = elements;
-    }
+    /**
+     * A built grid is written into the back buffers while the front ones are drawn, then they swap.
+     * With a loader thread it is uploaded on the shared context at once, otherwise streamed in slices.
+     */
+    private final GLLoaderThread loader;
+    private LoadTask<long[]> gridLoad;
+    private StreamingUpload gridUpload;
+    private boolean uploadingGrid;
+    private boolean uploadingIndices;
+    private int backVbo;
+    private int backEbo;
+    private long backVboCapacity;
+    private long backEboCapacity;
+
+    //Draw parameters of the uploaded grid - the TerrainGrid may already be rebuilding
+    private int primitiveType;
+    private int indexType;
+    private boolean primitiveRestart;
+    private IntBuffer chunkCounts = MemoryUtil.memAllocInt(1);
+    private IntBuffer chunkBaseVertices = MemoryUtil.memAllocInt(1);
+    private PointerBuffer chunkOffsets = MemoryUtil.memCallocPointer(1);
 
     private final ShaderProgram shaderProgram;
+    private final CameraController camera;
+    private final HeightMode heightMode;
     private int vao;
     private int vbo;
     private int ebo;
+    private long vboCapacity;
+    private long eboCapacity;
+
+    private HeightField heightField;
+    private int heightVbo;
+    private long heightVboCapacity;
+    private boolean heightsUploaded;
+    /** -Dotome.terrainStatic=true: no scrolling, the CPU heights are generated once per grid */
+    private final boolean staticTerrain = Boolean.getBoolean("otome.terrainStatic");
+
+    private ComputeHeightField computeField;
+    private final GpuTimer gpuTimer;
+    private float sinceReport = 0f;
+
+    public TerrainChallenge(CameraController camera) {
+        this(camera, HeightMode.VERTEX_SHADER);
+    }
 
-    public TerrainChallenge(WindowManager window) {
-        //Initialize Shader
-        final String vertexShaderFilepath = "shaders/vertex/vertex_shader_terrain.glsl";
-        final String fragmentShaderFilepath = "shaders/fragment/terrain_fragment_shader.glsl";
-        this.shaderProgram = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
-
-        shaderProgram.bind();
-        initializeProjection(window.getWidth(), window.getHeight());
+    public TerrainChallenge(CameraController camera, HeightMode heightMode) {
+        this(camera, heightMode, null);
     }
 
     /**
-     * Uploads the Projection Matrix to the Vertex Shader
-     *
-     * @param windowWidth Window width
-     * @param windowHeight Window height
+     * @param camera Camera orbiting the terrain
+     * @param heightMode where the heights come from
+     * @param loader uploads the grids on its shared context, null streams them on the render thread
      */
-    private void initializeProjection(int windowWidth, int windowHeight) {
-        float fov = 45f;
-        float zNear = 0.01f;
-        float zFar = 10000f;
-        float aspect = (float) windowWidth / (float) windowHeight;
-
-        Matrix4f projection = new Matrix4f();
-        projection.perspective(fov, aspect, zNear, zFar);
+    public TerrainChallenge(CameraController camera, HeightMode heightMode, GLLoaderThread loader) {
+        //Initialize Shader
+        final String vertexShaderFilepath = switch (heightMode) {
+            case VERTEX_SHADER -> "shaders/vertex/vertex_shader_terrain.glsl";
+            case CPU -> "shaders/vertex/vertex_shader_terrain_heightfield.glsl";
+            case COMPUTE -> "shaders/vertex/vertex_shader_terrain_storage.glsl";
+        };
+        final String fragmentShaderFilepath = "shaders/fragment/terrain_fragment_shader.glsl";
+        this.shaderProgram = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
+        this.camera = camera;
+        this.heightMode = heightMode;
+        this.loader = loader;
 
-        shaderProgram.uploadMat4(UniformType.PROJECTION.getName(), projection);
+        if(heightMode == HeightMode.CPU) {
+            this.heightField = new HeightField(subdivisions, SIZE, ForkJoinPool.commonPool());
+        }
+        if(heightMode == HeightMode.COMPUTE) {
+            this.computeField = new ComputeHeightField(subdivisions, SIZE);
+        }
+        this.gpuTimer = new GpuTimer();
     }
 
     /**
-     * Uploads the View Matrix to the Vertex Shader
+     * Orbits the Camera around the terrain - call before the frame's Camera Uniform Block is written
+     *
+     * @param time Time in seconds, the angle on the orbit
      */
-    private void initializeCamera() {
+    public void updateCamera(float time) {
         float radius = 10.0f;
-        float camX = (float) (Math.sin(glfwGetTime()) * radius);
-        float camZ = (float) (Math.cos(glfwGetTime()) * radius);
 
-        Vector3f cameraPos = new Vector3f(camX, camY, camZ);
-        Vector3f cameraLookAt = new Vector3f(0.0f, 0.0f, 0.0f);
-        Vector3f up = new Vector3f(0.0f, 1.0f, 0.0f);
-
-        Matrix4f view = new Matrix4f().lookAt(cameraPos, cameraLookAt, up);
-
-        shaderProgram.uploadMat4(UniformType.VIEW.getName(), view);
+        camera.orbit(time, radius, camY);
 
         if(KeyListener.isKeyPressed(GLFW_KEY_UP) && debounce < 0) {
             camY--;
@@ -135,72 +161,321 @@ public class TerrainChallenge extends SimpleChallenge {
         }
     }
 
+    /** Creates the VAO and its buffers once, rebuilt grids are written into the same buffers - VAOs are not shared, so it stays here */
     private void initializeQuad() {
-        createGrid();
-
         int vertexBindingPoint = 0;
-        int positionSize = 3;
 
-        this.vao = glGenVertexArrays();
-        glBindVertexArray(vao);
+        this.vao = glCreateVertexArrays();
+        this.vbo = glCreateBuffers();
+        this.ebo = glCreateBuffers();
+        this.backVbo = glCreateBuffers();
+        this.backEbo = glCreateBuffers();
+        if(loader == null) this.gridUpload = new StreamingUpload(UPLOAD_SLICE_BYTES);
+        glVertexArrayVertexBuffer(vao, vertexBindingPoint, vbo, 0, TerrainGrid.POSITION_SIZE * FLOAT_SIZE);
+        glVertexArrayElementBuffer(vao, ebo);
+
+        int positionAttribSlot = 0;
+        glVertexArrayAttribFormat(vao, positionAttribSlot, TerrainGrid.POSITION_SIZE, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, positionAttribSlot, vertexBindingPoint);
+        glEnableVertexArrayAttrib(vao, positionAttribSlot);
+
+        if(heightMode == HeightMode.CPU) {
+            initializeHeights();
+        }
 
-        try(MemoryStack stack = MemoryStack.stackPush()) {
-            FloatBuffer vertexBuffer = stack
-                    .mallocFloat(vertexArray.length)
-                    .put(vertexArray)
-                    .flip();
+        grid.build(subdivisions, SIZE, BASE_HEIGHT, indexMode);
+        if(loader != null) {
+            //Nothing is drawn until the loader uploaded the first grid
+            loadGrid();
+            return;
+        }
+        //Nothing is drawn yet - the first grid is uploaded at once
+        long start = System.nanoTime();
+        vboCapacity = upload(vbo, vboCapacity, grid.getPositions(), Float.BYTES, GL_STATIC_DRAW);
+        eboCapacity = upload(ebo, eboCapacity, grid.getIndices(), 1, GL_STATIC_DRAW);
+        useGrid(String.format("%.2f ms", (System.nanoTime() - start) / 1_000_000.0));
+    }
 
-            this.vbo = glGenBuffers();
-            glNamedBufferData(vbo, vertexBuffer, GL_STATIC_DRAW);
-            glVertexArrayVertexBuffer(vao, vertexBindingPoint, vbo, 0, positionSize * FLOAT_SIZE);
+    /** Second vertex stream holding the HeightField, rewritten whenever the field changes */
+    private void initializeHeights() {
+        int heightBindingPoint = 1;
+        this.heightVbo = glCreateBuffers();
+        glVertexArrayVertexBuffer(vao, heightBindingPoint, heightVbo, 0, HeightField.VERTEX_BYTES);
 
-            IntBuffer elementBuffer = stack
-                    .mallocInt(elementArray.length)
-                    .put(elementArray)
-                    .flip();
+        int heightAttribSlot = 1;
+        glVertexArrayAttribFormat(vao, heightAttribSlot, HeightField.VERTEX_FLOATS, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, heightAttribSlot, heightBindingPoint);
+        glEnableVertexArrayAttrib(vao, heightAttribSlot);
+    }
 
-            this.ebo = glGenBuffers();
-            glNamedBufferData(ebo, elementBuffer, GL_STATIC_DRAW);
-            glVertexArrayElementBuffer(vao, ebo);
+    /**
+     * Writes data into a buffer, growing it if it is too small and orphaning the old storage otherwise -
+     * the driver hands out fresh memory instead of waiting for draws still reading the previous grid
+     *
+     * @return capacity of the buffer in bytes
+     */
+    private static long upload(int buffer, long capacity, Buffer data, int elementBytes, int usage) {
+        long size = (long) data.remaining() * elementBytes;
+        if(size > capacity) {
+            capacity = Math.max(size, capacity + capacity / 2);
         }
+        glNamedBufferData(buffer, capacity, usage);
+        nglNamedBufferSubData(buffer, 0, size, MemoryUtil.memAddress(data));
+        return capacity;
+    }
 
-        int positionAttribSlot = 0;
-        glVertexArrayAttribFormat(vao, positionAttribSlot, positionSize, GL_FLOAT, false, 0);
-        glVertexArrayAttribBinding(vao, positionAttribSlot, vertexBindingPoint);
-        glEnableVertexArrayAttrib(vao, positionAttribSlot);
+    /**
+     * (Re)allocates a back buffer for data of a size, its old contents are dropped
+     *
+     * @return capacity of the buffer in bytes
+     */
+    private static long allocate(int buffer, long capacity, long size) {
+        if(size > capacity) {
+            capacity = Math.max(size, capacity + capacity / 2);
+        }
+        glNamedBufferData(buffer, capacity, GL_STATIC_DRAW);
+        return capacity;
+    }
+
+    /** Starts streaming the built grid into the back buffers */
+    private void beginGridUpload() {
+        long positionBytes = (long) grid.getPositions().remaining() * Float.BYTES;
+        backVboCapacity = allocate(backVbo, backVboCapacity, positionBytes);
+        backEboCapacity = allocate(backEbo, backEboCapacity, grid.getIndices().remaining());
+        gridUpload.begin(backVbo, 0, MemoryUtil.memAddress(grid.getPositions()), positionBytes);
+        uploadingGrid = true;
+        uploadingIndices = false;
+    }
+
+    /** Uploads the built grid into the back buffers on the loader context */
+    private void loadGrid() {
+        final int targetVbo = backVbo;
+        final int targetEbo = backEbo;
+        final long targetVboCapacity = backVboCapacity;
+        final long targetEboCapacity = backEboCapacity;
+        gridLoad = loader.submit(() -> new long[]{
+                upload(targetVbo, targetVboCapacity, grid.getPositions(), Float.BYTES, GL_STATIC_DRAW),
+                upload(targetEbo, targetEboCapacity, grid.getIndices(), 1, GL_STATIC_DRAW)
+        });
+        uploadFrames = 0;
+    }
+
+    /** Swaps the buffers once the loader uploaded the grid and its fence signaled */
+    private void pollGridLoad() {
+        uploadFrames++;
+        if(!gridLoad.isReady()) return;
+
+        LoadTask<long[]> finished = gridLoad;
+        gridLoad = null;
+        try {
+            long[] capacities = finished.get();
+            backVboCapacity = capacities[0];
+            backEboCapacity = capacities[1];
+        } catch (RuntimeException e) {
+            //Keep drawing the previous grid
+            System.err.println("Terrain ## Upload failed: " + e.getMessage());
+            subdivisions = drawnSubdivisions;
+            return;
+        }
+        swapGridBuffers();
+        useGrid(uploadFrames + " frames on the loader thread");
+    }
+
+    /** Streams the next slice of the grid, swaps the buffers once it is complete */
+    private void stepGridUpload() {
+        if(!gridUpload.step()) return;
+
+        if(!uploadingIndices) {
+            int positionFrames = gridUpload.getFrames();
+            gridUpload.begin(backEbo, 0, grid.getIndices());
+            uploadingIndices = true;
+            uploadFrames = positionFrames;
+            return;
+        }
+        uploadingGrid = false;
+        uploadFrames += gridUpload.getFrames();
+
+        //Copies issued before complete before the next draw - swap right away
+        swapGridBuffers();
+        useGrid(uploadFrames + " frames");
+    }
+
+    /** Draws from the back buffers holding the uploaded grid from now on */
+    private void swapGridBuffers() {
+        int swapVbo = vbo;
+        vbo = backVbo;
+        backVbo = swapVbo;
+        int swapEbo = ebo;
+        ebo = backEbo;
+        backEbo = swapEbo;
+        long swapCapacity = vboCapacity;
+        vboCapacity = backVboCapacity;
+        backVboCapacity = swapCapacity;
+        swapCapacity = eboCapacity;
+        eboCapacity = backEboCapacity;
+        backEboCapacity = swapCapacity;
+        glVertexArrayVertexBuffer(vao, 0, vbo, 0, TerrainGrid.POSITION_SIZE * FLOAT_SIZE);
+        glVertexArrayElementBuffer(vao, ebo);
+    }
+
+    /**
+     * Takes over the draw parameters of the uploaded grid and resizes the height sources to it
+     *
+     * @param upload how long the upload took, for the report
+     */
+    private void useGrid(String upload) {
+        this.drawnSubdivisions = grid.getSubdivisions();
+
+        //Every chunk starts at the beginning of the shared indices
+        int chunks = grid.getChunkCount();
+        if(chunks > chunkCounts.capacity()) {
+            chunkCounts = MemoryUtil.memRealloc(chunkCounts, chunks);
+            chunkBaseVertices = MemoryUtil.memRealloc(chunkBaseVertices, chunks);
+            MemoryUtil.memFree(chunkOffsets);
+            chunkOffsets = MemoryUtil.memCallocPointer(chunks);
+        }
+        chunkCounts.clear().put(grid.getChunkCounts().duplicate()).flip();
+        chunkBaseVertices.clear().put(grid.getChunkBaseVertices().duplicate()).flip();
+        chunkOffsets.limit(chunks);
+
+        this.primitiveType = grid.getPrimitiveType();
+        this.indexType = grid.getIndexType();
+        this.primitiveRestart = grid.usesPrimitiveRestart();
+
+        if(heightMode == HeightMode.CPU) {
+            heightField.setSubdivisions(drawnSubdivisions);
+            heightsUploaded = false;
+        }
+        if(heightMode == HeightMode.COMPUTE) {
+            computeField.setSubdivisions(drawnSubdivisions);
+        }
+
+        System.out.printf("Terrain ## Subdivisions:%d - Vertices:%d - Build:%.2f ms - Upload:%s%n",
+                drawnSubdivisions, grid.getVertexCount(), grid.getBuildNanos() / 1_000_000.0, upload);
+
+        double triangleListBytes = (double) drawnSubdivisions * drawnSubdivisions * 6 * Integer.BYTES;
+        System.out.printf("Terrain indices ## Mode:%s - Chunks:%d - Stored:%.2f MB - Fetched:%.2f MB (%.1fx less than TRIANGLES_32) - ACMR:%.3f - Cache hits:%.1f%% (FIFO %d)%n",
+                grid.getIndexMode(), chunks, grid.getIndices().remaining() / (1024.0 * 1024.0),
+                grid.getDrawnIndexBytes() / (1024.0 * 1024.0), triangleListBytes / grid.getDrawnIndexBytes(),
+                grid.getAcmr(), grid.getCacheHitRate() * 100f, TerrainGrid.VERTEX_CACHE_SIZE);
+    }
+
+    /**
+     * Streams a finished grid into the GL buffers and starts the next build if the subdivisions changed meanwhile.
+     * The grid is only rebuilt once its upload completed, the upload reads it.
+     */
+    private void updateGrid() {
+        if(gridLoad != null) {
+            pollGridLoad();
+            return;
+        }
+        if(uploadingGrid) {
+            stepGridUpload();
+            return;
+        }
+        if(pendingGrid != null) {
+            if(!pendingGrid.isDone()) return;
+
+            CompletableFuture<TerrainGrid> finished = pendingGrid;
+            pendingGrid = null;
+            if(finished.isCompletedExceptionally()) {
+                //Keep drawing the previous grid
+                finished.exceptionally(e -> {
+                    System.err.println("Terrain ## Rebuild failed: " + e.getMessage());
+                    return null;
+                });
+                subdivisions = drawnSubdivisions;
+                return;
+            }
+            if(loader != null) {
+                loadGrid();
+                return;
+            }
+            beginGridUpload();
+            stepGridUpload();
+            return;
+        }
+
+        if(subdivisions != drawnSubdivisions) {
+            final int target = subdivisions;
+            pendingGrid = CompletableFuture.supplyAsync(() -> {
+                grid.build(target, SIZE, BASE_HEIGHT, indexMode);
+                //Simulate the cache statistics here rather than in the report on the render thread
+                grid.getAcmr();
+                return grid;
+            });
+        }
+    }
+
+    /** @return noise offset of the frame, the vertex shader terrain scrolls by uTime / 3 */
+    private float getScroll() {
+        return staticTerrain ? 0f : (float) glfwGetTime() / 3f;
+    }
+
+    private void updateHeights() {
+        boolean regenerated = heightField.update(getScroll());
+
+        if(regenerated && !heightsUploaded) {
+            System.out.printf("HeightField ## Vertices:%d - Threads:%d - Generated in %.2f ms%n",
+                    heightField.getVertexCount(), heightField.getParallelism(), heightField.getGenerateNanos() / 1_000_000.0);
+        }
+        if(regenerated || !heightsUploaded) {
+            heightVboCapacity = upload(heightVbo, heightVboCapacity, heightField.getVertices(), Float.BYTES, GL_DYNAMIC_DRAW);
+            heightsUploaded = true;
+        }
     }
 
     public void update(float delta) {
         shaderProgram.bind();
 
-        initializeCamera();
-        shaderProgram.uploadFloat("uTime", (float) glfwGetTime());
-
         debounce -= delta;
 
+        //Hold SHIFT to halve/double instead of stepping by one
+        boolean coarseStep = KeyListener.isKeyPressed(GLFW_KEY_LEFT_SHIFT);
         if(KeyListener.isKeyPressed(GLFW_KEY_RIGHT) && debounce < 0 && subdivisions > 1) {
-            subdivisions--;
-            clearQuad();
-            initializeQuad();
+            subdivisions = coarseStep ? Math.max(1, subdivisions / 2) : subdivisions - 1;
             System.out.println("Subdivisions: " + subdivisions);
 
             debounce = 0.4f;
         }
         if(KeyListener.isKeyPressed(GLFW_KEY_LEFT) && debounce < 0) {
-            subdivisions++;
-            clearQuad();
-            initializeQuad();
+            subdivisions = Math.min(maxSubdivisions, coarseStep ? subdivisions * 2 : subdivisions + 1);
             System.out.println("Subdivisions: " + subdivisions);
 
             debounce = 0.4f;
         }
+        updateGrid();
+
+        //GPU time of generating (if any) and drawing the terrain
+        gpuTimer.begin();
+        if(heightMode == HeightMode.CPU) updateHeights();
+        if(heightMode == HeightMode.COMPUTE) {
+            computeField.update(getScroll());
+            computeField.bind();
+            shaderProgram.bind();
+        }
 
-        glBindVertexArray(vao);
-        glDrawElements(GL_TRIANGLES,
-                elementArray.length,
-                GL_UNSIGNED_INT,
-                0
-        );
+        FrustumIntersection frustum = camera.getFrustum();
+        float half = SIZE / 2f;
+        //Nothing to draw while the first grid is still uploading
+        if(drawnSubdivisions > 0 && (frustum == null || frustum.testAab(-half, BASE_HEIGHT, -half, half, BASE_HEIGHT + MAX_RISE, half))) {
+            glBindVertexArray(vao);
+            if(primitiveRestart) glEnable(GL_PRIMITIVE_RESTART_FIXED_INDEX);
+            glMultiDrawElementsBaseVertex(primitiveType, chunkCounts, indexType, chunkOffsets, chunkBaseVertices);
+            if(primitiveRestart) glDisable(GL_PRIMITIVE_RESTART_FIXED_INDEX);
+            RenderStats.countCulling(1, 0);
+        } else {
+            RenderStats.countCulling(0, 1);
+        }
+        gpuTimer.end();
+
+        sinceReport += delta;
+        if(sinceReport >= REPORT_INTERVAL) {
+            System.out.printf("Terrain ## Mode:%s - Vertices:%d - GPU:%.3f ms%n",
+                    heightMode, (drawnSubdivisions + 1) * (drawnSubdivisions + 1), gpuTimer.getAverageMillis());
+            gpuTimer.reset();
+            sinceReport = 0f;
+        }
     }
 
     @Override
@@ -208,17 +483,37 @@ public class TerrainChallenge extends SimpleChallenge {
 
     @Override
     public void disposeCurrentChallenge() {
+        //The worker writes into the grid until it is done, the loader reads it into the back buffers
+        if(pendingGrid != null) pendingGrid.exceptionally(e -> null).join();
+        if(gridLoad != null) {
+            try {
+                gridLoad.join();
+            } catch (RuntimeException e) {
+                //Nothing was uploaded - the buffers are deleted below either way
+            }
+        }
+
         clearQuad();
         shaderProgram.unbind();
         shaderProgram.destroy();
+        grid.destroy();
+        MemoryUtil.memFree(chunkCounts);
+        MemoryUtil.memFree(chunkBaseVertices);
+        MemoryUtil.memFree(chunkOffsets);
+        if(heightField != null) heightField.destroy();
+        if(computeField != null) computeField.destroy();
+        gpuTimer.destroy();
     }
 
     private void clearQuad() {
         glDeleteVertexArrays(vao);
         glDeleteBuffers(vbo);
         glDeleteBuffers(ebo);
+        glDeleteBuffers(backVbo);
+        glDeleteBuffers(backEbo);
+        if(gridUpload != null) gridUpload.destroy();
+        if(heightVbo != 0) glDeleteBuffers(heightVbo);
 
-        glDisableVertexAttribArray(0);
         glBindVertexArray(0);
     }
 
@@ -0,0 +1,154 @@
+package com.ccat.core.challenge;
+
+import com.ccat.core.model.UniformType;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderLibrary;
+import com.ccat.core.renderer.ShaderProgram;
+import com.ccat.core.renderer.TextureLoader;
+import com.ccat.core.renderer.TextureStreamer;
+import com.ccat.core.util.ShapeUtil;
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Streams hundreds of Textures at once and records the render-thread frame times while they load.
+ * Every Texture is its own GL object, shown on a quad of a grid in front of the camera.
+ * Compare runs with and without {@code -Dotome.loaderThread=true}.
+ */
+public class TextureStressChallenge extends SimpleChallenge {
+    private final List<String> paths = List.of(
+            "textures/test_texture_02.jpg",
+            "textures/test_texture_03.png",
+            "textures/test_texture_04.jpg",
+            "textures/awesomeface.png"
+    );
+
+    private final int textureCount;
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
+    private int transformLocation;
+    private final Matrix4f transform = new Matrix4f();
+
+    private TextureLoader[] textures;
+    private long loadStart;
+    private float[] frameTimes = new float[256];
+    private int frames;
+    private boolean reported;
+
+    private int vao;
+    private int vbo;
+    private int ebo;
+    private int elementCount;
+
+    /** @param textureCount Number of separate Textures streamed in */
+    public TextureStressChallenge(int textureCount) {
+        this.textureCount = textureCount;
+
+        final String vertexShaderFilepath = "shaders/vertex/vertex_shader_texture.glsl";
+        final String fragmentShaderFilepath = "shaders/fragment/texture_fragment_shader.glsl";
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath);
+        pendingProgram.thenAccept(program -> {
+            this.transformLocation = program.getUniformLocation(UniformType.TRANSFORM);
+            this.shaderProgram = program;
+        });
+    }
+
+    @Override
+    public void initNewChallenge() {
+        float[] vertexArray = ShapeUtil.getTexturedQuadVertexArray();
+        int[] elementArray = ShapeUtil.getTexturedQuadElementArray();
+        this.elementCount = elementArray.length;
+
+        int positionSize = 3;
+        int textureSize = 2;
+        int vertexBindingPoint = 0;
+
+        this.vao = glCreateVertexArrays();
+        this.vbo = glCreateBuffers();
+        glNamedBufferStorage(vbo, vertexArray, 0);
+        glVertexArrayVertexBuffer(vao, vertexBindingPoint, vbo, 0, (positionSize + textureSize) * FLOAT_SIZE);
+        this.ebo = glCreateBuffers();
+        glNamedBufferStorage(ebo, elementArray, 0);
+        glVertexArrayElementBuffer(vao, ebo);
+
+        int positionAttribSlot = 0;
+        glVertexArrayAttribFormat(vao, positionAttribSlot, positionSize, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, positionAttribSlot, vertexBindingPoint);
+        glEnableVertexArrayAttrib(vao, positionAttribSlot);
+
+        int textureAttribSlot = 1;
+        glVertexArrayAttribFormat(vao, textureAttribSlot, textureSize, GL_FLOAT, false, positionSize * FLOAT_SIZE);
+        glVertexArrayAttribBinding(vao, textureAttribSlot, vertexBindingPoint);
+        glEnableVertexArrayAttrib(vao, textureAttribSlot);
+
+        this.loadStart = System.nanoTime();
+        this.textures = new TextureLoader[textureCount];
+        for (int i = 0; i < textureCount; i++) {
+            textures[i] = TextureStreamer.loadAsync(paths.get(i % paths.size()), GL_LINEAR);
+        }
+    }
+
+    /** Records the frame time until every Texture is ready, then draws */
+    public void update(float delta) {
+        if(!reported) {
+            if(frames == frameTimes.length) frameTimes = Arrays.copyOf(frameTimes, frames * 2);
+            frameTimes[frames++] = delta * 1000f;
+
+            if(Arrays.stream(textures).allMatch(TextureLoader::isReady)) report();
+        }
+        drawCurrentChallenge();
+    }
+
+    private void report() {
+        float[] sorted = Arrays.copyOf(frameTimes, frames);
+        Arrays.sort(sorted);
+        double average = 0;
+        for (float frameTime : sorted) average += frameTime;
+        average /= frames;
+
+        System.out.printf("Texture stress ## Textures:%d - Loaded in %.2f ms - Frames:%d - Avg:%.2f ms - P99:%.2f ms - Max:%.2f ms%n",
+                textureCount, (System.nanoTime() - loadStart) / 1_000_000.0, frames,
+                average, sorted[Math.min(frames - 1, (int) (frames * 0.99f))], sorted[frames - 1]);
+        reported = true;
+    }
+
+    @Override
+    public void drawCurrentChallenge() {
+        //Program still compiling - nothing to draw yet
+        if(shaderProgram == null) return;
+
+        shaderProgram.bind();
+        glBindVertexArray(vao);
+
+        int side = (int) Math.ceil(Math.sqrt(textureCount));
+        float size = 8f / side;
+        for (int i = 0; i < textureCount; i++) {
+            transform.translation((i % side - side / 2f) * size, (i / side - side / 2f) * size + 4f, -2f)
+                    .scale(size * 0.9f);
+            shaderProgram.uploadMat4(transformLocation, transform);
+
+            textures[i].bind(0);
+            glDrawElements(GL_TRIANGLES, elementCount, GL_UNSIGNED_INT, 0);
+            RenderStats.countDrawCall();
+        }
+    }
+
+    @Override
+    public void disposeCurrentChallenge() {
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(vbo);
+        glDeleteBuffers(ebo);
+
+        Arrays.stream(textures).forEach(TextureLoader::destroy);
+        ShaderLibrary.release(pendingProgram);
+    }
+}
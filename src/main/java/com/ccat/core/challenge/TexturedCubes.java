@@ -1,23 +1,62 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.CameraController;
-import com.ccat.core.WindowManager;
+import com.ccat.core.culling.BoundingVolumeHierarchy;
+import com.ccat.core.culling.HiZPyramid;
+import com.ccat.core.renderer.GLLoaderThread;
+import com.ccat.core.renderer.RenderQueue;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.TextureAtlas;
 import com.ccat.core.renderer.TextureLoader;
-import com.ccat.core.util.FileReaderUtil;
+import com.ccat.core.renderer.TextureSet;
+import com.ccat.core.renderer.TextureStreamer;
+import com.ccat.core.scene.EntityStore;
+import org.joml.FrustumIntersection;
 import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opengl.GL11.*;
 
 public class TexturedCubes {
-    private final HashMap<TexturesChallenge, Vector3f> cubes = new HashMap<>();
-    private final List<TextureLoader> textures = new ArrayList<>();
+    /**
+     * PER_OBJECT: one draw per cube, sorted by a RenderQueue so Texture and VAO switch once per texture -
+     * INSTANCED: one shared mesh and TextureSet, one draw -
+     * ATLAS: like INSTANCED, but all textures packed into a TextureAtlas
+     */
+    public enum RenderMode {
+        PER_OBJECT,
+        INSTANCED,
+        ATLAS
+    }
+
+    /** Cube half extent, see ShapeUtil.getTexturedCubeVertexArray */
+    private static final float HALF_SIZE = 0.5f;
+    /** -Dotome.gpuCulling=true: INSTANCED and ATLAS cubes are culled by a compute pass instead of the BVH */
+    private static final boolean GPU_CULLING = Boolean.getBoolean("otome.gpuCulling");
+    private static final int OPAQUE_PASS = 0;
+    /** Distances covered by the sort keys, the far plane of the CameraController */
+    private static final float QUEUE_DEPTH_RANGE = 10000f;
+
+    /** Cubes as entities, the material is the index of the texture in paths */
+    private final EntityStore cubes;
+    /** PER_OBJECT renderers by material */
+    private final List<TexturesChallenge> materials = new ArrayList<>();
+    private final Vector3f drawPosition = new Vector3f();
+    /** PER_OBJECT draws of the frame, sorted by texture and then front to back */
+    private final RenderQueue queue = new RenderQueue();
+    /** Cube boxes by entity id - the instance at the same index */
+    private final BoundingVolumeHierarchy bounds = new BoundingVolumeHierarchy();
+    private final int[] allCubes;
+    private CompletableFuture<TextureSet> pendingTextureSet;
+    private TextureSet textureSet;
+    private InstancedCubeBatch instancedCubes;
+    /** Extracted instances until the batch takes them over */
+    private ByteBuffer pendingInstances;
 
     private final List<String> paths = List.of(
             "textures/test_texture_03.png",
@@ -26,38 +65,165 @@ public class TexturedCubes {
     );
 
 
-    public TexturedCubes(WindowManager window, int amount) {
-            paths.forEach( f -> {
-                try {
-                    ByteBuffer bufferedImg = FileReaderUtil.readImage(f);
-                    textures.add(new TextureLoader(bufferedImg, GL_RGB, GL_NEAREST));
-                } catch (IOException e) {
-                    throw new RuntimeException("Unable to load Texture image from path.");
-                }
-            });
+    public TexturedCubes(int amount) {
+        this(amount, RenderMode.INSTANCED);
+    }
+
+    /**
+     * @param amount Cubes per side of the square grid, amount^2 cubes in total
+     * @param mode Render path used for the cubes
+     */
+    public TexturedCubes(int amount, RenderMode mode) {
+        this(amount, mode, null);
+    }
+
+    /**
+     * @param amount Cubes per side of the square grid, amount^2 cubes in total
+     * @param mode Render path used for the cubes
+     * @param loader fills the INSTANCED and ATLAS buffers on its shared context, null fills them on the render thread
+     */
+    public TexturedCubes(int amount, RenderMode mode, GLLoaderThread loader) {
+        //Textures stream in on the TextureStreamer - cubes show a placeholder or are skipped until then
+        if(mode == RenderMode.ATLAS) {
+            this.pendingTextureSet = TextureStreamer.loadTextureSetAsync(paths,
+                    images -> new TextureAtlas(images, 1024, 4, GL_NEAREST));
+        } else if(mode == RenderMode.INSTANCED) {
+            this.pendingTextureSet = TextureStreamer.loadTextureSetAsync(paths,
+                    images -> TextureLoader.buildTextureSet(images, GL_NEAREST));
+        }
 
         float offset = (float)amount / 2;
         Random r = new Random();
-        CameraController camera = new CameraController(new Vector3f(0f, 0f, 4f), window.getWidth(), window.getHeight());
+
+        int cubeCount = amount * amount;
+        this.cubes = new EntityStore(cubeCount);
+        this.allCubes = new int[cubeCount];
 
         for (int z = 0; z < amount; z++) {
             for (int x = 0; x < amount; x++) {
+                int index = z * amount + x;
+                int randomNum = r.nextInt(0, paths.size());
+                int entity = cubes.create((float)x - offset, 0f, (float)z - offset, HALF_SIZE, 0, randomNum);
+                int id = bounds.add((float)x - offset - HALF_SIZE, -HALF_SIZE, (float)z - offset - HALF_SIZE,
+                        (float)x - offset + HALF_SIZE, HALF_SIZE, (float)z - offset + HALF_SIZE);
+                if(id != entity) {
+                    throw new IllegalStateException("Culling id " + id + " differs from entity " + entity);
+                }
+                allCubes[index] = entity;
+            }
+        }
 
-                Vector3f position = new Vector3f((float)x-offset, 0f, (float)z-offset);
-                //10cubes
-                int randomNum = r.nextInt(0, textures.size());
-                TexturesChallenge cube = new TexturesChallenge(window, camera, textures.get(randomNum));
-                cubes.put(cube, position);
-                cube.initNewChallenge();
+        if(mode == RenderMode.PER_OBJECT) {
+            for (String path : paths) {
+                TexturesChallenge material = new TexturesChallenge(path, GL_NEAREST);
+                material.initNewChallenge();
+                materials.add(material);
             }
+        } else {
+            //Instance i is entity i, the BVH ids index the instances directly
+            ByteBuffer instances = MemoryUtil.memAlloc(cubeCount * EntityStore.INSTANCE_BYTES);
+            instances.limit(cubes.extractInstances(allCubes, cubeCount, MemoryUtil.memAddress(instances)) * EntityStore.INSTANCE_BYTES);
+            this.pendingInstances = instances;
+            pendingTextureSet.thenAccept(set -> {
+                this.textureSet = set;
+                this.pendingInstances = null;
+                this.instancedCubes = new InstancedCubeBatch(set, instances, GPU_CULLING, loader);
+                System.out.printf("Cubes ## Textures ready:%s%n", set.getShaderDefine());
+            });
         }
+        System.out.printf("Cubes ## Mode:%s - Count:%d - GPU culling:%b%n", mode, cubeCount,
+                GPU_CULLING && mode != RenderMode.PER_OBJECT);
+    }
+
+    /**
+     * Draws the cubes inside the frustum
+     *
+     * @param frustum view frustum of the frame, null draws every cube
+     */
+    public void drawCubes(FrustumIntersection frustum) {
+        drawCubes(frustum, null);
+    }
+
+    /**
+     * Draws the cubes inside the frustum and, with GPU culling, not hidden in the last frame's depth
+     *
+     * @param frustum view frustum of the frame, null draws every cube
+     * @param occluders depth of the last frame, only used by GPU culling - null skips the occlusion test
+     */
+    public void drawCubes(FrustumIntersection frustum, HiZPyramid occluders) {
+        drawCubes(frustum, occluders, null);
     }
 
-    public void drawCubes() {
-        cubes.forEach(TexturesChallenge::drawCube);
+    /**
+     * Draws the cubes inside the frustum and, with GPU culling, not hidden in the last frame's depth
+     *
+     * @param frustum view frustum of the frame, null draws every cube
+     * @param occluders depth of the last frame, only used by GPU culling - null skips the occlusion test
+     * @param eye camera position to order PER_OBJECT cubes front to back, null keeps the texture order only
+     */
+    public void drawCubes(FrustumIntersection frustum, HiZPyramid occluders, Vector3f eye) {
+        if(pendingTextureSet != null && GPU_CULLING) {
+            //Culled on the GPU - no per-cube work here
+            if(instancedCubes != null) instancedCubes.drawGpuCulled(frustum != null, occluders);
+            return;
+        }
+
+        int[] visible = allCubes;
+        int visibleCount = allCubes.length;
+        if(frustum != null) {
+            visibleCount = bounds.query(frustum);
+            visible = bounds.getVisible();
+        }
+        RenderStats.countCulling(visibleCount, allCubes.length - visibleCount);
+
+        if(pendingTextureSet != null) {
+            //TextureSet still streaming - nothing to draw yet
+            if(instancedCubes != null) instancedCubes.draw(visible, visibleCount);
+            return;
+        }
+        float[] x = cubes.getPositionX();
+        float[] y = cubes.getPositionY();
+        float[] z = cubes.getPositionZ();
+        int[] material = cubes.getMaterial();
+        queue.clear();
+        for (int i = 0; i < visibleCount; i++) {
+            int slot = cubes.slotOf(visible[i]);
+            float depth = eye == null ? 0f : eye.distance(x[slot], y[slot], z[slot]);
+            //Every texture's renderer owns its VAO - the mesh follows the material
+            int program = materials.get(material[slot]).getProgramSortId();
+            queue.submit(RenderQueue.opaqueKey(OPAQUE_PASS, program, material[slot], material[slot], depth, QUEUE_DEPTH_RANGE), visible[i]);
+        }
+        queue.sort();
+
+        //Program, Texture and VAO are bound once per run of equal state
+        long boundState = -1L;
+        boolean drawable = false;
+        for (int i = 0; i < queue.size(); i++) {
+            long key = queue.getKey(i);
+            TexturesChallenge renderer = materials.get(RenderQueue.materialOf(key));
+            if(RenderQueue.stateOf(key) != boundState) {
+                boundState = RenderQueue.stateOf(key);
+                drawable = renderer.bindState();
+            }
+            if(!drawable) continue;
+
+            int slot = cubes.slotOf(queue.getPayload(i));
+            renderer.drawBound(drawPosition.set(x[slot], y[slot], z[slot]));
+        }
     }
 
     public void disposeCubes() {
-        cubes.forEach((c,v) -> c.disposeCurrentChallenge());
+        if(pendingTextureSet != null) {
+            //Not streamed in yet - the TextureStreamer destroys a set nobody waits for anymore
+            if(pendingTextureSet.cancel(false) || instancedCubes == null) {
+                if(pendingInstances != null) MemoryUtil.memFree(pendingInstances);
+                return;
+            }
+
+            instancedCubes.dispose();
+            textureSet.destroy();
+            return;
+        }
+        materials.forEach(TexturesChallenge::disposeCurrentChallenge);
     }
 }
@@ -1,20 +1,20 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.WindowManager;
 import com.ccat.core.model.UniformType;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderLibrary;
 import com.ccat.core.renderer.ShaderProgram;
 import com.ccat.core.renderer.TextureLoader;
-import com.ccat.core.util.FileReaderUtil;
+import com.ccat.core.renderer.TextureManager;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
-import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
@@ -41,27 +41,36 @@ public class TexturedPlane extends SimpleChallenge {
             "textures/awesomeface.png"
     );
 
-    private final ShaderProgram shaderProgram;
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
 
     private TextureLoader[] textures;
+    private int[] textureLocations;
+    private int transformLocation;
+    private final Matrix4f transform = new Matrix4f();
     private int vao;
     private int vbo;
     private int ebo;
 
-    public TexturedPlane(WindowManager window) {
+    public TexturedPlane() {
         final String vertexShaderFilepath = "shaders/vertex/vertex_shader_texture.glsl";
         final String fragmentShaderFilepath = "shaders/fragment/combined_texture_fragment_shader.glsl";
-        this.shaderProgram = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
-
-        shaderProgram.bind();
-
-        float fov = 45f;
-        float zNear = 0.01f;
-        float zFar = 10000f;
-        float aspect = (float) window.getWidth() / (float) window.getHeight();
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath);
+        pendingProgram.thenAccept(program -> {
+            this.transformLocation = program.getUniformLocation(UniformType.TRANSFORM);
+            this.textureLocations = new int[paths.size()];
+            for (int index = 0; index < paths.size(); index++) {
+                String uniform = UniformType.TEXTURE.getName() + (index + 1);
+                textureLocations[index] = program.getUniformLocation(uniform);
+            }
 
-        Matrix4f projection = new Matrix4f().perspective(fov, aspect, zNear, zFar);
-        shaderProgram.uploadMat4(UniformType.PROJECTION.getName(), projection);
+            //Sampler units are program state - set them once instead of every frame
+            program.bind();
+            for (int index = 0; index < textureLocations.length; index++) {
+                program.uploadInt(textureLocations[index], index);
+            }
+            this.shaderProgram = program;
+        });
     }
 
     @Override
@@ -112,52 +121,49 @@ public class TexturedPlane extends SimpleChallenge {
 
     /**
      * @param paths filepaths to texture
-     * @return TextureLoader Objects from designated paths
+     * @return TextureLoader Objects from designated paths, showing a placeholder until streamed in
      */
     private TextureLoader[] createTextures(List<String> paths) {
         final TextureLoader[] textures = new TextureLoader[paths.size()];
 
         for (int i = 0; i < paths.size(); i++) {
-            String file = paths.get(i);
-            int type = file.contains("png") ? GL_RGBA : GL_RGB;
-
-            System.out.println(file + " : " + type);
-            try {
-                ByteBuffer bufferedImg = FileReaderUtil.readImage(file);
-
-                textures[i] = new TextureLoader(bufferedImg, type, GL_LINEAR);
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to load Texture image from path.");
-            }
+            textures[i] = TextureManager.acquire(paths.get(i), GL_LINEAR);
         }
 
         return textures;
     }
 
+    /**
+     * Draws the plane if it is inside the frustum
+     *
+     * @param frustum view frustum of the frame, null always draws
+     */
+    public void draw(FrustumIntersection frustum) {
+        //Unit quad on the xy-plane at the origin
+        if(frustum != null && !frustum.testAab(-0.5f, -0.5f, 0f, 0.5f, 0.5f, 0f)) {
+            RenderStats.countCulling(0, 1);
+            return;
+        }
+        RenderStats.countCulling(1, 0);
+        drawCurrentChallenge();
+    }
+
     @Override
     public void drawCurrentChallenge() {
+        //Program still compiling - nothing to draw yet
+        if(shaderProgram == null) return;
+
         shaderProgram.bind();
         //Transformation
-        Matrix4f transform = new Matrix4f()
+        transform.identity()
                 .scale(1f)
                 .rotate(0f, 0f, 0f, 0f)
                 .translate(0f,0f,0f);
-        shaderProgram.uploadMat4(UniformType.TRANSFORM.getName(), transform);
-
-        //Camera:
-        Vector3f eye = new Vector3f(0f, 0f, 2f);
-        Vector3f center = new Vector3f(0f, 0f, 0f);
-        Vector3f up = new Vector3f(0f, 1f, 0f);
-        Matrix4f view = new Matrix4f().lookAt(eye, center, up);
-        shaderProgram.uploadMat4(UniformType.VIEW.getName(), view);
+        shaderProgram.uploadMat4(transformLocation, transform);
 
         //Texture
         for (int index = 0; index < textures.length; index++) {
             textures[index].bind(index);
-
-            //Set the Uniform
-            String uniform = UniformType.TEXTURE.getName() + (index + 1);
-            shaderProgram.uploadInt(uniform, index);
         }
 
         //Set uniforms
@@ -170,6 +176,7 @@ public class TexturedPlane extends SimpleChallenge {
                 GL_UNSIGNED_INT,
                 0
         );
+        RenderStats.countDrawCall();
     }
 
     @Override
@@ -181,12 +188,11 @@ public class TexturedPlane extends SimpleChallenge {
         glDisableVertexAttribArray(0);
         glBindVertexArray(0);
 
-        shaderProgram.unbind();
-        shaderProgram.destroy();
+        ShaderLibrary.release(pendingProgram);
 
         Arrays.stream(textures).forEach(texture -> {
             texture.unbind();
-            texture.destroy();
+            TextureManager.release(texture);
         });
     }
 }
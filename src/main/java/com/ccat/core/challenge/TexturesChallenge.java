@@ -1,20 +1,20 @@
 package com.ccat.core.challenge;
 
-import com.ccat.core.CameraController;
-import com.ccat.core.WindowManager;
 import com.ccat.core.model.UniformType;
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderLibrary;
 import com.ccat.core.renderer.ShaderProgram;
 import com.ccat.core.renderer.TextureLoader;
+import com.ccat.core.renderer.TextureManager;
+import com.ccat.core.util.ShapeUtil;
 import org.joml.Matrix4f;
-import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
 
-import static org.lwjgl.glfw.GLFW.glfwGetTime;
 import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
 import static org.lwjgl.opengl.GL30.glBindVertexArray;
@@ -22,103 +22,32 @@ import static org.lwjgl.opengl.GL30.glGenVertexArrays;
 import static org.lwjgl.opengl.GL45.*;
 
 public class TexturesChallenge extends SimpleChallenge {
-    private final ShaderProgram shaderProgram;
-    private float[] vertexArray = new float[]{
-            // pos                      texCoords(u,v)
-            -0.5f, -0.5f, -0.5f,        0.0f, 0.0f,     //bottom-left
-             0.5f, -0.5f, -0.5f,        1.0f, 0.0f,     //bottom-right
-            -0.5f,  0.5f, -0.5f,        0.0f, 1.0f,     //top-left
-             0.5f,  0.5f, -0.5f,        1.0f, 1.0f,      //top-right
-
-            -0.5f, -0.5f, 0.5f,         0.0f, 0.0f,     //bottom-left
-             0.5f, -0.5f, 0.5f,         1.0f, 0.0f,     //bottom-right
-            -0.5f,  0.5f, 0.5f,         0.0f, 1.0f,     //top-left
-             0.5f,  0.5f, 0.5f,         1.0f, 1.0f      //top-right
-    };
-    private final int[] elementArray = new int[]{
-            1, 3, 2,    1, 2, 0,    //BACK
-            5, 7, 6,    5, 6, 4,    //FRONT
-            7, 3, 2,    7, 2, 6,    //TOP
-            5, 1, 0,    5, 0, 4,    //BOTTOM
-            4, 6, 2,    4, 2, 0,    //LEFT
-            5, 7, 3,    5, 3, 1     //RIGHT
-    };
-
-    private void generateCube() {
-        Vector3f[] verts = {
-                new Vector3f(-0.5f, -0.5f, -0.5f),
-                new Vector3f(0.5f, -0.5f, -0.5f),
-                new Vector3f(-0.5f,  0.5f, -0.5f),
-                new Vector3f(0.5f,  0.5f, -0.5f),
-
-                new Vector3f(-0.5f, -0.5f, 0.5f),
-                new Vector3f(0.5f, -0.5f, 0.5f),
-                new Vector3f(-0.5f,  0.5f, 0.5f),
-                new Vector3f(0.5f,  0.5f, 0.5f)
-        };
-
-        Vector2f[] texCoords = {
-                new Vector2f(1.0f, 0.0f),
-                new Vector2f(1.0f, 1.0f),
-                new Vector2f(0.0f, 1.0f),
-
-                new Vector2f(1.0f, 0.0f),
-                new Vector2f(0.0f, 1.0f),
-                new Vector2f(0.0f, 0.0f),
-        };
-
-        LinkedList<Float> floats = new LinkedList<>();
-
-        for (int i = 0; i < elementArray.length; i++) {
-            Vector3f vertices = verts[elementArray[i]];
-            Vector2f texCoord = texCoords[i % 6];
-
-            floats.add(vertices.x);
-            floats.add(vertices.y);
-            floats.add(vertices.z);
-
-            floats.add(texCoord.x);
-            floats.add(texCoord.y);
-        }
-
-        float[] floatArray = new float[floats.size()];
-        for (int i = 0; i < floats.size(); i++) {
-            floatArray[i] = floats.get(i);
-        }
-
-        this.vertexArray = floatArray;
-    }
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
+    private final float[] vertexArray = ShapeUtil.getTexturedCubeVertexArray();
+    private final int[] elementArray = ShapeUtil.getCubeElementArray();
 
     private final TextureLoader texture;
-    private final CameraController camera;
+    private int transformLocation;
+    private final Matrix4f transform = new Matrix4f();
     private int vao;
     private int vbo;
     private int ebo;
 
-    public TexturesChallenge(WindowManager window, CameraController camera, TextureLoader texture) {
-        generateCube();
-
-        this.camera = camera;
-        this.texture = texture;
+    /**
+     * @param texturePath filepath of the cube's Texture, shared through the TextureManager
+     * @param filter min/mag filter
+     */
+    public TexturesChallenge(String texturePath, int filter) {
+        this.texture = TextureManager.acquire(texturePath, filter);
 
         final String vertexShaderFilepath = "shaders/vertex/vertex_shader_texture.glsl";
         final String fragmentShaderFilepath = "shaders/fragment/texture_fragment_shader.glsl";
-        this.shaderProgram = new ShaderProgram(vertexShaderFilepath, fragmentShaderFilepath);
-
-        shaderProgram.bind();
-        initializeProjection(window.getWidth(), window.getHeight());
-    }
-
-    private void initializeProjection(int windowWidth, int windowHeight) {
-//        float fov = 45f;
-//        float zNear = 0.01f;
-//        float zFar = 10000f;
-//        float aspect = (float) windowWidth / (float) windowHeight;
-//
-//        Matrix4f projection = new Matrix4f();
-//        projection.perspective(fov, aspect, zNear, zFar);
-
-        shaderProgram.uploadMat4(UniformType.PROJECTION.getName(), camera.getProjection());
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath);
+        pendingProgram.thenAccept(program -> {
+            this.shaderProgram = program;
+            this.transformLocation = program.getUniformLocation(UniformType.TRANSFORM);
+        });
     }
 
     private void initializeCube() {
@@ -172,37 +101,46 @@ public class TexturesChallenge extends SimpleChallenge {
     public void drawCurrentChallenge() { }
 
     public void drawCube(Vector3f position) {
-        shaderProgram.bind();
-
-
-        //Transformation
-        Matrix4f transform = new Matrix4f()
-                .scale(1f)
-                .rotate(0f, 0f, 0f, 0f)
-                .translate(position);
-        shaderProgram.uploadMat4(UniformType.TRANSFORM.getName(), transform);
-
+        if(bindState()) drawBound(position);
+    }
 
-        //Camera
-        float radius = 10.0f;
-        float camX = (float) (Math.sin(glfwGetTime()) * radius);
-        float camZ = (float) (Math.cos(glfwGetTime()) * radius);
+    /**
+     * Binds program, Texture and VAO - cubes drawn in a row with {@link #drawBound} share them
+     *
+     * @return false while the program is still compiling
+     */
+    public boolean bindState() {
+        //Program still compiling - nothing to draw yet
+        if(shaderProgram == null) return false;
 
-//        Vector3f cameraPos = new Vector3f(camX, 4f, camZ);
-//        Vector3f cameraLookAt = new Vector3f(0.0f, 0.0f, 0.0f);
-//        Vector3f up = new Vector3f(0.0f, 1.0f, 0.0f);
-//
-//        Matrix4f view = new Matrix4f().lookAt(cameraPos, cameraLookAt, up);
-        Matrix4f view = camera.updateCameraPos(new Vector3f(camX, 4f, camZ));
-        shaderProgram.uploadMat4(UniformType.VIEW.getName(), view);
+        shaderProgram.bind();
 
+        //Camera: view/projection come from the per-frame Camera Uniform Block
 
 //        Texture
         int textureSlot = 0;
         texture.bind(textureSlot);
 
         glBindVertexArray(vao);
-        glDrawArrays(GL_TRIANGLES, 0, vertexArray.length);
+        return true;
+    }
+
+    /** Draws a cube with the state of the last successful {@link #bindState} */
+    public void drawBound(Vector3f position) {
+        //Transformation
+        transform.identity()
+                .scale(1f)
+                .rotate(0f, 0f, 0f, 0f)
+                .translate(position);
+        shaderProgram.uploadMat4(transformLocation, transform);
+
+        glDrawArrays(GL_TRIANGLES, 0, vertexArray.length / 5);
+        RenderStats.countDrawCall();
+    }
+
+    /** @return sort id of the Program for sort keys, 0 while it is still compiling */
+    public int getProgramSortId() {
+        return shaderProgram == null ? 0 : ShaderLibrary.getSortId(shaderProgram);
     }
 
     @Override
@@ -214,9 +152,9 @@ public class TexturesChallenge extends SimpleChallenge {
         glDisableVertexAttribArray(0);
         glBindVertexArray(0);
 
-        shaderProgram.unbind();
         texture.unbind();
-        shaderProgram.destroy();
-        texture.destroy();
+        ShaderLibrary.release(pendingProgram);
+        //Shared with other cubes - the manager decides when it is destroyed
+        TextureManager.release(texture);
     }
 }
@@ -0,0 +1,393 @@
+package com.ccat.core.culling;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bounding volume hierarchy over the axis-aligned boxes of scene objects, answering frustum queries
+ * without testing every object: subtrees outside the frustum are skipped, subtrees fully inside are
+ * taken as a whole.
+ * The tree is built top-down, splitting every node at the median of the longest axis of its centroids,
+ * with up to {@link #LEAF_SIZE} objects per leaf. Moving objects only refits the boxes of the existing tree:
+ * the paths from their leaves to the root, or every node once many leaves moved.
+ * Once the refitted tree's summed box surface grew {@link #REBUILD_RATIO} times beyond that of the
+ * freshly built one, queries get too loose and the tree is rebuilt.
+ */
+public class BoundingVolumeHierarchy {
+    /** minX, minY, minZ, maxX, maxY, maxZ */
+    private static final int BOX_FLOATS = 6;
+    private static final int LEAF_SIZE = 4;
+    private static final float REBUILD_RATIO = 1.5f;
+    /** Above this share of moved leaves one pass over all nodes beats walking every leaf's path */
+    private static final int FULL_REFIT_DIVISOR = 8;
+    /** Median splits halve every node - deep enough for any int count */
+    private static final int MAX_DEPTH = 64;
+
+    //Object boxes by id
+    private float[] objectBounds = new float[16 * BOX_FLOATS];
+    private int objectCount;
+
+    //Nodes in depth-first order, the left child directly follows its parent.
+    //Every node covers a contiguous range of the object order, leaves have no right child (0).
+    private float[] nodeBounds = new float[0];
+    private int[] nodeFirst = new int[0];
+    private int[] nodeCount = new int[0];
+    private int[] nodeRight = new int[0];
+    private int[] nodeParent = new int[0];
+    private int nodeTotal;
+    private int[] leafOf = new int[0];
+    private int[] order = new int[0];
+    /** Centroids by position in the order, swapped along with it so the build reads them sequentially */
+    private float[] centroids = new float[0];
+
+    private boolean structureChanged;
+    private int[] movedLeaves = new int[0];
+    private boolean[] leafMoved = new boolean[0];
+    private int movedCount;
+    private float builtCost;
+    private float totalArea;
+    private float cost;
+    private int rebuilds;
+    private int refits;
+
+    private final int[] stack = new int[MAX_DEPTH];
+    private int[] visible = new int[16];
+    private int visibleCount;
+    private int testedNodes;
+
+    /**
+     * Adds an object, the tree is rebuilt before the next query
+     *
+     * @return id of the object
+     */
+    public int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if((objectCount + 1) * BOX_FLOATS > objectBounds.length) {
+            objectBounds = Arrays.copyOf(objectBounds, objectBounds.length * 2);
+        }
+        int id = objectCount++;
+        setBounds(id, minX, minY, minZ, maxX, maxY, maxZ);
+        structureChanged = true;
+        return id;
+    }
+
+    /** Adds an object by its bounding sphere, stored as the enclosing box */
+    public int addSphere(float x, float y, float z, float radius) {
+        return add(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+    }
+
+    /** Updates the box of a moved object, the tree is refitted before the next query */
+    public void move(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        Objects.checkIndex(id, objectCount);
+        setBounds(id, minX, minY, minZ, maxX, maxY, maxZ);
+        //Added objects have no leaf yet - the pending build covers them
+        if(structureChanged) return;
+
+        int leaf = leafOf[id];
+        if(!leafMoved[leaf]) {
+            leafMoved[leaf] = true;
+            movedLeaves[movedCount++] = leaf;
+        }
+    }
+
+    private void setBounds(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int o = id * BOX_FLOATS;
+        objectBounds[o] = minX;
+        objectBounds[o + 1] = minY;
+        objectBounds[o + 2] = minZ;
+        objectBounds[o + 3] = maxX;
+        objectBounds[o + 4] = maxY;
+        objectBounds[o + 5] = maxZ;
+    }
+
+    /** Removes every object */
+    public void clear() {
+        objectCount = 0;
+        nodeTotal = 0;
+        visibleCount = 0;
+        structureChanged = false;
+        clearMoved();
+    }
+
+    /** Applies added and moved objects - done by the queries, call it to keep that work out of them */
+    public void update() {
+        if(structureChanged) {
+            build();
+        } else if(movedCount > 0) {
+            if(movedCount > nodeTotal / FULL_REFIT_DIVISOR) {
+                refit();
+            } else {
+                for (int i = 0; i < movedCount; i++) refitPath(movedLeaves[i]);
+                updateCost();
+            }
+            refits++;
+            if(cost > builtCost * REBUILD_RATIO) build();
+        }
+        structureChanged = false;
+        clearMoved();
+    }
+
+    private void clearMoved() {
+        for (int i = 0; i < movedCount; i++) leafMoved[movedLeaves[i]] = false;
+        movedCount = 0;
+    }
+
+    private void build() {
+        clearMoved();
+        //Every leaf holds at least one object
+        int maxNodes = Math.max(1, 2 * objectCount - 1);
+        if(nodeCount.length < maxNodes) {
+            nodeBounds = new float[maxNodes * BOX_FLOATS];
+            nodeFirst = new int[maxNodes];
+            nodeCount = new int[maxNodes];
+            nodeRight = new int[maxNodes];
+            nodeParent = new int[maxNodes];
+            movedLeaves = new int[maxNodes];
+            leafMoved = new boolean[maxNodes];
+        }
+        if(order.length < objectCount) {
+            order = new int[objectCount];
+            centroids = new float[objectCount * 3];
+            leafOf = new int[objectCount];
+        }
+
+        for (int id = 0; id < objectCount; id++) {
+            order[id] = id;
+            int o = id * BOX_FLOATS;
+            centroids[id * 3] = (objectBounds[o] + objectBounds[o + 3]) * 0.5f;
+            centroids[id * 3 + 1] = (objectBounds[o + 1] + objectBounds[o + 4]) * 0.5f;
+            centroids[id * 3 + 2] = (objectBounds[o + 2] + objectBounds[o + 5]) * 0.5f;
+        }
+
+        nodeTotal = 0;
+        if(objectCount > 0) split(0, objectCount, 0);
+
+        refit();
+        builtCost = cost;
+        rebuilds++;
+    }
+
+    /** Creates the node over order[first, first + count) and its subtree, the boxes are set by the refit */
+    private int split(int first, int count, int parent) {
+        int node = nodeTotal++;
+        nodeFirst[node] = first;
+        nodeCount[node] = count;
+        nodeRight[node] = 0;
+        nodeParent[node] = parent;
+        if(count <= LEAF_SIZE) {
+            for (int i = first; i < first + count; i++) leafOf[order[i]] = node;
+            return node;
+        }
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = first; i < first + count; i++) {
+            int c = i * 3;
+            minX = Math.min(minX, centroids[c]);
+            minY = Math.min(minY, centroids[c + 1]);
+            minZ = Math.min(minZ, centroids[c + 2]);
+            maxX = Math.max(maxX, centroids[c]);
+            maxY = Math.max(maxY, centroids[c + 1]);
+            maxZ = Math.max(maxZ, centroids[c + 2]);
+        }
+        float extentX = maxX - minX, extentY = maxY - minY, extentZ = maxZ - minZ;
+        int axis = extentX >= extentY && extentX >= extentZ ? 0 : extentY >= extentZ ? 1 : 2;
+
+        int half = count / 2;
+        selectMedian(first, first + count - 1, first + half, axis);
+
+        split(first, half, node);
+        nodeRight[node] = split(first + half, count - half, node);
+        return node;
+    }
+
+    /** Partially sorts order[left, right] so the object at k has the k-th smallest centroid on the axis */
+    private void selectMedian(int left, int right, int k, int axis) {
+        while(right > left) {
+            float pivot = centroids[((left + right) >>> 1) * 3 + axis];
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(centroids[i * 3 + axis] < pivot) i++;
+                while(centroids[j * 3 + axis] > pivot) j--;
+                if(i <= j) swap(i++, j--);
+            }
+            if(k <= j) right = j;
+            else if(k >= i) left = i;
+            else return;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = order[i];
+        order[i] = order[j];
+        order[j] = id;
+        for (int axis = 0; axis < 3; axis++) {
+            float centroid = centroids[i * 3 + axis];
+            centroids[i * 3 + axis] = centroids[j * 3 + axis];
+            centroids[j * 3 + axis] = centroid;
+        }
+    }
+
+    /** Recomputes every node box bottom-up - children always come after their parent */
+    private void refit() {
+        totalArea = 0f;
+        for (int node = nodeTotal - 1; node >= 0; node--) {
+            fit(node);
+            totalArea += surfaceArea(node * BOX_FLOATS);
+        }
+        updateCost();
+    }
+
+    /** Recomputes the boxes from a moved leaf up to the root */
+    private void refitPath(int node) {
+        while(true) {
+            float previousArea = surfaceArea(node * BOX_FLOATS);
+            fit(node);
+            totalArea += surfaceArea(node * BOX_FLOATS) - previousArea;
+            if(node == 0) return;
+            node = nodeParent[node];
+        }
+    }
+
+    /** Sets the node box to enclose its objects or its children */
+    private void fit(int node) {
+        int o = node * BOX_FLOATS;
+        if(nodeRight[node] == 0) {
+            Arrays.fill(nodeBounds, o, o + 3, Float.POSITIVE_INFINITY);
+            Arrays.fill(nodeBounds, o + 3, o + 6, Float.NEGATIVE_INFINITY);
+            for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+                union(nodeBounds, o, objectBounds, order[i] * BOX_FLOATS);
+            }
+        } else {
+            System.arraycopy(nodeBounds, (node + 1) * BOX_FLOATS, nodeBounds, o, BOX_FLOATS);
+            union(nodeBounds, o, nodeBounds, nodeRight[node] * BOX_FLOATS);
+        }
+    }
+
+    private void updateCost() {
+        float rootArea = nodeTotal > 0 ? surfaceArea(0) : 0f;
+        cost = rootArea > 0f ? totalArea / rootArea : 0f;
+    }
+
+    private static void union(float[] target, int t, float[] source, int s) {
+        for (int axis = 0; axis < 3; axis++) {
+            target[t + axis] = Math.min(target[t + axis], source[s + axis]);
+            target[t + 3 + axis] = Math.max(target[t + 3 + axis], source[s + 3 + axis]);
+        }
+    }
+
+    private float surfaceArea(int o) {
+        float x = nodeBounds[o + 3] - nodeBounds[o];
+        float y = nodeBounds[o + 4] - nodeBounds[o + 1];
+        float z = nodeBounds[o + 5] - nodeBounds[o + 2];
+        return 2f * (x * y + y * z + z * x);
+    }
+
+    /**
+     * Collects the objects whose box intersects the frustum
+     *
+     * @return number of visible objects, their ids are the first entries of {@link #getVisible()}
+     */
+    public int query(FrustumIntersection frustum) {
+        update();
+        ensureVisibleCapacity();
+        visibleCount = 0;
+        testedNodes = 0;
+        if(nodeTotal == 0) return 0;
+
+        int top = 0;
+        stack[top++] = 0;
+        while(top > 0) {
+            int node = stack[--top];
+            int o = node * BOX_FLOATS;
+            testedNodes++;
+
+            int result = frustum.intersectAab(nodeBounds[o], nodeBounds[o + 1], nodeBounds[o + 2],
+                    nodeBounds[o + 3], nodeBounds[o + 4], nodeBounds[o + 5]);
+            if(result == FrustumIntersection.INSIDE) {
+                //Whole subtree visible - its objects are contiguous in the order
+                System.arraycopy(order, nodeFirst[node], visible, visibleCount, nodeCount[node]);
+                visibleCount += nodeCount[node];
+            } else if(result == FrustumIntersection.INTERSECT) {
+                if(nodeRight[node] == 0) {
+                    for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+                        if(testObject(frustum, order[i])) visible[visibleCount++] = order[i];
+                    }
+                } else {
+                    stack[top++] = nodeRight[node];
+                    stack[top++] = node + 1;
+                }
+            }
+        }
+        return visibleCount;
+    }
+
+    /**
+     * Tests every object against the frustum without the tree - the reference for {@link #query}
+     *
+     * @return number of visible objects, their ids are the first entries of {@link #getVisible()}
+     */
+    public int queryLinear(FrustumIntersection frustum) {
+        ensureVisibleCapacity();
+        visibleCount = 0;
+        testedNodes = 0;
+        for (int id = 0; id < objectCount; id++) {
+            if(testObject(frustum, id)) visible[visibleCount++] = id;
+        }
+        return visibleCount;
+    }
+
+    private boolean testObject(FrustumIntersection frustum, int id) {
+        int o = id * BOX_FLOATS;
+        return frustum.testAab(objectBounds[o], objectBounds[o + 1], objectBounds[o + 2],
+                objectBounds[o + 3], objectBounds[o + 4], objectBounds[o + 5]);
+    }
+
+    private void ensureVisibleCapacity() {
+        if(visible.length < objectCount) {
+            visible = new int[Math.max(objectCount, visible.length * 2)];
+        }
+    }
+
+    /** @return ids of the last query's visible objects, valid up to {@link #getVisibleCount()} */
+    public int[] getVisible() {
+        return visible;
+    }
+
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /** @return objects outside the frustum in the last query */
+    public int getCulledCount() {
+        return objectCount - visibleCount;
+    }
+
+    /** @return node boxes tested by the last query */
+    public int getTestedNodes() {
+        return testedNodes;
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    public int getNodeCount() {
+        return nodeTotal;
+    }
+
+    /** @return summed surface of all node boxes relative to the root box - grows as refits loosen the tree */
+    public float getCost() {
+        return cost;
+    }
+
+    public int getRebuilds() {
+        return rebuilds;
+    }
+
+    public int getRefits() {
+        return refits;
+    }
+}
@@ -0,0 +1,202 @@
+package com.ccat.core.culling;
+
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderProgram;
+import org.joml.Vector2f;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL40.glDrawArraysIndirect;
+import static org.lwjgl.opengl.GL41.glProgramUniform1ui;
+import static org.lwjgl.opengl.GL41.glProgramUniform3f;
+import static org.lwjgl.opengl.GL42.*;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
+import static org.lwjgl.opengl.GL43.glDispatchCompute;
+import static org.lwjgl.opengl.GL44.GL_DYNAMIC_STORAGE_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Frustum and occlusion culling of instances on the GPU with {@code instance_cull_compute_shader.glsl}.
+ * Every frame a dispatch tests the boxes of all instances against the view-projection of the Camera
+ * Uniform Block - and, given a {@link HiZPyramid}, against the depth of the last frame - and appends the
+ * visible ones to an output buffer, counting them in the instanceCount of an indirect draw command.
+ * The CPU neither touches instances nor learns the count before drawing.
+ * The counts are copied into a ring of persistently mapped slots and read a few frames later for the stats.
+ */
+public class GpuInstanceCuller {
+    /** Per instance: vec3 offset + uint payload, the layout of {@code struct Instance} */
+    public static final int INSTANCE_BYTES = 4 * Integer.BYTES;
+    /** Binding points of the SourceInstances, VisibleInstances and DrawCommand blocks */
+    public static final int SOURCE_BINDING = 6;
+    public static final int VISIBLE_BINDING = 7;
+    public static final int COMMAND_BINDING = 8;
+
+    private static final int GROUP_SIZE = 256;
+    private static final int RING_SIZE = 4;
+    /** Read back per frame: instanceCount, first, baseInstance, occludedCount, occludedFragments */
+    private static final int SLOT_INTS = 5;
+
+    private final int instanceCount;
+    private final ShaderProgram computeProgram;
+    private final int instanceCountLocation;
+    private final int halfExtentLocation;
+    private final int cullLocation;
+    private final int occlusionLocation;
+    private final int previousViewProjectionLocation;
+    private final int screenSizeLocation;
+    private final Vector2f screenSize = new Vector2f();
+    /** DrawArraysIndirectCommand (count, instanceCount, first, baseInstance) + occludedCount, occludedFragments */
+    private final int[] resetCommand;
+
+    private final int sourceBuffer;
+    private final int visibleBuffer;
+    private final int commandBuffer;
+
+    private final int readbackBuffer;
+    private final IntBuffer readback;
+    private final long[] fences = new long[RING_SIZE];
+    private int next;
+    private int visibleCount = -1;
+    private int occludedCount;
+    private long occludedFragments;
+
+    /**
+     * @param instances {@link #INSTANCE_BYTES} per instance, the offset is the center of its box
+     * @param halfExtent half edge length of every instance's box
+     * @param vertexCount vertices drawn per instance
+     */
+    public GpuInstanceCuller(ByteBuffer instances, float halfExtent, int vertexCount) {
+        this.instanceCount = instances.remaining() / INSTANCE_BYTES;
+
+        this.computeProgram = ShaderProgram.compute("shaders/compute/instance_cull_compute_shader.glsl");
+        this.instanceCountLocation = computeProgram.getUniformLocation("uInstanceCount");
+        this.halfExtentLocation = computeProgram.getUniformLocation("uHalfExtent");
+        this.cullLocation = computeProgram.getUniformLocation("uCull");
+        this.occlusionLocation = computeProgram.getUniformLocation("uOcclusion");
+        this.previousViewProjectionLocation = computeProgram.getUniformLocation("uPreviousViewProjection");
+        this.screenSizeLocation = computeProgram.getUniformLocation("uScreenSize");
+        //Constant per culler - uniforms are Program state
+        glProgramUniform1ui(computeProgram.getProgram(), instanceCountLocation, instanceCount);
+        glProgramUniform3f(computeProgram.getProgram(), halfExtentLocation, halfExtent, halfExtent, halfExtent);
+
+        this.sourceBuffer = glCreateBuffers();
+        glNamedBufferStorage(sourceBuffer, instances, 0);
+
+        this.visibleBuffer = glCreateBuffers();
+        glNamedBufferStorage(visibleBuffer, Math.max(1L, (long) instanceCount * INSTANCE_BYTES), 0);
+
+        this.resetCommand = new int[]{ vertexCount, 0, 0, 0, 0, 0 };
+        this.commandBuffer = glCreateBuffers();
+        glNamedBufferStorage(commandBuffer, resetCommand, GL_DYNAMIC_STORAGE_BIT);
+
+        int flags = GL_MAP_READ_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+        this.readbackBuffer = glCreateBuffers();
+        glNamedBufferStorage(readbackBuffer, (long) RING_SIZE * SLOT_INTS * Integer.BYTES, flags);
+        ByteBuffer mapped = glMapNamedBufferRange(readbackBuffer, 0, (long) RING_SIZE * SLOT_INTS * Integer.BYTES, flags);
+        if(mapped == null) {
+            throw new IllegalStateException("Unable to map the culling readback buffer.");
+        }
+        this.readback = mapped.asIntBuffer();
+    }
+
+    /**
+     * Culls all instances against the Camera of the current frame - write the Camera Uniform Block first.
+     * Leaves the compute Program bound - bind the draw Program afterwards.
+     *
+     * @param cull false passes every instance, e.g. with culling disabled
+     * @param occluders depth of the last frame, null or not yet built tests the frustum only
+     */
+    public void cull(boolean cull, HiZPyramid occluders) {
+        collect();
+
+        glNamedBufferSubData(commandBuffer, 0, resetCommand);
+
+        computeProgram.bind();
+        computeProgram.uploadBool(cullLocation, cull);
+        boolean occlusion = cull && occluders != null && occluders.isReady();
+        computeProgram.uploadBool(occlusionLocation, occlusion);
+        if(occlusion) {
+            occluders.bind();
+            computeProgram.uploadMat4(previousViewProjectionLocation, occluders.getViewProjection());
+            computeProgram.uploadVec2(screenSizeLocation, screenSize.set(occluders.getWidth(), occluders.getHeight()));
+        }
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, SOURCE_BINDING, sourceBuffer);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, VISIBLE_BINDING, visibleBuffer);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, COMMAND_BINDING, commandBuffer);
+
+        glDispatchCompute((instanceCount + GROUP_SIZE - 1) / GROUP_SIZE, 1, 1);
+        //The draw reads the command and the compacted instances, the copy below the count
+        glMemoryBarrier(GL_COMMAND_BARRIER_BIT | GL_VERTEX_ATTRIB_ARRAY_BARRIER_BIT | GL_BUFFER_UPDATE_BARRIER_BIT);
+
+        //All slots still in flight - skip the count of this frame rather than wait
+        if(fences[next] != 0) return;
+        long slotBytes = (long) SLOT_INTS * Integer.BYTES;
+        glCopyNamedBufferSubData(commandBuffer, readbackBuffer, Integer.BYTES, next * slotBytes, slotBytes);
+        fences[next] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        next = (next + 1) % RING_SIZE;
+    }
+
+    /** Reads every finished count, oldest first so the newest one remains */
+    private void collect() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            int slot = (next + i) % RING_SIZE;
+            if(fences[slot] == 0 || glClientWaitSync(fences[slot], 0, 0) == GL_TIMEOUT_EXPIRED) continue;
+
+            glDeleteSync(fences[slot]);
+            fences[slot] = 0;
+            visibleCount = readback.get(slot * SLOT_INTS);
+            occludedCount = readback.get(slot * SLOT_INTS + 3);
+            occludedFragments = Integer.toUnsignedLong(readback.get(slot * SLOT_INTS + 4));
+        }
+    }
+
+    /** Draws the visible instances with the culled command - the draw Program and VAO must be bound */
+    public void draw(int mode) {
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, commandBuffer);
+        glDrawArraysIndirect(mode, 0);
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+        RenderStats.countDrawCall();
+    }
+
+    /** @return buffer receiving the compacted visible instances, bind it as the instance vertex buffer */
+    public int getVisibleBuffer() {
+        return visibleBuffer;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /** @return visible instances of the newest finished frame, -1 before the first one finished */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /** @return instances inside the frustum but hidden in the last frame's depth, of the newest finished frame */
+    public int getOccludedCount() {
+        return occludedCount;
+    }
+
+    /** @return summed screen rectangles of the occluded instances in pixels - a bound of the fragments not shaded */
+    public long getOccludedFragments() {
+        return occludedFragments;
+    }
+
+    public void destroy() {
+        for (long fence : fences) {
+            if(fence != 0) glDeleteSync(fence);
+        }
+        glUnmapNamedBuffer(readbackBuffer);
+        glDeleteBuffers(new int[]{ sourceBuffer, visibleBuffer, commandBuffer, readbackBuffer });
+        computeProgram.destroy();
+    }
+}
@@ -0,0 +1,183 @@
+package com.ccat.core.culling;
+
+import com.ccat.core.renderer.SamplerCache;
+import com.ccat.core.renderer.ShaderProgram;
+import org.joml.Matrix4f;
+import org.joml.Vector2i;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL13.GL_SAMPLE_BUFFERS;
+import static org.lwjgl.opengl.GL15.GL_READ_ONLY;
+import static org.lwjgl.opengl.GL15.GL_WRITE_ONLY;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL33.glBindSampler;
+import static org.lwjgl.opengl.GL42.*;
+import static org.lwjgl.opengl.GL43.glDispatchCompute;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Hierarchical depth buffer of the finished frame for occlusion culling in the next one.
+ * The depth buffer is copied once the opaque scene is drawn - it serves as the depth pre-pass - and reduced
+ * by {@code hiz_reduce_compute_shader.glsl} into a mip chain where every texel holds the farthest depth
+ * of the area it covers. Level 0 has half the framebuffer resolution.
+ * Depth blits fail on multisampled framebuffers - the default framebuffer has to be single-sampled.
+ * The view-projection of the frame is kept, so the next frame can reproject object bounds into it.
+ */
+public class HiZPyramid {
+    /** Texture unit of {@code uDepthPyramid} in the culling shader */
+    public static final int TEXTURE_UNIT = 15;
+    private static final int GROUP_SIZE = 16;
+
+    private final ShaderProgram depthProgram;
+    private final ShaderProgram reduceProgram;
+    private final int depthSourceSizeLocation;
+    private final int reduceSourceSizeLocation;
+    private final int depthFormat;
+    private final int depthAttachment;
+    private final Vector2i sourceSize = new Vector2i();
+
+    private final int framebuffer;
+    private int depthCopy;
+    private int pyramid;
+    private int width;
+    private int height;
+    private int levels;
+
+    private final Matrix4f viewProjection = new Matrix4f();
+    private boolean ready;
+
+    public HiZPyramid() {
+        this.depthProgram = ShaderProgram.compute("shaders/compute/hiz_reduce_compute_shader.glsl", "FROM_DEPTH");
+        this.reduceProgram = ShaderProgram.compute("shaders/compute/hiz_reduce_compute_shader.glsl");
+        this.depthSourceSizeLocation = depthProgram.getUniformLocation("uSourceSize");
+        this.reduceSourceSizeLocation = reduceProgram.getUniformLocation("uSourceSize");
+
+        if(glGetNamedFramebufferParameteri(0, GL_SAMPLE_BUFFERS) != 0) {
+            throw new IllegalStateException("Occlusion culling requires a single-sampled default framebuffer.");
+        }
+        //Depth blits require the formats of both framebuffers to match - mirror the default framebuffer's
+        int depthBits = glGetNamedFramebufferAttachmentParameteri(0, GL_DEPTH, GL_FRAMEBUFFER_ATTACHMENT_DEPTH_SIZE);
+        int stencilBits = glGetNamedFramebufferAttachmentParameteri(0, GL_STENCIL, GL_FRAMEBUFFER_ATTACHMENT_STENCIL_SIZE);
+        if(stencilBits > 0) {
+            this.depthFormat = depthBits > 24 ? GL_DEPTH32F_STENCIL8 : GL_DEPTH24_STENCIL8;
+            this.depthAttachment = GL_DEPTH_STENCIL_ATTACHMENT;
+        } else {
+            this.depthFormat = depthBits > 24 ? GL_DEPTH_COMPONENT32F : depthBits > 16 ? GL_DEPTH_COMPONENT24 : GL_DEPTH_COMPONENT16;
+            this.depthAttachment = GL_DEPTH_ATTACHMENT;
+        }
+
+        this.framebuffer = glCreateFramebuffers();
+    }
+
+    /** (Re)creates the depth copy and the pyramid for a framebuffer size */
+    private void allocate(int width, int height) {
+        if(pyramid != 0) {
+            glDeleteTextures(depthCopy);
+            glDeleteTextures(pyramid);
+        }
+        this.width = width;
+        this.height = height;
+
+        this.depthCopy = glCreateTextures(GL_TEXTURE_2D);
+        glTextureStorage2D(depthCopy, 1, depthFormat, width, height);
+        glNamedFramebufferTexture(framebuffer, depthAttachment, depthCopy, 0);
+        glNamedFramebufferDrawBuffer(framebuffer, GL_NONE);
+        glNamedFramebufferReadBuffer(framebuffer, GL_NONE);
+        if(glCheckNamedFramebufferStatus(framebuffer, GL_DRAW_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException("Depth copy framebuffer is incomplete.");
+        }
+
+        int baseWidth = getBaseWidth();
+        int baseHeight = getBaseHeight();
+        this.levels = 32 - Integer.numberOfLeadingZeros(Math.max(baseWidth, baseHeight));
+        this.pyramid = glCreateTextures(GL_TEXTURE_2D);
+        glTextureStorage2D(pyramid, levels, GL_R32F, baseWidth, baseHeight);
+        ready = false;
+    }
+
+    /**
+     * Copies the depth buffer of the default framebuffer and reduces it - call after the opaque scene is drawn
+     *
+     * @param width framebuffer width in pixels, not the window size - both differ on HiDPI displays
+     * @param height framebuffer height in pixels
+     * @param viewProjection view-projection the frame was drawn with
+     */
+    public void build(int width, int height, Matrix4f viewProjection) {
+        //Minimized - nothing was drawn, the last pyramid stays
+        if(width == 0 || height == 0) return;
+        if(width != this.width || height != this.height || pyramid == 0) allocate(width, height);
+
+        glBlitNamedFramebuffer(0, framebuffer, 0, 0, width, height, 0, 0, width, height, GL_DEPTH_BUFFER_BIT, GL_NEAREST);
+
+        depthProgram.bind();
+        depthProgram.uploadIVec2(depthSourceSizeLocation, sourceSize.set(width, height));
+        glBindTextureUnit(0, depthCopy);
+        glBindSampler(0, 0);
+        reduce(0);
+
+        reduceProgram.bind();
+        for (int level = 1; level < levels; level++) {
+            sourceSize.set(Math.max(1, getBaseWidth() >> (level - 1)), Math.max(1, getBaseHeight() >> (level - 1)));
+            reduceProgram.uploadIVec2(reduceSourceSizeLocation, sourceSize);
+            glBindImageTexture(1, pyramid, level - 1, false, 0, GL_READ_ONLY, GL_R32F);
+            reduce(level);
+        }
+        //The culling pass samples the pyramid
+        glMemoryBarrier(GL_TEXTURE_FETCH_BARRIER_BIT);
+
+        this.viewProjection.set(viewProjection);
+        ready = true;
+    }
+
+    /** Writes one level from the bound source - every level reads the complete one below */
+    private void reduce(int level) {
+        int levelWidth = Math.max(1, getBaseWidth() >> level);
+        int levelHeight = Math.max(1, getBaseHeight() >> level);
+        glBindImageTexture(0, pyramid, level, false, 0, GL_WRITE_ONLY, GL_R32F);
+        glDispatchCompute((levelWidth + GROUP_SIZE - 1) / GROUP_SIZE, (levelHeight + GROUP_SIZE - 1) / GROUP_SIZE, 1);
+        glMemoryBarrier(GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+    }
+
+    /** Binds the pyramid with a nearest-mip sampler to {@link #TEXTURE_UNIT} */
+    public void bind() {
+        glBindTextureUnit(TEXTURE_UNIT, pyramid);
+        glBindSampler(TEXTURE_UNIT, SamplerCache.get(GL_NEAREST_MIPMAP_NEAREST, GL_CLAMP_TO_EDGE));
+    }
+
+    /** @return true once a frame was reduced for the current framebuffer size */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** @return view-projection of the frame the pyramid was built from */
+    public Matrix4f getViewProjection() {
+        return viewProjection;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private int getBaseWidth() {
+        return Math.max(1, (width + 1) / 2);
+    }
+
+    private int getBaseHeight() {
+        return Math.max(1, (height + 1) / 2);
+    }
+
+    public void destroy() {
+        if(pyramid != 0) {
+            glDeleteTextures(depthCopy);
+            glDeleteTextures(pyramid);
+        }
+        glDeleteFramebuffers(framebuffer);
+        depthProgram.destroy();
+        reduceProgram.destroy();
+    }
+}
@@ -2,10 +2,12 @@ package com.ccat.core.model;
 
 import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
 import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
+import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
 
 public enum ShaderType {
     VERTEX(GL_VERTEX_SHADER),
-    FRAGMENT(GL_FRAGMENT_SHADER);
+    FRAGMENT(GL_FRAGMENT_SHADER),
+    COMPUTE(GL_COMPUTE_SHADER);
 
     private final int glType;
 
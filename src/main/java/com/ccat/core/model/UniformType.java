@@ -1,8 +1,6 @@
 package com.ccat.core.model;
 
 public enum UniformType {
-    VIEW("uView"),
-    PROJECTION("uProjection"),
     TRANSFORM("uTransform"),
     TEXTURE("uTexture");
 
@@ -0,0 +1,101 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_RG;
+
+/**
+ * Complete mip chain of a Texture, ready for upload without decoding or mip generation.
+ * Levels are stored tightly packed one after another, level 0 first.
+ */
+public final class BakedTexture {
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final int levels;
+    private final ByteBuffer data;
+    private final boolean allocated;
+
+    /**
+     * @param data level data, either memory-mapped or allocated with MemoryUtil
+     * @param allocated true if {@link #free()} has to release data
+     */
+    BakedTexture(int width, int height, int channels, int levels, ByteBuffer data, boolean allocated) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.levels = levels;
+        this.data = data;
+        this.allocated = allocated;
+    }
+
+    /** @return number of levels of a full mip chain down to 1x1 */
+    static int fullChainLevels(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /** @return bytes of all levels together */
+    static long chainSize(int width, int height, int channels, int levels) {
+        long size = 0;
+        for (int level = 0; level < levels; level++) {
+            size += (long) Math.max(1, width >> level) * Math.max(1, height >> level) * channels;
+        }
+        return size;
+    }
+
+    public int getLevelWidth(int level) {
+        return Math.max(1, width >> level);
+    }
+
+    public int getLevelHeight(int level) {
+        return Math.max(1, height >> level);
+    }
+
+    /** @return byte offset of the level inside {@link #getData()} */
+    public int getLevelOffset(int level) {
+        return (int) chainSize(width, height, channels, level);
+    }
+
+    /** @return estimated video memory of all levels - drivers store RGB8 as RGBA8 */
+    public long getGpuBytes() {
+        return chainSize(width, height, channels == 3 ? 4 : channels, levels);
+    }
+
+    /** @return GL pixel format matching the channel count */
+    public int getFormat() {
+        return switch (channels) {
+            case 1 -> GL_RED;
+            case 2 -> GL_RG;
+            case 3 -> GL_RGB;
+            default -> GL_RGBA;
+        };
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /** Releases allocated level data - a mapped file is unmapped by the garbage collector */
+    public void free() {
+        if(allocated) MemoryUtil.memFree(data);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.ARBBindlessTexture.*;
+
+/**
+ * Independent 2D Textures made resident through ARB_bindless_texture.
+ * Their 64-bit handles live in a storage buffer the shaders index directly,
+ * so the images may differ in size and nothing is bound per texture.
+ */
+public class BindlessTextureSet implements TextureSet {
+    private final List<TextureLoader> textures = new ArrayList<>();
+    private final long[] handles;
+    private final StorageBuffer handleBuffer;
+
+    /**
+     * @param images decoded images, index i is image i - not freed
+     * @param filter min/mag filter
+     */
+    public BindlessTextureSet(List<DecodedImage> images, int filter) {
+        this.handles = new long[images.size()];
+
+        ByteBuffer handleData = MemoryUtil.memAlloc(Math.max(1, images.size()) * Long.BYTES);
+        for (int i = 0; i < images.size(); i++) {
+            TextureLoader texture = new TextureLoader(images.get(i), filter);
+            textures.add(texture);
+
+            //Texture and sampler are frozen once a handle of the pair exists
+            handles[i] = glGetTextureSamplerHandleARB(texture.getTextureId(), texture.getSamplerId());
+            glMakeTextureHandleResidentARB(handles[i]);
+            handleData.putLong(i * Long.BYTES, handles[i]);
+        }
+
+        this.handleBuffer = new StorageBuffer(handleData.capacity());
+        handleBuffer.upload(0, handleData);
+        MemoryUtil.memFree(handleData);
+    }
+
+    @Override
+    public void bind() {
+        handleBuffer.bind(HANDLE_BINDING);
+    }
+
+    @Override
+    public int size() {
+        return handles.length;
+    }
+
+    @Override
+    public String getShaderDefine() {
+        return "TEXTURE_BINDLESS";
+    }
+
+    @Override
+    public void destroy() {
+        for (long handle : handles) {
+            glMakeTextureHandleNonResidentARB(handle);
+        }
+        textures.forEach(TextureLoader::destroy);
+        handleBuffer.destroy();
+    }
+}
@@ -0,0 +1,120 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_RG;
+import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.stb.STBImageResize.stbir_resize_uint8;
+
+/**
+ * Decoded 8-bit pixels of an image, flipped vertically for OpenGL
+ */
+public class DecodedImage {
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final ByteBuffer pixels;
+    private final boolean stbAllocated;
+
+    private DecodedImage(int width, int height, int channels, ByteBuffer pixels, boolean stbAllocated) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.pixels = pixels;
+        this.stbAllocated = stbAllocated;
+    }
+
+    /**
+     * Decodes an encoded (PNG, JPG, ...) image
+     *
+     * @param encoded encoded image bytes
+     * @param desiredChannels channels to convert to, or 0 to keep the channels of the file
+     * @return decoded pixels, release with {@link #free()}
+     */
+    public static DecodedImage decode(ByteBuffer encoded, int desiredChannels) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            stbi_set_flip_vertically_on_load(true);
+            ByteBuffer data = stbi_load_from_memory(encoded, width, height, channels, desiredChannels);
+            if (data == null) {
+                String error = stbi_failure_reason();
+                throw new RuntimeException("Failed to load Texture - Reason:" + error);
+            }
+
+            int resultChannels = desiredChannels != 0 ? desiredChannels : channels.get(0);
+            return new DecodedImage(width.get(0), height.get(0), resultChannels, data, true);
+        }
+    }
+
+    /**
+     * @param format GL pixel format
+     * @return number of 8-bit channels of the format
+     */
+    public static int channelsOf(int format) {
+        return switch (format) {
+            case GL_RED -> 1;
+            case GL_RG -> 2;
+            case GL_RGB -> 3;
+            case GL_RGBA -> 4;
+            default -> throw new IllegalArgumentException("Unsupported pixel format: " + format);
+        };
+    }
+
+    /**
+     * Resamples the image into a new one, this image stays valid
+     *
+     * @param newWidth target width
+     * @param newHeight target height
+     * @return resized copy, release with {@link #free()}
+     */
+    public DecodedImage resize(int newWidth, int newHeight) {
+        ByteBuffer resized = MemoryUtil.memAlloc(newWidth * newHeight * channels);
+        if(!stbir_resize_uint8(pixels, width, height, 0, resized, newWidth, newHeight, 0, channels)) {
+            MemoryUtil.memFree(resized);
+            throw new RuntimeException("Failed to resize Texture to " + newWidth + "x" + newHeight);
+        }
+        return new DecodedImage(newWidth, newHeight, channels, resized, false);
+    }
+
+    /** @return GL pixel format matching the channel count */
+    public int getFormat() {
+        return switch (channels) {
+            case 1 -> GL_RED;
+            case 2 -> GL_RG;
+            case 3 -> GL_RGB;
+            default -> GL_RGBA;
+        };
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    public void free() {
+        if(stbAllocated) {
+            stbi_image_free(pixels);
+        } else {
+            MemoryUtil.memFree(pixels);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL43.glMultiDrawElementsIndirect;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Builds {@code DrawElementsIndirectCommand}s for meshes of a {@link MeshPool} and submits
+ * all of them with a single {@code glMultiDrawElementsIndirect}.
+ * Shaders find their per-draw data through {@code gl_DrawID} and their per-instance data
+ * through {@code gl_BaseInstance + gl_InstanceID}.
+ */
+public class DrawCommandBuffer {
+    /** count, instanceCount, firstIndex, baseVertex, baseInstance */
+    public static final int COMMAND_INTS = 5;
+    public static final int COMMAND_SIZE = COMMAND_INTS * Integer.BYTES;
+
+    private IntBuffer commands;
+    private int commandCount = 0;
+
+    private final int indirectBuffer;
+    private long bufferSize = 0;
+
+    /** @param initialCapacity Number of commands before the staging buffer has to grow */
+    public DrawCommandBuffer(int initialCapacity) {
+        this.commands = MemoryUtil.memAllocInt(Math.max(1, initialCapacity) * COMMAND_INTS);
+        this.indirectBuffer = glCreateBuffers();
+    }
+
+    /** Removes all commands, keeps the allocated memory */
+    public void clear() {
+        commandCount = 0;
+    }
+
+    /**
+     * Appends a draw command
+     *
+     * @param mesh Mesh inside the bound MeshPool
+     * @param instanceCount Number of instances to draw
+     * @param baseInstance Index of the first instance's data
+     */
+    public void add(MeshPool.Mesh mesh, int instanceCount, int baseInstance) {
+        add(mesh.indexCount(), instanceCount, mesh.firstIndex(), mesh.baseVertex(), baseInstance);
+    }
+
+    public void add(int indexCount, int instanceCount, int firstIndex, int baseVertex, int baseInstance) {
+        int offset = commandCount * COMMAND_INTS;
+        if(offset + COMMAND_INTS > commands.capacity()) {
+            commands = MemoryUtil.memRealloc(commands, commands.capacity() * 2).clear();
+        }
+
+        commands.put(offset, indexCount);
+        commands.put(offset + 1, instanceCount);
+        commands.put(offset + 2, firstIndex);
+        commands.put(offset + 3, baseVertex);
+        commands.put(offset + 4, baseInstance);
+        commandCount++;
+    }
+
+    /** Copies the recorded commands into the GPU buffer, growing it if necessary */
+    public void upload() {
+        long size = (long) commandCount * COMMAND_SIZE;
+        commands.limit(commandCount * COMMAND_INTS);
+
+        if(size > bufferSize) {
+            bufferSize = (long) commands.capacity() * Integer.BYTES;
+            glNamedBufferData(indirectBuffer, bufferSize, GL_DYNAMIC_DRAW);
+        }
+        glNamedBufferSubData(indirectBuffer, 0, commands);
+
+        commands.limit(commands.capacity());
+    }
+
+    /** Draws every recorded command with one call - the MeshPool and Program must be bound */
+    public void draw() {
+        if(commandCount == 0) return;
+
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBuffer);
+        glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, 0, commandCount, 0);
+        RenderStats.countDrawCall();
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    public int getIndirectBuffer() {
+        return indirectBuffer;
+    }
+
+    public void destroy() {
+        glDeleteBuffers(indirectBuffer);
+        MemoryUtil.memFree(commands);
+    }
+}
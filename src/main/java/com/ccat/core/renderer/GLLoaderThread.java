@@ -0,0 +1,83 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.opengl.GL;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.lwjgl.glfw.GLFW.glfwMakeContextCurrent;
+import static org.lwjgl.opengl.GL11.glFlush;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Dedicated thread owning a hidden context that shares objects with the render context.
+ * Buffer and texture uploads run here instead of on the render thread; every task ends
+ * with a fence, so the render thread only waits for the uploads it actually uses.
+ */
+public final class GLLoaderThread {
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param sharedContext hidden GLFW window from {@link com.ccat.core.WindowManager#createSharedContext()}
+     */
+    public GLLoaderThread(long sharedContext) {
+        this.thread = new Thread(() -> run(sharedContext), "gl-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(long sharedContext) {
+        glfwMakeContextCurrent(sharedContext);
+        GL.createCapabilities();
+        try {
+            while (running || !tasks.isEmpty()) {
+                Runnable task = tasks.poll(100, TimeUnit.MILLISECONDS);
+                if(task != null) task.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            GL.setCapabilities(null);
+            glfwMakeContextCurrent(NULL);
+        }
+    }
+
+    /**
+     * Runs GL work on the loader context.
+     * The supplier may only create or fill shareable objects (textures, buffers) and return their ids.
+     *
+     * @param upload GL work, executed on the loader thread
+     * @return task to poll from the render thread
+     */
+    public <T> LoadTask<T> submit(Supplier<T> upload) {
+        LoadTask<T> task = new LoadTask<>();
+        tasks.add(() -> {
+            try {
+                T result = upload.get();
+                long fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+                //Without a flush the fence might never reach the GPU and other contexts would wait forever
+                glFlush();
+                task.complete(result, fence);
+            } catch (RuntimeException e) {
+                task.fail(e);
+            }
+        });
+        return task;
+    }
+
+    /** Finishes the queued tasks and releases the context - call before the shared window is destroyed */
+    public void shutdown() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
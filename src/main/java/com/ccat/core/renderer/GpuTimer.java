@@ -0,0 +1,69 @@
+package com.ccat.core.renderer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+import static org.lwjgl.opengl.GL45.glCreateQueries;
+
+/**
+ * Measures GPU time of a span of commands with GL_TIME_ELAPSED queries.
+ * Results are read a few frames later from a ring of queries, so measuring never stalls the pipeline.
+ */
+public class GpuTimer {
+    private static final int RING_SIZE = 4;
+
+    private final int[] queries = new int[RING_SIZE];
+    private final boolean[] pending = new boolean[RING_SIZE];
+    private int next;
+
+    private long totalNanos;
+    private int samples;
+
+    public GpuTimer() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            queries[i] = glCreateQueries(GL_TIME_ELAPSED);
+        }
+    }
+
+    /** Starts measuring - only one GL_TIME_ELAPSED query may be active at a time */
+    public void begin() {
+        collect();
+        //All queries still in flight - skip this frame rather than wait
+        if(pending[next]) return;
+
+        glBeginQuery(GL_TIME_ELAPSED, queries[next]);
+    }
+
+    public void end() {
+        if(pending[next]) return;
+
+        glEndQuery(GL_TIME_ELAPSED);
+        pending[next] = true;
+        next = (next + 1) % RING_SIZE;
+    }
+
+    /** Accumulates every finished query */
+    private void collect() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            if(!pending[i] || glGetQueryObjecti(queries[i], GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) continue;
+
+            totalNanos += glGetQueryObjecti64(queries[i], GL_QUERY_RESULT);
+            samples++;
+            pending[i] = false;
+        }
+    }
+
+    /** @return average GPU milliseconds since the last reset, 0 without results */
+    public double getAverageMillis() {
+        return samples == 0 ? 0 : totalNanos / 1_000_000.0 / samples;
+    }
+
+    public void reset() {
+        totalNanos = 0;
+        samples = 0;
+    }
+
+    public void destroy() {
+        glDeleteQueries(queries);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ccat.core.renderer;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Result of GL work done on a {@link GLLoaderThread}, guarded by a fence.
+ * Poll and read it on the render thread only.
+ */
+public final class LoadTask<T> {
+    private static final long NULL_FENCE = 0L;
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean done;
+    private T result;
+    private long fence;
+    private RuntimeException error;
+
+    LoadTask() { }
+
+    void complete(T result, long fence) {
+        this.result = result;
+        this.fence = fence;
+        this.done = true;
+        finished.countDown();
+    }
+
+    void fail(RuntimeException error) {
+        this.error = error;
+        this.done = true;
+        finished.countDown();
+    }
+
+    /** @return true once the loader finished and the GPU executed its commands - never blocks */
+    public boolean isReady() {
+        if(!done) return false;
+        if(fence == NULL_FENCE) return true;
+
+        if(glClientWaitSync(fence, 0, 0) == GL_TIMEOUT_EXPIRED) return false;
+        glDeleteSync(fence);
+        fence = NULL_FENCE;
+        return true;
+    }
+
+    /**
+     * Returns the result once the loader thread finished.
+     * If the GPU is still executing the upload, the render context waits for it on the GPU - the CPU does not block.
+     */
+    public T get() {
+        if(!done) throw new IllegalStateException("Load task has not finished on the loader thread.");
+        if(error != null) throw error;
+
+        if(fence != NULL_FENCE) {
+            glWaitSync(fence, 0, GL_TIMEOUT_IGNORED);
+            glDeleteSync(fence);
+            fence = NULL_FENCE;
+        }
+        return result;
+    }
+
+    /**
+     * Blocks until the loader thread finished, then returns like {@link #get()} - for teardown,
+     * when objects the task still writes into are about to be deleted
+     */
+    public T join() {
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the loader thread.", e);
+        }
+        return get();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ccat.core.renderer;
+
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL44.GL_DYNAMIC_STORAGE_BIT;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Sub-allocates vertex and index data of many static meshes from two large shared buffers.
+ * All meshes use one vertex format - position(x,y,z), texCoords(u,v) - so a single VAO
+ * can draw any of them, e.g. with one {@link DrawCommandBuffer} multi-draw.
+ */
+public class MeshPool {
+    public static final int POSITION_SIZE = 3;
+    public static final int TEXTURE_SIZE = 2;
+    public static final int VERTEX_FLOATS = POSITION_SIZE + TEXTURE_SIZE;
+    private static final int VERTEX_SIZE = VERTEX_FLOATS * Float.BYTES;
+
+    /**
+     * Location of a mesh inside the pool
+     *
+     * @param firstIndex Offset of the first index in the shared index buffer
+     * @param indexCount Number of indices
+     * @param baseVertex Offset added to every index, the mesh's first vertex in the shared vertex buffer
+     */
+    public record Mesh(int firstIndex, int indexCount, int baseVertex) { }
+
+    private final int vertexCapacity;
+    private final int indexCapacity;
+    private int vertexCount = 0;
+    private int indexCount = 0;
+
+    private final int vao;
+    private final int vbo;
+    private final int ebo;
+
+    /**
+     * @param vertexCapacity Maximum number of vertices of all meshes together
+     * @param indexCapacity Maximum number of indices of all meshes together
+     */
+    public MeshPool(int vertexCapacity, int indexCapacity) {
+        this.vertexCapacity = vertexCapacity;
+        this.indexCapacity = indexCapacity;
+
+        this.vbo = glCreateBuffers();
+        glNamedBufferStorage(vbo, (long) vertexCapacity * VERTEX_SIZE, GL_DYNAMIC_STORAGE_BIT);
+
+        this.ebo = glCreateBuffers();
+        glNamedBufferStorage(ebo, (long) indexCapacity * Integer.BYTES, GL_DYNAMIC_STORAGE_BIT);
+
+        int vertexBindingPoint = 0;
+        this.vao = glCreateVertexArrays();
+        glVertexArrayVertexBuffer(vao, vertexBindingPoint, vbo, 0, VERTEX_SIZE);
+        glVertexArrayElementBuffer(vao, ebo);
+
+        int positionAttribSlot = 0;
+        glVertexArrayAttribFormat(vao, positionAttribSlot, POSITION_SIZE, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, positionAttribSlot, vertexBindingPoint);
+        glEnableVertexArrayAttrib(vao, positionAttribSlot);
+
+        int textureAttribSlot = 1;
+        glVertexArrayAttribFormat(vao, textureAttribSlot, TEXTURE_SIZE, GL_FLOAT, false, POSITION_SIZE * Float.BYTES);
+        glVertexArrayAttribBinding(vao, textureAttribSlot, vertexBindingPoint);
+        glEnableVertexArrayAttrib(vao, textureAttribSlot);
+    }
+
+    /**
+     * Copies a mesh into the shared buffers
+     *
+     * @param vertices interleaved position(x,y,z), texCoords(u,v)
+     * @param indices indices relative to the mesh's own first vertex
+     * @return location of the mesh inside the pool
+     */
+    public Mesh add(float[] vertices, int[] indices) {
+        int meshVertices = vertices.length / VERTEX_FLOATS;
+        if(vertexCount + meshVertices > vertexCapacity || indexCount + indices.length > indexCapacity) {
+            throw new IllegalStateException("MeshPool is full - vertices:" + vertexCount + "/" + vertexCapacity
+                    + " indices:" + indexCount + "/" + indexCapacity);
+        }
+
+        glNamedBufferSubData(vbo, (long) vertexCount * VERTEX_SIZE, vertices);
+        glNamedBufferSubData(ebo, (long) indexCount * Integer.BYTES, indices);
+
+        Mesh mesh = new Mesh(indexCount, indices.length, vertexCount);
+        vertexCount += meshVertices;
+        indexCount += indices.length;
+
+        return mesh;
+    }
+
+    /** Binds the shared VAO, every mesh of the pool can be drawn afterwards */
+    public void bind() {
+        glBindVertexArray(vao);
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public void destroy() {
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(vbo);
+        glDeleteBuffers(ebo);
+    }
+}
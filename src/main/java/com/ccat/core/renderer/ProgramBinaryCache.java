@@ -0,0 +1,143 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * On-disk cache of linked Program binaries ({@code glGetProgramBinary}/{@code glProgramBinary}).
+ * Entries are keyed by a hash of the stage sources and the driver vendor/renderer/version,
+ * so a driver update never picks up a stale binary.
+ * Disable with {@code -Dotome.noShaderCache=true}.
+ */
+final class ProgramBinaryCache {
+    private static final Path CACHE_DIR = Paths.get("cache", "shaders");
+    private static final String FILE_ENDING = ".bin";
+
+    private static Boolean supported;
+
+    private ProgramBinaryCache() { }
+
+    /** @return true if the cache is enabled and the driver supports at least one binary format */
+    static boolean isEnabled() {
+        if(Boolean.getBoolean("otome.noShaderCache")) return false;
+
+        if(supported == null) {
+            supported = glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        }
+        return supported;
+    }
+
+    /**
+     * @param vertexSource GLSL source of the Vertex Shader
+     * @param fragmentSource GLSL source of the Fragment Shader
+     * @return hex SHA-256 of the sources and the current driver identification
+     */
+    static String key(String vertexSource, String fragmentSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(glGetString(GL_VENDOR)).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(glGetString(GL_RENDERER)).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(glGetString(GL_VERSION)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(vertexSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Creates a Program from a cached binary
+     *
+     * @param key Cache key from {@link #key(String, String)}
+     * @return linked Program-Id, or 0 if there is no entry or the driver rejected the binary
+     */
+    static int load(String key) {
+        Path file = CACHE_DIR.resolve(key + FILE_ENDING);
+        if(!Files.isRegularFile(file)) return 0;
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return 0;
+        }
+        if(bytes.length <= Integer.BYTES) return 0;
+
+        int binaryFormat = ByteBuffer.wrap(bytes).getInt();
+        ByteBuffer binary = MemoryUtil.memAlloc(bytes.length - Integer.BYTES);
+        binary.put(bytes, Integer.BYTES, bytes.length - Integer.BYTES).flip();
+
+        int program = glCreateProgram();
+        glProgramBinary(program, binaryFormat, binary);
+        MemoryUtil.memFree(binary);
+
+        if(glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            //Driver rejected the binary - fall back to a source compile and rewrite the entry
+            glDeleteProgram(program);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) { }
+            return 0;
+        }
+
+        return program;
+    }
+
+    /**
+     * Stores the binary of a freshly linked Program.
+     * The Program must have been linked with {@code GL_PROGRAM_BINARY_RETRIEVABLE_HINT} set.
+     * Failures are ignored, the next launch simply compiles from source again.
+     *
+     * @param key Cache key from {@link #key(String, String)}
+     * @param program linked Program-Id
+     */
+    static void store(String key, int program) {
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if(length <= 0) return;
+
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer binaryFormat = stack.mallocInt(1);
+            glGetProgramBinary(program, null, binaryFormat, binary);
+
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(binaryFormat.get(0)).flip();
+
+            Files.createDirectories(CACHE_DIR);
+            Path file = CACHE_DIR.resolve(key + FILE_ENDING);
+            Path tmp = CACHE_DIR.resolve(key + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) channel.write(header);
+                while (binary.hasRemaining()) channel.write(binary);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Unable to write Program binary cache: " + e.getMessage());
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ccat.core.renderer;
+
+import com.ccat.core.model.ShaderType;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opengl.ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB;
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR;
+
+/**
+ * A Program whose compile and link were issued without querying any status,
+ * so the driver can work on several Programs at once.
+ * With KHR/ARB_parallel_shader_compile the job is polled through {@code GL_COMPLETION_STATUS_KHR},
+ * otherwise the status query in {@link #finish()} blocks until the driver is done.
+ */
+final class ProgramCompileJob {
+    private static Boolean parallelCompile;
+
+    private final String cacheKey;
+    private final int program;
+    private final int vertexShaderId;
+    private final int fragmentShaderId;
+    private final boolean fromBinaryCache;
+
+    /** Futures of every request waiting for this Program */
+    final List<CompletableFuture<ShaderProgram>> waiting = new ArrayList<>();
+
+    private ProgramCompileJob(String cacheKey, int program, int vertexShaderId, int fragmentShaderId, boolean fromBinaryCache) {
+        this.cacheKey = cacheKey;
+        this.program = program;
+        this.vertexShaderId = vertexShaderId;
+        this.fragmentShaderId = fragmentShaderId;
+        this.fromBinaryCache = fromBinaryCache;
+    }
+
+    /**
+     * Issues compile and link of both stages, or loads the Program from the binary cache
+     *
+     * @param vertexSource GLSL source of the Vertex Shader
+     * @param fragmentSource GLSL source of the Fragment Shader
+     * @return the running job
+     */
+    static ProgramCompileJob start(String vertexSource, String fragmentSource) {
+        String cacheKey = null;
+        if(ProgramBinaryCache.isEnabled()) {
+            cacheKey = ProgramBinaryCache.key(vertexSource, fragmentSource);
+
+            int cachedProgram = ProgramBinaryCache.load(cacheKey);
+            if(cachedProgram != 0) return new ProgramCompileJob(cacheKey, cachedProgram, 0, 0, true);
+        }
+        isParallelCompileSupported();
+
+        int vertexShaderId = issueCompile(ShaderType.VERTEX, vertexSource);
+        int fragmentShaderId = issueCompile(ShaderType.FRAGMENT, fragmentSource);
+
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShaderId);
+        glAttachShader(program, fragmentShaderId);
+        glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        glLinkProgram(program);
+
+        return new ProgramCompileJob(cacheKey, program, vertexShaderId, fragmentShaderId, false);
+    }
+
+    private static int issueCompile(ShaderType type, String source) {
+        int shaderId = glCreateShader(type.getGlType());
+        glShaderSource(shaderId, source);
+        glCompileShader(shaderId);
+
+        return shaderId;
+    }
+
+    /**
+     * @return true if the driver compiles on its own threads and {@code GL_COMPLETION_STATUS_KHR} can be polled
+     */
+    static boolean isParallelCompileSupported() {
+        if(parallelCompile == null) {
+            GLCapabilities caps = GL.getCapabilities();
+            //0xFFFFFFFF: let the implementation pick the number of compiler threads
+            if(caps.GL_KHR_parallel_shader_compile) {
+                glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+                parallelCompile = true;
+            } else if(caps.GL_ARB_parallel_shader_compile) {
+                glMaxShaderCompilerThreadsARB(0xFFFFFFFF);
+                parallelCompile = true;
+            } else {
+                parallelCompile = false;
+            }
+        }
+        return parallelCompile;
+    }
+
+    /** @return true if {@link #finish()} will not stall the render thread */
+    boolean isComplete() {
+        if(fromBinaryCache || !isParallelCompileSupported()) return true;
+
+        return glGetProgrami(program, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+    }
+
+    /**
+     * Checks compile/link results, releases the Shader objects and stores the binary
+     *
+     * @return the linked Program
+     * @throws RuntimeException with the info log if a stage failed to compile or link
+     */
+    ShaderProgram finish() {
+        if(fromBinaryCache) return new ShaderProgram(program, true);
+
+        try {
+            String infoLog = null;
+            if(glGetShaderi(vertexShaderId, GL_COMPILE_STATUS) == GL_FALSE) {
+                infoLog = glGetShaderInfoLog(vertexShaderId);
+            } else if(glGetShaderi(fragmentShaderId, GL_COMPILE_STATUS) == GL_FALSE) {
+                infoLog = glGetShaderInfoLog(fragmentShaderId);
+            } else if(glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+                infoLog = glGetProgramInfoLog(program);
+            }
+
+            if(infoLog != null) {
+                glDeleteProgram(program);
+                throw new RuntimeException(infoLog);
+            }
+
+            glDetachShader(program, vertexShaderId);
+            glDetachShader(program, fragmentShaderId);
+        } finally {
+            glDeleteShader(vertexShaderId);
+            glDeleteShader(fragmentShaderId);
+        }
+
+        if(cacheKey != null) {
+            ProgramBinaryCache.store(cacheKey, program);
+        }
+        return new ShaderProgram(program, false);
+    }
+}
@@ -0,0 +1,189 @@
+package com.ccat.core.renderer;
+
+import java.util.Arrays;
+
+/**
+ * Draws of a frame as packed 64-bit sort keys with an int payload each, e.g. an entity id.
+ * After an LSD radix sort the draws are grouped by pass, then by state: opaque draws by program, material
+ * and mesh, nearest first within equal state - translucent draws back to front, since blending needs the
+ * order, with state only breaking ties. Executing them in order leaves one switch per state change.
+ * <pre>
+ * opaque:      pass:4 | 0 | program:12 | material:16 | mesh:12 | depth:19
+ * translucent: pass:4 | 1 | far depth:19 | program:12 | material:16 | mesh:12
+ * </pre>
+ * Sorting counts the program, material and mesh changes of the submission order and of the sorted one.
+ */
+public class RenderQueue {
+    public static final int MAX_PASS = (1 << 4) - 1;
+    public static final int MAX_PROGRAM = (1 << 12) - 1;
+    public static final int MAX_MATERIAL = (1 << 16) - 1;
+    public static final int MAX_MESH = (1 << 12) - 1;
+    private static final int DEPTH_BITS = 19;
+    private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+    private static final int STATE_BITS = 12 + 16 + 12;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final long TRANSLUCENT_BIT = 1L << 59;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private long[] keys = new long[256];
+    private int[] payloads = new int[256];
+    private long[] keyScratch = new long[256];
+    private int[] payloadScratch = new int[256];
+    private final int[] histogram = new int[RADIX];
+    private int count;
+
+    private int unsortedChanges;
+    private int sortedChanges;
+
+    /**
+     * @param program compact Program id from {@link ShaderLibrary#getSortId}, GL program names may exceed {@link #MAX_PROGRAM}
+     * @param depth distance from the viewer, scaled by maxDepth into the key - farther ones clamp to maxDepth
+     * @param maxDepth depth range covered by the key's bits
+     */
+    public static long opaqueKey(int pass, int program, int material, int mesh, float depth, float maxDepth) {
+        return header(pass, false) | state(program, material, mesh) << DEPTH_BITS | quantize(depth, maxDepth);
+    }
+
+    /** @see #opaqueKey */
+    public static long translucentKey(int pass, int program, int material, int mesh, float depth, float maxDepth) {
+        long farFirst = MAX_DEPTH - quantize(depth, maxDepth);
+        return header(pass, true) | farFirst << STATE_BITS | state(program, material, mesh);
+    }
+
+    private static long header(int pass, boolean translucent) {
+        if(pass < 0 || pass > MAX_PASS) {
+            throw new IllegalArgumentException("Pass out of range: " + pass);
+        }
+        return (long) pass << 60 | (translucent ? TRANSLUCENT_BIT : 0L);
+    }
+
+    private static long state(int program, int material, int mesh) {
+        if(program < 0 || program > MAX_PROGRAM || material < 0 || material > MAX_MATERIAL || mesh < 0 || mesh > MAX_MESH) {
+            throw new IllegalArgumentException("State out of range: program " + program + ", material " + material + ", mesh " + mesh);
+        }
+        return (long) program << 28 | (long) material << 12 | mesh;
+    }
+
+    private static long quantize(float depth, float maxDepth) {
+        float scaled = depth / maxDepth * MAX_DEPTH;
+        return scaled <= 0f ? 0L : (long) Math.min(scaled, MAX_DEPTH);
+    }
+
+    /** @return program, material and mesh of a key - two keys with equal state draw without switches */
+    public static long stateOf(long key) {
+        return (key & TRANSLUCENT_BIT) != 0 ? key & STATE_MASK : key >>> DEPTH_BITS & STATE_MASK;
+    }
+
+    public static int passOf(long key) {
+        return (int) (key >>> 60);
+    }
+
+    public static int programOf(long key) {
+        return (int) (stateOf(key) >>> 28);
+    }
+
+    public static int materialOf(long key) {
+        return (int) (stateOf(key) >>> 12) & MAX_MATERIAL;
+    }
+
+    public static int meshOf(long key) {
+        return (int) stateOf(key) & MAX_MESH;
+    }
+
+    public void submit(long key, int payload) {
+        if(count == keys.length) {
+            int capacity = count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            keyScratch = new long[capacity];
+            payloadScratch = new int[capacity];
+        }
+        keys[count] = key;
+        payloads[count] = payload;
+        count++;
+    }
+
+    /** Empties the queue for the next frame */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Sorts the submitted draws by key, stable for equal keys.
+     * One pass per key byte, skipping bytes all keys share - typically the pass and most state bytes.
+     */
+    public void sort() {
+        unsortedChanges = countStateChanges();
+
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = 0; i < count; i++) {
+                histogram[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if(count == 0 || histogram[(int) (keys[0] >>> shift) & (RADIX - 1)] == count) continue;
+
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int digitCount = histogram[digit];
+                histogram[digit] = offset;
+                offset += digitCount;
+            }
+            for (int i = 0; i < count; i++) {
+                int target = histogram[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+                keyScratch[target] = keys[i];
+                payloadScratch[target] = payloads[i];
+            }
+
+            long[] sortedKeys = keyScratch;
+            keyScratch = keys;
+            keys = sortedKeys;
+            int[] sortedPayloads = payloadScratch;
+            payloadScratch = payloads;
+            payloads = sortedPayloads;
+        }
+
+        sortedChanges = countStateChanges();
+        RenderStats.countStateChanges(unsortedChanges, sortedChanges);
+    }
+
+    /** @return program, material and mesh switches when drawing in the current order, the first draw's included */
+    private int countStateChanges() {
+        int changes = 0;
+        long previous = -1L;
+        for (int i = 0; i < count; i++) {
+            long state = stateOf(keys[i]);
+            if(previous == -1L) {
+                changes += 3;
+            } else if(state != previous) {
+                if(programOf(keys[i]) != (int) (previous >>> 28)) changes++;
+                if(materialOf(keys[i]) != ((int) (previous >>> 12) & MAX_MATERIAL)) changes++;
+                if(meshOf(keys[i]) != ((int) previous & MAX_MESH)) changes++;
+            }
+            previous = state;
+        }
+        return changes;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    public int getPayload(int index) {
+        return payloads[index];
+    }
+
+    /** @return state changes of the draws in submission order, as of the last sort */
+    public int getUnsortedChanges() {
+        return unsortedChanges;
+    }
+
+    /** @return state changes of the draws in sorted order, as of the last sort */
+    public int getSortedChanges() {
+        return sortedChanges;
+    }
+}
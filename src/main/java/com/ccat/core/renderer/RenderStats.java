@@ -0,0 +1,121 @@
+package com.ccat.core.renderer;
+
+/**
+ * Per-frame renderer counters, averaged and printed about once per second
+ */
+public final class RenderStats {
+    private static final float REPORT_INTERVAL = 1f;
+
+    private static int programBinds;
+    private static int drawCalls;
+    private static int visibleObjects;
+    private static int culledObjects;
+    private static int occludedObjects;
+    private static long occludedFragments;
+    private static int unsortedStateChanges;
+    private static int stateChanges;
+
+    private static int frames;
+    private static float elapsed;
+    private static long totalProgramBinds;
+    private static long totalDrawCalls;
+    private static long totalVisible;
+    private static long totalCulled;
+    private static long totalOccluded;
+    private static long totalOccludedFragments;
+    private static long totalUnsortedStateChanges;
+    private static long totalStateChanges;
+
+    private RenderStats() { }
+
+    public static void countProgramBind() {
+        programBinds++;
+    }
+
+    public static void countDrawCall() {
+        drawCalls++;
+    }
+
+    /**
+     * @param visible objects that passed the frustum test and are drawn
+     * @param culled objects skipped because they are outside the frustum
+     */
+    public static void countCulling(int visible, int culled) {
+        visibleObjects += visible;
+        culledObjects += culled;
+    }
+
+    /**
+     * @param occluded objects inside the frustum but hidden behind the depth of the last frame
+     * @param fragments estimated fragments the occluded objects would have covered
+     */
+    public static void countOcclusion(int occluded, long fragments) {
+        occludedObjects += occluded;
+        occludedFragments += fragments;
+    }
+
+    /**
+     * @param unsorted program/material/mesh switches the draws of a RenderQueue needed in submission order
+     * @param sorted switches after sorting, those actually issued
+     */
+    public static void countStateChanges(int unsorted, int sorted) {
+        unsortedStateChanges += unsorted;
+        stateChanges += sorted;
+    }
+
+    /** @return glUseProgram calls issued so far in the current frame */
+    public static int getProgramBinds() {
+        return programBinds;
+    }
+
+    /**
+     * Accumulates the counters of the finished frame and prints the averages once per interval
+     *
+     * @param delta Duration of the finished frame in seconds
+     */
+    public static void endFrame(float delta) {
+        frames++;
+        elapsed += delta;
+        totalProgramBinds += programBinds;
+        totalDrawCalls += drawCalls;
+        totalVisible += visibleObjects;
+        totalCulled += culledObjects;
+        totalOccluded += occludedObjects;
+        totalOccludedFragments += occludedFragments;
+        totalUnsortedStateChanges += unsortedStateChanges;
+        totalStateChanges += stateChanges;
+        programBinds = 0;
+        drawCalls = 0;
+        visibleObjects = 0;
+        culledObjects = 0;
+        occludedObjects = 0;
+        occludedFragments = 0;
+        unsortedStateChanges = 0;
+        stateChanges = 0;
+
+        if(elapsed < REPORT_INTERVAL) return;
+
+        System.out.printf("Frame ## %.2f ms - Program binds:%.1f - Draw calls:%.1f - Visible:%.1f - Culled:%.1f - Occluded:%.1f - Saved fragments:%.2f M - State changes:%.1f (unsorted %.1f)%n",
+                elapsed * 1000f / frames,
+                (float) totalProgramBinds / frames,
+                (float) totalDrawCalls / frames,
+                (float) totalVisible / frames,
+                (float) totalCulled / frames,
+                (float) totalOccluded / frames,
+                totalOccludedFragments / 1_000_000.0 / frames,
+                (float) totalStateChanges / frames,
+                (float) totalUnsortedStateChanges / frames
+        );
+
+        frames = 0;
+        elapsed = 0f;
+        totalProgramBinds = 0;
+        totalDrawCalls = 0;
+        totalVisible = 0;
+        totalCulled = 0;
+        totalOccluded = 0;
+        totalOccludedFragments = 0;
+        totalUnsortedStateChanges = 0;
+        totalStateChanges = 0;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL33;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL33.*;
+import static org.lwjgl.opengl.GL45.glCreateSamplers;
+import static org.lwjgl.opengl.GL46.GL_MAX_TEXTURE_MAX_ANISOTROPY;
+import static org.lwjgl.opengl.GL46.GL_TEXTURE_MAX_ANISOTROPY;
+
+/**
+ * Shared sampler objects - filtering and wrapping live here instead of in every Texture.
+ * Textures only reference a sampler and bind it next to themselves per texture unit.
+ * Linear samplers use trilinear filtering with anisotropy up to {@code -Dotome.anisotropy} (default 8),
+ * nearest samplers stay on the base level unless a mipmap filter is asked for.
+ */
+public final class SamplerCache {
+    private static final float ANISOTROPY = Float.parseFloat(System.getProperty("otome.anisotropy", "8"));
+
+    private static final Map<SamplerKey, Integer> samplers = new HashMap<>();
+    private static Float maxAnisotropy;
+
+    private SamplerCache() { }
+
+    private record SamplerKey(int filter, int wrap) { }
+
+    /**
+     * @param filter GL_LINEAR samples mip levels trilinearly, GL_NEAREST only the base level -
+     *               a mipmap min filter like GL_NEAREST_MIPMAP_NEAREST is used as given
+     * @param wrap wrap mode for s and t, e.g. GL_REPEAT or GL_CLAMP_TO_EDGE
+     * @return shared sampler object, owned by the cache
+     */
+    public static int get(int filter, int wrap) {
+        return samplers.computeIfAbsent(new SamplerKey(filter, wrap), SamplerCache::create);
+    }
+
+    /** @return shared repeating sampler for the filter */
+    public static int get(int filter) {
+        return get(filter, GL_REPEAT);
+    }
+
+    private static int create(SamplerKey key) {
+        int filter = key.filter();
+        boolean linear = filter == GL_LINEAR;
+        int minFilter = linear ? GL_LINEAR_MIPMAP_LINEAR : filter;
+        int magFilter = filter == GL_NEAREST || filter == GL_NEAREST_MIPMAP_NEAREST || filter == GL_NEAREST_MIPMAP_LINEAR
+                ? GL_NEAREST : GL_LINEAR;
+
+        int sampler = glCreateSamplers();
+        glSamplerParameteri(sampler, GL_TEXTURE_MIN_FILTER, minFilter);
+        glSamplerParameteri(sampler, GL_TEXTURE_MAG_FILTER, magFilter);
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_S, key.wrap());
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_T, key.wrap());
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_R, GL_CLAMP_TO_EDGE);
+
+        float anisotropy = Math.min(ANISOTROPY, getMaxAnisotropy());
+        if(linear && anisotropy > 1f) {
+            glSamplerParameterf(sampler, GL_TEXTURE_MAX_ANISOTROPY, anisotropy);
+        }
+        return sampler;
+    }
+
+    /** @return driver limit for anisotropic filtering, 1 if it is not supported */
+    private static float getMaxAnisotropy() {
+        if(maxAnisotropy == null) {
+            boolean supported = GL.getCapabilities().OpenGL46
+                    || GL.getCapabilities().GL_ARB_texture_filter_anisotropic
+                    || GL.getCapabilities().GL_EXT_texture_filter_anisotropic;
+            maxAnisotropy = supported ? glGetFloat(GL_MAX_TEXTURE_MAX_ANISOTROPY) : 1f;
+        }
+        return maxAnisotropy;
+    }
+
+    /** Deletes every sampler - call before the context is destroyed */
+    public static void destroy() {
+        samplers.values().forEach(GL33::glDeleteSamplers);
+        samplers.clear();
+    }
+}
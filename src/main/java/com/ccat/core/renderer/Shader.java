@@ -12,37 +12,83 @@ public class Shader {
     private final int shaderId;
 
     public Shader(ShaderType type, String filepath) {
-        this.shaderId = compile(type, filepath);
+        this.shaderId = compile(type, readSource(filepath));
+    }
+
+    private Shader(int shaderId) {
+        this.shaderId = shaderId;
     }
 
     /**
-     * Compiles the Shader from Type and filepath provided
+     * Compiles a Shader from an already loaded source
      *
      * @param type Type of Shader to compile
+     * @param source GLSL source code
+     * @return the compiled Shader
+     */
+    public static Shader fromSource(ShaderType type, String source) {
+        return new Shader(compile(type, source));
+    }
+
+    /**
+     * Reads the GLSL source of a Shader from the classpath
+     *
      * @param filepath Filepath to the Shader file
-     * @return Id of the Shader-Object
+     * @return GLSL source code
      */
-    private int compile(ShaderType type, String filepath) {
+    public static String readSource(String filepath) {
         try {
-            String shaderSource = FileReaderUtil.readFile(filepath);
+            return FileReaderUtil.readFile(filepath);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read Shader File-Path: " + filepath);
+        }
+    }
 
-            int shaderId = glCreateShader(type.getGlType());
-            glShaderSource(shaderId, shaderSource);
-            glCompileShader(shaderId);
+    /**
+     * Injects {@code #define} lines directly after the {@code #version} directive
+     *
+     * @param source GLSL source code
+     * @param defines Defines to inject, either "NAME" or "NAME VALUE"
+     * @return source with the defines applied
+     */
+    public static String applyDefines(String source, String... defines) {
+        if(defines.length == 0) return source;
 
-            //Check Errors:
-            if(glGetShaderi(shaderId, GL_COMPILE_STATUS) == GL_FALSE) {
-                String infoLog = glGetShaderInfoLog(shaderId);
-                glDeleteShader(shaderId);
+        StringBuilder defineBlock = new StringBuilder();
+        for (String define : defines) {
+            defineBlock.append("#define ").append(define).append('\n');
+        }
 
-                throw new RuntimeException(infoLog);
-            }
+        int versionStart = source.indexOf("#version");
+        if(versionStart < 0) return defineBlock + source;
 
-            return shaderId;
+        int versionEnd = source.indexOf('\n', versionStart);
+        if(versionEnd < 0) return source + '\n' + defineBlock;
 
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read Shader File-Path: " + filepath);
+        return source.substring(0, versionEnd + 1) + defineBlock + source.substring(versionEnd + 1);
+    }
+
+    /**
+     * Compiles the Shader from Type and source provided
+     *
+     * @param type Type of Shader to compile
+     * @param shaderSource GLSL source code
+     * @return Id of the Shader-Object
+     */
+    private static int compile(ShaderType type, String shaderSource) {
+        int shaderId = glCreateShader(type.getGlType());
+        glShaderSource(shaderId, shaderSource);
+        glCompileShader(shaderId);
+
+        //Check Errors:
+        if(glGetShaderi(shaderId, GL_COMPILE_STATUS) == GL_FALSE) {
+            String infoLog = glGetShaderInfoLog(shaderId);
+            glDeleteShader(shaderId);
+
+            throw new RuntimeException(infoLog);
         }
+
+        return shaderId;
     }
 
     /** @return Id of the Shader */
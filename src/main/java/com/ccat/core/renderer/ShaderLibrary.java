@@ -0,0 +1,254 @@
+package com.ccat.core.renderer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reference-counted cache of linked Shader Programs.
+ * Programs with identical stage sources and defines are compiled once and shared.
+ * Every shared Program gets a compact sort id for {@link RenderQueue} keys - the lowest one free,
+ * reused once the Program is deleted - since GL program names are not bounded.
+ */
+public final class ShaderLibrary {
+    private static final Map<ProgramKey, Entry> programs = new HashMap<>();
+    private static final Map<ShaderProgram, Entry> entries = new IdentityHashMap<>();
+    private static final BitSet sortIds = new BitSet();
+
+    private static final List<PendingRequest> requests = new ArrayList<>();
+    private static final Map<ProgramKey, ProgramCompileJob> compiling = new HashMap<>();
+
+    private static int compiled;
+    private static int cachedBinaries;
+    private static int shared;
+    private static long loadNanos;
+
+    private ShaderLibrary() { }
+
+    /** Stage sources after define injection - identical keys produce identical Programs */
+    private record ProgramKey(String vertexSource, String fragmentSource) { }
+
+    /** Async request whose sources are still being read off the render thread */
+    private record PendingRequest(CompletableFuture<ProgramKey> sources, CompletableFuture<ShaderProgram> result) { }
+
+    private static final class Entry {
+        private final ProgramKey key;
+        private final ShaderProgram program;
+        private final int sortId;
+        private int references;
+
+        private Entry(ProgramKey key, ShaderProgram program) {
+            this.key = key;
+            this.program = program;
+            this.sortId = sortIds.nextClearBit(0);
+            sortIds.set(sortId);
+        }
+    }
+
+    /**
+     * Returns a shared Program for the given stages, compiling it only on first use.
+     * Every acquire must be paired with a {@link #release(ShaderProgram)}.
+     *
+     * @param vertexShaderFilepath filepath of the Vertex Shader
+     * @param fragmentShaderFilepath filepath of the Fragment Shader
+     * @param defines Defines injected into both stages, either "NAME" or "NAME VALUE"
+     * @return the shared Shader Program
+     */
+    public static ShaderProgram acquire(String vertexShaderFilepath, String fragmentShaderFilepath, String... defines) {
+        String vertexSource = Shader.applyDefines(Shader.readSource(vertexShaderFilepath), defines);
+        String fragmentSource = Shader.applyDefines(Shader.readSource(fragmentShaderFilepath), defines);
+
+        ProgramKey key = new ProgramKey(vertexSource, fragmentSource);
+        Entry entry = programs.get(key);
+
+        if(entry == null) {
+            long start = System.nanoTime();
+            ShaderProgram program = ShaderProgram.fromSources(vertexSource, fragmentSource);
+            loadNanos += System.nanoTime() - start;
+
+            if(program.isFromBinaryCache()) {
+                cachedBinaries++;
+            } else {
+                compiled++;
+            }
+
+            entry = new Entry(key, program);
+            programs.put(key, entry);
+            entries.put(program, entry);
+        } else {
+            shared++;
+        }
+
+        entry.references++;
+        return entry.program;
+    }
+
+    /**
+     * Asynchronous variant of {@link #acquire(String, String, String...)}.
+     * Sources are read on worker threads; compile and link are issued from {@link #update()}
+     * without waiting on the driver, so several Programs compile at the same time.
+     * The future completes on the render thread inside {@link #update()} - keep rendering
+     * a fallback until then. Hand the future to {@link #release(CompletableFuture)} when done with it.
+     *
+     * @param vertexShaderFilepath filepath of the Vertex Shader
+     * @param fragmentShaderFilepath filepath of the Fragment Shader
+     * @param defines Defines injected into both stages, either "NAME" or "NAME VALUE"
+     * @return future of the shared Shader Program
+     */
+    public static CompletableFuture<ShaderProgram> acquireAsync(String vertexShaderFilepath, String fragmentShaderFilepath, String... defines) {
+        CompletableFuture<String> vertexSource = CompletableFuture.supplyAsync(
+                () -> Shader.applyDefines(Shader.readSource(vertexShaderFilepath), defines));
+        CompletableFuture<String> fragmentSource = CompletableFuture.supplyAsync(
+                () -> Shader.applyDefines(Shader.readSource(fragmentShaderFilepath), defines));
+
+        CompletableFuture<ShaderProgram> result = new CompletableFuture<>();
+        requests.add(new PendingRequest(vertexSource.thenCombine(fragmentSource, ProgramKey::new), result));
+
+        return result;
+    }
+
+    /**
+     * Advances asynchronous requests - call once per frame on the render thread.
+     * Issues compiles for requests whose sources arrived and completes the futures of finished Programs.
+     */
+    public static void update() {
+        if(requests.isEmpty() && compiling.isEmpty()) return;
+
+        //Issue every compile that became possible before checking on any of them
+        Iterator<PendingRequest> requestIterator = requests.iterator();
+        while (requestIterator.hasNext()) {
+            PendingRequest request = requestIterator.next();
+            if(!request.sources().isDone()) continue;
+            requestIterator.remove();
+
+            //Released before the sources arrived
+            if(request.result().isCancelled()) continue;
+
+            ProgramKey key;
+            try {
+                key = request.sources().join();
+            } catch (CompletionException e) {
+                request.result().completeExceptionally(e.getCause());
+                continue;
+            }
+
+            Entry entry = programs.get(key);
+            if(entry != null) {
+                shared++;
+                entry.references++;
+                request.result().complete(entry.program);
+                continue;
+            }
+
+            ProgramCompileJob job = compiling.get(key);
+            if(job == null) {
+                job = ProgramCompileJob.start(key.vertexSource(), key.fragmentSource());
+                compiling.put(key, job);
+            } else {
+                shared++;
+            }
+            job.waiting.add(request.result());
+        }
+
+        Iterator<Map.Entry<ProgramKey, ProgramCompileJob>> jobIterator = compiling.entrySet().iterator();
+        while (jobIterator.hasNext()) {
+            Map.Entry<ProgramKey, ProgramCompileJob> running = jobIterator.next();
+            ProgramCompileJob job = running.getValue();
+            if(!job.isComplete()) continue;
+            jobIterator.remove();
+
+            ShaderProgram program;
+            try {
+                program = job.finish();
+            } catch (RuntimeException e) {
+                job.waiting.forEach(result -> result.completeExceptionally(e));
+                continue;
+            }
+
+            if(program.isFromBinaryCache()) {
+                cachedBinaries++;
+            } else {
+                compiled++;
+            }
+
+            //Requests released while compiling hold no reference
+            job.waiting.removeIf(CompletableFuture::isCancelled);
+            if(job.waiting.isEmpty()) {
+                program.destroy();
+                continue;
+            }
+
+            Entry entry = new Entry(running.getKey(), program);
+            entry.references = job.waiting.size();
+            programs.put(running.getKey(), entry);
+            entries.put(program, entry);
+
+            job.waiting.forEach(result -> result.complete(program));
+        }
+    }
+
+    /** @return true if no asynchronous request is waiting for sources or the driver */
+    public static boolean isIdle() {
+        return requests.isEmpty() && compiling.isEmpty();
+    }
+
+    /**
+     * Drops one reference to the Program and deletes it once no user is left
+     *
+     * @param program Program obtained from {@link #acquire(String, String, String...)}
+     */
+    public static void release(ShaderProgram program) {
+        Entry entry = entries.get(program);
+        if(entry == null) {
+            throw new IllegalStateException("Shader Program was not acquired from the ShaderLibrary.");
+        }
+
+        if(--entry.references > 0) return;
+
+        programs.remove(entry.key);
+        entries.remove(program);
+        sortIds.clear(entry.sortId);
+        program.destroy();
+    }
+
+    /**
+     * @param program Program obtained from the ShaderLibrary
+     * @return compact id of the Program for sort keys, unique among the live Programs
+     */
+    public static int getSortId(ShaderProgram program) {
+        Entry entry = entries.get(program);
+        if(entry == null) {
+            throw new IllegalStateException("Shader Program was not acquired from the ShaderLibrary.");
+        }
+        return entry.sortId;
+    }
+
+    /**
+     * Releases the Program of an {@link #acquireAsync} request - call on the render thread.
+     * A request that has not completed yet is cancelled instead, {@link #update()} then drops it
+     * without handing out the Program or counting a reference for it.
+     *
+     * @param pending future returned by acquireAsync
+     */
+    public static void release(CompletableFuture<ShaderProgram> pending) {
+        if(pending.cancel(false) || pending.isCompletedExceptionally()) return;
+
+        release(pending.join());
+    }
+
+    /**
+     * Prints how many Programs were compiled from source or loaded from the binary cache,
+     * how many requests were shared and the total load time - compare a cold (empty cache/) and a warm run
+     */
+    public static void printReport() {
+        System.out.printf("Shader Programs ## Compiled:%d - From binary cache:%d - Shared:%d - Load time:%.2f ms%n",
+                compiled, cachedBinaries, shared, loadNanos / 1_000_000.0
+        );
+    }
+}
@@ -1,21 +1,33 @@
 package com.ccat.core.renderer;
 
 import com.ccat.core.model.ShaderType;
+import com.ccat.core.model.UniformType;
 import org.joml.*;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
 
 public class ShaderProgram {
+    /** Program currently in use, so redundant glUseProgram calls can be skipped */
+    private static int boundProgram = 0;
+
     private int program;
+    private boolean fromBinaryCache = false;
 
     private final Map<String, Integer> uniformLocations = new HashMap<>();
+    private final int[] typedLocations = new int[UniformType.values().length];
+
+    /** Reusable off-heap scratch for matrix uploads, freed in destroy() */
+    private final FloatBuffer matrixBuffer = MemoryUtil.memAllocFloat(16);
 
     /**
      * Compiles both Vertex and Fragment Shaders from provided Filepath
@@ -40,21 +52,76 @@ public class ShaderProgram {
         linkShaders(vertexShader, fragmentShader);
     }
 
+    private ShaderProgram(Shader... shaders) {
+        linkShaders(shaders);
+    }
+
     /**
-     * Links the Vertex and Fragment Shaders
+     * Wraps an already linked Program
      *
-     * @param vertexShader compiled Vertex Shader
-     * @param fragmentShader compiled Fragment Shader
+     * @param linkedProgram Program-Id with a successful link status
+     * @param fromBinaryCache true if the Program was restored from the binary cache
      */
-    private void linkShaders(Shader vertexShader, Shader fragmentShader) {
-        this.program = glCreateProgram();
+    ShaderProgram(int linkedProgram, boolean fromBinaryCache) {
+        this.program = linkedProgram;
+        this.fromBinaryCache = fromBinaryCache;
+
+        compileUniformLocations();
+    }
+
+    /**
+     * Creates a Program from already loaded sources.
+     * A cached Program binary is used if the driver accepts it, otherwise the sources are
+     * compiled and linked and the resulting binary is written to the cache.
+     *
+     * @param vertexSource GLSL source of the Vertex Shader
+     * @param fragmentSource GLSL source of the Fragment Shader
+     * @return the linked Shader Program
+     */
+    public static ShaderProgram fromSources(String vertexSource, String fragmentSource) {
+        String cacheKey = null;
+        if(ProgramBinaryCache.isEnabled()) {
+            cacheKey = ProgramBinaryCache.key(vertexSource, fragmentSource);
+
+            int cachedProgram = ProgramBinaryCache.load(cacheKey);
+            if(cachedProgram != 0) return new ShaderProgram(cachedProgram, true);
+        }
+
+        Shader vertexShader = Shader.fromSource(ShaderType.VERTEX, vertexSource);
+        Shader fragmentShader = Shader.fromSource(ShaderType.FRAGMENT, fragmentSource);
+        ShaderProgram shaderProgram = new ShaderProgram(vertexShader, fragmentShader);
+
+        if(cacheKey != null) {
+            ProgramBinaryCache.store(cacheKey, shaderProgram.program);
+        }
+        return shaderProgram;
+    }
+
+    /**
+     * Creates a Compute Program - run it with {@code glDispatchCompute} while it is bound
+     *
+     * @param computeShaderFilepath filepath of the Compute Shader
+     * @param defines Defines injected into the source, either "NAME" or "NAME VALUE"
+     * @return the linked Compute Program
+     */
+    public static ShaderProgram compute(String computeShaderFilepath, String... defines) {
+        String computeSource = Shader.applyDefines(Shader.readSource(computeShaderFilepath), defines);
+        return new ShaderProgram(Shader.fromSource(ShaderType.COMPUTE, computeSource));
+    }
 
-        int vertexShaderId = vertexShader.getShaderId();
-        int fragmentShaderId = fragmentShader.getShaderId();
+    /**
+     * Links the Shader stages, e.g. Vertex and Fragment Shader
+     *
+     * @param shaders compiled Shaders, destroyed after linking
+     */
+    private void linkShaders(Shader... shaders) {
+        this.program = glCreateProgram();
 
-        glAttachShader(program, vertexShaderId);
-        glAttachShader(program, fragmentShaderId);
+        for (Shader shader : shaders) {
+            glAttachShader(program, shader.getShaderId());
+        }
 
+        glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
         glLinkProgram(program);
 
         //Check Errors:
@@ -62,22 +129,24 @@ public class ShaderProgram {
             String infoLog = glGetProgramInfoLog(program);
 
             glDeleteProgram(program);
-            glDeleteShader(vertexShaderId);
-            glDeleteShader(fragmentShaderId);
+            for (Shader shader : shaders) {
+                shader.destroy();
+            }
 
             throw new RuntimeException(infoLog);
         }
 
-        glDetachShader(program, vertexShaderId);
-        glDetachShader(program, fragmentShaderId);
-        vertexShader.destroy();
-        fragmentShader.destroy();
+        for (Shader shader : shaders) {
+            glDetachShader(program, shader.getShaderId());
+            shader.destroy();
+        }
 
         compileUniformLocations();
     }
 
     /**
      * Creates a Map of Shader Program Uniforms and their layout locations
+     * and resolves the locations of all known {@link UniformType}s
      */
     private void compileUniformLocations() {
         int uniformNum = glGetProgrami(program, GL_ACTIVE_UNIFORMS);
@@ -86,41 +155,47 @@ public class ShaderProgram {
         try(MemoryStack stack = MemoryStack.stackPush()) {
 
             if (uniformNum > 0 && maxLength > 0) {
-                for (int i = 0; i < uniformNum; i++) {
-                    IntBuffer size = stack.mallocInt(1);
-                    IntBuffer type = stack.mallocInt(1);
+                IntBuffer size = stack.mallocInt(1);
+                IntBuffer type = stack.mallocInt(1);
 
+                for (int i = 0; i < uniformNum; i++) {
                     String uniformName = glGetActiveUniform(program, i, maxLength, size, type);
                     int uniformLocation = glGetUniformLocation(program, uniformName);
-
-                    //todo: Debug Output - remove later
-                    System.out.printf("Uniform ## Name:%s - Location:%d - Type:%d%n",
-                            uniformName, uniformLocation, type.get()
-                    );
-
                     uniformLocations.put(uniformName, uniformLocation);
                 }
-
-                System.out.println(uniformLocations);
             }
         }
+
+        Arrays.fill(typedLocations, -1);
+        for (UniformType uniformType : UniformType.values()) {
+            typedLocations[uniformType.ordinal()] = getUniformLocation(uniformType.getName());
+        }
     }
 
-    /** Binds the Shader Program for use */
+    /** Binds the Shader Program for use, skipping the call if it is already bound */
     public void bind() {
+        if(boundProgram == program) return;
+
         glUseProgram(program);
+        boundProgram = program;
+        RenderStats.countProgramBind();
     }
 
     /** Unbinds the Shader Program */
     public void unbind() {
         glUseProgram(0);
+        boundProgram = 0;
     }
 
-    /** Deletes the Shader Program and sets the Program-Id to -1 */
+    /** Deletes the Shader Program, frees the upload scratch buffer and sets the Program-Id to -1 */
     public void destroy() {
+        if(program == -1) return;
+
+        if(boundProgram == program) unbind();
         uniformLocations.clear();
-        glDeleteProgram(0);
+        glDeleteProgram(program);
         program = -1;
+        MemoryUtil.memFree(matrixBuffer);
     }
 
     /** @return Shader Program-Id */
@@ -128,6 +203,29 @@ public class ShaderProgram {
         return program;
     }
 
+    /** @return true if the Program was created from the on-disk binary cache instead of compiled */
+    public boolean isFromBinaryCache() {
+        return fromBinaryCache;
+    }
+
+    /**
+     * Resolves a Uniform handle once, so it can be uploaded without a name lookup per frame
+     *
+     * @param var Uniform name
+     * @return Uniform location, or -1 if the Program has no active Uniform of that name
+     */
+    public int getUniformLocation(String var) {
+        return uniformLocations.getOrDefault(var, -1);
+    }
+
+    /**
+     * @param type Uniform type
+     * @return Uniform location resolved after linking, or -1 if the Program does not use it
+     */
+    public int getUniformLocation(UniformType type) {
+        return typedLocations[type.ordinal()];
+    }
+
     /**
      * Uploads a Vector4 Uniform to the Shader Object
      *
@@ -135,70 +233,120 @@ public class ShaderProgram {
      * @param vec4 Value to upload
      */
     public void uploadVec4(String var, Vector4f vec4) {
-        Integer location = uniformLocations.get(var);
+        uploadVec4(getUniformLocation(var), vec4);
+    }
+
+    /**
+     * Uploads a Vector4 Uniform to the Shader Object
+     *
+     * @param location Uniform handle from {@link #getUniformLocation(String)}
+     * @param vec4 Value to upload
+     */
+    public void uploadVec4(int location, Vector4f vec4) {
         glUniform4f(location, vec4.x, vec4.y, vec4.z, vec4.w);
     }
 
     public void uploadVec3(String var, Vector3f vec3) {
-        Integer location = uniformLocations.get(var);
+        uploadVec3(getUniformLocation(var), vec3);
+    }
+
+    public void uploadVec3(int location, Vector3f vec3) {
         glUniform3f(location, vec3.x, vec3.y, vec3.z);
     }
 
     public void uploadVec2(String var, Vector2f vec2) {
-        Integer location = uniformLocations.get(var);
+        uploadVec2(getUniformLocation(var), vec2);
+    }
+
+    public void uploadVec2(int location, Vector2f vec2) {
         glUniform2f(location, vec2.x, vec2.y);
     }
 
     public void uploadIVec4(String var, Vector4i vec4) {
-        Integer location = uniformLocations.get(var);
+        uploadIVec4(getUniformLocation(var), vec4);
+    }
+
+    public void uploadIVec4(int location, Vector4i vec4) {
         glUniform4i(location, vec4.x, vec4.y, vec4.z, vec4.w);
     }
 
     public void uploadIVec3(String var, Vector3i vec3) {
-        Integer location = uniformLocations.get(var);
+        uploadIVec3(getUniformLocation(var), vec3);
+    }
+
+    public void uploadIVec3(int location, Vector3i vec3) {
         glUniform3i(location, vec3.x, vec3.y, vec3.z);
     }
 
     public void uploadIVec2(String var, Vector2i vec2) {
-        Integer location = uniformLocations.get(var);
+        uploadIVec2(getUniformLocation(var), vec2);
+    }
+
+    public void uploadIVec2(int location, Vector2i vec2) {
         glUniform2i(location, vec2.x, vec2.y);
     }
 
     public void uploadFloat(String var, float val) {
-        Integer location = uniformLocations.get(var);
+        uploadFloat(getUniformLocation(var), val);
+    }
+
+    public void uploadFloat(int location, float val) {
         glUniform1f(location, val);
     }
 
     public void uploadInt(String var, Integer val) {
-        Integer location = uniformLocations.get(var);
+        uploadInt(getUniformLocation(var), val.intValue());
+    }
+
+    public void uploadInt(int location, int val) {
         glUniform1i(location, val);
     }
 
     public void uploadIntArray(String var, int[] array) {
-        Integer location = uniformLocations.get(var);
+        uploadIntArray(getUniformLocation(var), array);
+    }
+
+    public void uploadIntArray(int location, int[] array) {
         glUniform1iv(location, array);
     }
 
     public void uploadBool(String var, boolean val ) {
-        Integer location = uniformLocations.get(var);
+        uploadBool(getUniformLocation(var), val);
+    }
+
+    public void uploadBool(int location, boolean val) {
         glUniform1i(location, val ? 1 : 0);
     }
 
     public void uploadMat4(String var, Matrix4f val) {
-        Integer location = uniformLocations.get(var);
+        uploadMat4(getUniformLocation(var), val);
+    }
 
-        FloatBuffer buffer = MemoryUtil.memAllocFloat(16);
-        val.get(buffer);
+    public void uploadMat4(UniformType type, Matrix4f val) {
+        uploadMat4(typedLocations[type.ordinal()], val);
+    }
 
-        glUniformMatrix4fv(location, false, buffer);
+    /**
+     * Uploads a Matrix4 through the reusable scratch buffer - allocates nothing on- or off-heap
+     *
+     * @param location Uniform handle from {@link #getUniformLocation(String)}
+     * @param val Value to upload
+     */
+    public void uploadMat4(int location, Matrix4f val) {
+        val.get(matrixBuffer.limit(16));
+        glUniformMatrix4fv(location, false, matrixBuffer);
     }
 
     public void uploadMat3(String var, Matrix3f val) {
-        Integer location = uniformLocations.get(var);
+        uploadMat3(getUniformLocation(var), val);
+    }
 
-        FloatBuffer buffer = MemoryUtil.memAllocFloat(9);
-        val.get(buffer);
+    public void uploadMat3(UniformType type, Matrix3f val) {
+        uploadMat3(typedLocations[type.ordinal()], val);
+    }
 
-        glUniformMatrix3fv(location, false, buffer);
+    public void uploadMat3(int location, Matrix3f val) {
+        val.get(matrixBuffer.limit(9));
+        glUniformMatrix3fv(location, false, matrixBuffer);
     }
 }
@@ -0,0 +1,75 @@
+package com.ccat.core.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
+import static org.lwjgl.opengl.GL44.GL_DYNAMIC_STORAGE_BIT;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Shader Storage Buffer Object with immutable storage, read in the shaders through a
+ * {@code layout(std430, binding = n) buffer} block
+ */
+public class StorageBuffer {
+    private final int ssbo;
+    private final long size;
+
+    /**
+     * Creates an empty, updatable Buffer
+     *
+     * @param size Size in bytes
+     */
+    public StorageBuffer(long size) {
+        this.size = size;
+        this.ssbo = glCreateBuffers();
+        glNamedBufferStorage(ssbo, size, GL_DYNAMIC_STORAGE_BIT);
+    }
+
+    /**
+     * Creates an updatable Buffer initialized with data
+     *
+     * @param data std430 packed contents
+     */
+    public StorageBuffer(FloatBuffer data) {
+        this.size = (long) data.remaining() * Float.BYTES;
+        this.ssbo = glCreateBuffers();
+        glNamedBufferStorage(ssbo, data, GL_DYNAMIC_STORAGE_BIT);
+    }
+
+    public void upload(long offset, ByteBuffer data) {
+        glNamedBufferSubData(ssbo, offset, data);
+    }
+
+    public void upload(long offset, FloatBuffer data) {
+        glNamedBufferSubData(ssbo, offset, data);
+    }
+
+    public void upload(long offset, IntBuffer data) {
+        glNamedBufferSubData(ssbo, offset, data);
+    }
+
+    /**
+     * Binds the Buffer to a storage block binding point
+     *
+     * @param bindingPoint {@code binding} of the buffer block in the shader
+     */
+    public void bind(int bindingPoint) {
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, bindingPoint, ssbo);
+    }
+
+    public int getBuffer() {
+        return ssbo;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void destroy() {
+        glDeleteBuffers(ssbo);
+    }
+}
@@ -0,0 +1,123 @@
+package com.ccat.core.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Copies large data into buffers over several frames instead of stalling one frame with the whole upload.
+ * Every {@link #step()} writes one slice into a persistently mapped staging buffer and lets the GPU copy
+ * it into the target. The staging buffer has two slots, each reused once the GPU finished its last copy.
+ * The source memory must stay unchanged until the upload finished.
+ */
+public class StreamingUpload {
+    private static final int SLOTS = 2;
+
+    private final long sliceBytes;
+    private final int staging;
+    private final long stagingAddress;
+    private final long[] fences = new long[SLOTS];
+    private int nextSlot;
+
+    private int target;
+    private long source;
+    private long targetOffset;
+    private long size;
+    private long written;
+    private int frames;
+
+    /** @param sliceBytes bytes copied per step */
+    public StreamingUpload(long sliceBytes) {
+        this.sliceBytes = sliceBytes;
+
+        int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+        this.staging = glCreateBuffers();
+        glNamedBufferStorage(staging, SLOTS * sliceBytes, flags);
+        ByteBuffer mapped = glMapNamedBufferRange(staging, 0, SLOTS * sliceBytes, flags);
+        if(mapped == null) {
+            throw new IllegalStateException("Unable to map the staging buffer.");
+        }
+        this.stagingAddress = MemoryUtil.memAddress(mapped);
+    }
+
+    /**
+     * Starts copying data into a buffer - the target must be large enough already
+     *
+     * @param targetBuffer buffer receiving the data
+     * @param targetOffset byte offset in the target
+     * @param data source, read from its position to its limit
+     */
+    public void begin(int targetBuffer, long targetOffset, ByteBuffer data) {
+        begin(targetBuffer, targetOffset, MemoryUtil.memAddress(data), data.remaining());
+    }
+
+    /**
+     * @param source address of the data
+     * @param size bytes to copy
+     * @see #begin(int, long, ByteBuffer)
+     */
+    public void begin(int targetBuffer, long targetOffset, long source, long size) {
+        if(!isDone()) {
+            throw new IllegalStateException("Streaming upload still in progress.");
+        }
+        this.target = targetBuffer;
+        this.targetOffset = targetOffset;
+        this.source = source;
+        this.size = size;
+        this.written = 0;
+        this.frames = 0;
+    }
+
+    /**
+     * Copies the next slice - call once per frame on the render thread
+     *
+     * @return true once all data is copied
+     */
+    public boolean step() {
+        if(isDone()) return true;
+        frames++;
+
+        int slot = nextSlot;
+        if(fences[slot] != 0) {
+            //The GPU still copies out of this slot - try again next frame
+            if(glClientWaitSync(fences[slot], 0, 0) == GL_TIMEOUT_EXPIRED) return false;
+            glDeleteSync(fences[slot]);
+            fences[slot] = 0;
+        }
+
+        long slice = Math.min(sliceBytes, size - written);
+        long slotOffset = slot * sliceBytes;
+        MemoryUtil.memCopy(source + written, stagingAddress + slotOffset, slice);
+        glCopyNamedBufferSubData(staging, target, slotOffset, targetOffset + written, slice);
+        fences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        nextSlot = (slot + 1) % SLOTS;
+
+        written += slice;
+        return isDone();
+    }
+
+    /** @return true if no upload is running - copies already issued complete before later draws in any case */
+    public boolean isDone() {
+        return written >= size;
+    }
+
+    /** @return frames the last upload took so far */
+    public int getFrames() {
+        return frames;
+    }
+
+    public void destroy() {
+        for (long fence : fences) {
+            if(fence != 0) glDeleteSync(fence);
+        }
+        glUnmapNamedBuffer(staging);
+        glDeleteBuffers(staging);
+    }
+}
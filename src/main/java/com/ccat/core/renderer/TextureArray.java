@@ -0,0 +1,72 @@
+package com.ccat.core.renderer;
+
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL33.glBindSampler;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * All images of a set as layers of one GL_TEXTURE_2D_ARRAY.
+ * Layers must share a size, smaller images are resampled to the largest one.
+ */
+public class TextureArray implements TextureSet {
+    private final int textureId;
+    private final int samplerId;
+    private final int layers;
+
+    /**
+     * @param images decoded RGBA images, layer i is image i - not freed
+     * @param filter min/mag filter
+     */
+    public TextureArray(List<DecodedImage> images, int filter) {
+        this.layers = images.size();
+
+        int width = 1;
+        int height = 1;
+        for (DecodedImage image : images) {
+            width = Math.max(width, image.getWidth());
+            height = Math.max(height, image.getHeight());
+        }
+        int levels = 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+
+        this.textureId = glCreateTextures(GL_TEXTURE_2D_ARRAY);
+        glTextureStorage3D(textureId, levels, TextureLoader.sizedFormat(4, TextureLoader.SRGB), width, height, layers);
+        this.samplerId = SamplerCache.get(filter, GL_REPEAT);
+
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        for (int layer = 0; layer < layers; layer++) {
+            DecodedImage image = images.get(layer);
+            boolean resize = image.getWidth() != width || image.getHeight() != height;
+            DecodedImage layerImage = resize ? image.resize(width, height) : image;
+
+            glTextureSubImage3D(textureId, 0, 0, 0, layer, width, height, 1,
+                    layerImage.getFormat(), GL_UNSIGNED_BYTE, layerImage.getPixels());
+
+            if(resize) layerImage.free();
+        }
+        glGenerateTextureMipmap(textureId);
+    }
+
+    @Override
+    public void bind() {
+        glBindTextureUnit(TEXTURE_UNIT, textureId);
+        glBindSampler(TEXTURE_UNIT, samplerId);
+    }
+
+    @Override
+    public int size() {
+        return layers;
+    }
+
+    @Override
+    public String getShaderDefine() {
+        return "TEXTURE_ARRAY";
+    }
+
+    @Override
+    public void destroy() {
+        glDeleteTextures(textureId);
+    }
+}
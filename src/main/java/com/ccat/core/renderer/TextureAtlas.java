@@ -0,0 +1,210 @@
+package com.ccat.core.renderer;
+
+import com.ccat.core.util.SkylinePacker;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL33.glBindSampler;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Packs many small images into a few atlas pages, stored as the layers of one GL_TEXTURE_2D_ARRAY.
+ * Every image is surrounded by a border of its own extruded edge pixels, and every cell is aligned to the
+ * texel size of the smallest mip level - a texel of any level covers a single image and its border,
+ * so filtering and minification never sample a neighbour.
+ * As a TextureSet the shaders remap the mesh UVs through the region buffer,
+ * static meshes can be remapped once on the CPU with {@link #remapTexCoords}.
+ */
+public class TextureAtlas implements TextureSet {
+    /** std430 stride of one region: vec4 uvRect + uint page, padded to 16 bytes */
+    private static final int REGION_BYTES = 32;
+
+    /** UV rectangle of an image inside its page, (0,0) is the lower left corner like in OpenGL */
+    public record Region(int page, float u0, float v0, float u1, float v1) { }
+
+    private final Region[] regions;
+    private final int pages;
+    private final int textureId;
+    private final int samplerId;
+    private final StorageBuffer regionBuffer;
+
+    /**
+     * @param images decoded RGBA images, region i is image i - not freed
+     * @param pageSize width and height of one page in pixels
+     * @param padding extruded border around each image, also limits the mip chain to log2(padding) levels
+     * @param filter min/mag filter
+     */
+    public TextureAtlas(List<DecodedImage> images, int pageSize, int padding, int filter) {
+        int maxSize = glGetInteger(GL_MAX_TEXTURE_SIZE);
+        if(pageSize > maxSize) pageSize = maxSize;
+
+        //Tallest images first - keeps the skyline flat
+        int[] order = IntStream.range(0, images.size())
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer i) -> images.get(i).getHeight()).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        //Cells start and end on the texel grid of the last level, whose texels span block pixels
+        int levels = padding > 0 ? 32 - Integer.numberOfLeadingZeros(padding) : 1;
+        int block = 1 << (levels - 1);
+
+        this.regions = new Region[images.size()];
+        int[][] positions = new int[images.size()][];
+        int[] pageOf = new int[images.size()];
+        List<SkylinePacker> packers = new ArrayList<>();
+
+        for (int index : order) {
+            DecodedImage image = images.get(index);
+            int paddedWidth = alignUp(image.getWidth() + 2 * padding, block);
+            int paddedHeight = alignUp(image.getHeight() + 2 * padding, block);
+            if(paddedWidth > pageSize || paddedHeight > pageSize) {
+                throw new IllegalArgumentException("Image of " + image.getWidth() + "x" + image.getHeight()
+                        + " does not fit an atlas page of " + pageSize);
+            }
+
+            int[] position = null;
+            int page = 0;
+            while (position == null) {
+                if(page == packers.size()) packers.add(new SkylinePacker(pageSize, pageSize));
+                position = packers.get(page).insert(paddedWidth, paddedHeight);
+                if(position == null) page++;
+            }
+
+            positions[index] = position;
+            pageOf[index] = page;
+
+            float size = pageSize;
+            int x = position[0] + padding;
+            int y = position[1] + padding;
+            regions[index] = new Region(page,
+                    x / size, y / size,
+                    (x + image.getWidth()) / size, (y + image.getHeight()) / size);
+        }
+        this.pages = Math.max(1, packers.size());
+
+        this.textureId = glCreateTextures(GL_TEXTURE_2D_ARRAY);
+        //Immutable storage caps sampling at the last padded level
+        glTextureStorage3D(textureId, levels, TextureLoader.sizedFormat(4, TextureLoader.SRGB), pageSize, pageSize, pages);
+        this.samplerId = SamplerCache.get(filter, GL_CLAMP_TO_EDGE);
+
+        ByteBuffer pagePixels = MemoryUtil.memAlloc(pageSize * pageSize * 4);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        for (int page = 0; page < pages; page++) {
+            MemoryUtil.memSet(pagePixels, 0);
+            for (int i = 0; i < images.size(); i++) {
+                if(pageOf[i] != page) continue;
+                blit(images.get(i), pagePixels, pageSize, positions[i][0], positions[i][1], padding, block);
+            }
+            glTextureSubImage3D(textureId, 0, 0, 0, page, pageSize, pageSize, 1,
+                    GL_RGBA, GL_UNSIGNED_BYTE, pagePixels);
+        }
+        MemoryUtil.memFree(pagePixels);
+        if(levels > 1) glGenerateTextureMipmap(textureId);
+
+        ByteBuffer regionData = MemoryUtil.memCalloc(Math.max(1, regions.length) * REGION_BYTES);
+        for (int i = 0; i < regions.length; i++) {
+            Region region = regions[i];
+            int offset = i * REGION_BYTES;
+            regionData.putFloat(offset, region.u0())
+                    .putFloat(offset + 4, region.v0())
+                    .putFloat(offset + 8, region.u1() - region.u0())
+                    .putFloat(offset + 12, region.v1() - region.v0())
+                    .putInt(offset + 16, region.page());
+        }
+        this.regionBuffer = new StorageBuffer(regionData.capacity());
+        regionBuffer.upload(0, regionData);
+        MemoryUtil.memFree(regionData);
+
+        System.out.printf("Atlas ## Images:%d - Pages:%d (%dx%d) - Padding:%d - Occupancy:%.1f%%%n",
+                images.size(), pages, pageSize, pageSize, padding,
+                packers.stream().mapToDouble(SkylinePacker::getOccupancy).average().orElse(0) * 100);
+    }
+
+    private static int alignUp(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /** Copies an RGBA image into its cell at (x, y), extruding its edge pixels into the padding and the aligned rest */
+    private static void blit(DecodedImage image, ByteBuffer page, int pageSize, int x, int y, int padding, int block) {
+        if(image.getChannels() != 4) {
+            throw new IllegalArgumentException("Atlas images must be decoded with 4 channels");
+        }
+        ByteBuffer pixels = image.getPixels();
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        int cellWidth = alignUp(width + 2 * padding, block);
+        int cellHeight = alignUp(height + 2 * padding, block);
+        for (int row = 0; row < cellHeight; row++) {
+            int sourceRow = Math.min(Math.max(row - padding, 0), height - 1);
+            int targetRow = (y + row) * pageSize + x;
+            for (int column = 0; column < cellWidth; column++) {
+                int sourceColumn = Math.min(Math.max(column - padding, 0), width - 1);
+                int pixel = pixels.getInt((sourceRow * width + sourceColumn) * 4);
+                page.putInt((targetRow + column) * 4, pixel);
+            }
+        }
+    }
+
+    /**
+     * Remaps the texture coordinates of an interleaved vertex array into a region of this atlas.
+     * Only meaningful for coordinates within 0 and 1 - an atlas region cannot repeat.
+     *
+     * @param vertexArray interleaved vertices
+     * @param vertexFloats floats per vertex
+     * @param texCoordOffset float offset of the uv pair inside a vertex
+     * @param index region (image) index
+     * @return remapped copy of the vertex array
+     */
+    public float[] remapTexCoords(float[] vertexArray, int vertexFloats, int texCoordOffset, int index) {
+        Region region = regions[index];
+        float[] remapped = vertexArray.clone();
+        for (int i = texCoordOffset; i + 1 < remapped.length; i += vertexFloats) {
+            remapped[i] = region.u0() + remapped[i] * (region.u1() - region.u0());
+            remapped[i + 1] = region.v0() + remapped[i + 1] * (region.v1() - region.v0());
+        }
+        return remapped;
+    }
+
+    /** @return UV rectangle and page of image index */
+    public Region getRegion(int index) {
+        return regions[index];
+    }
+
+    /** @return number of atlas pages (array layers) */
+    public int getPageCount() {
+        return pages;
+    }
+
+    @Override
+    public void bind() {
+        glBindTextureUnit(TEXTURE_UNIT, textureId);
+        glBindSampler(TEXTURE_UNIT, samplerId);
+        regionBuffer.bind(REGION_BINDING);
+    }
+
+    @Override
+    public int size() {
+        return regions.length;
+    }
+
+    @Override
+    public String getShaderDefine() {
+        return "TEXTURE_ATLAS";
+    }
+
+    @Override
+    public void destroy() {
+        glDeleteTextures(textureId);
+        regionBuffer.destroy();
+    }
+}
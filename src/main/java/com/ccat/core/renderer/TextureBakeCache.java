@@ -0,0 +1,199 @@
+package com.ccat.core.renderer;
+
+import com.ccat.core.util.FileReaderUtil;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.lwjgl.stb.STBImageResize.stbir_resize_uint8;
+
+/**
+ * On-disk cache of baked Textures: the decoded pixels plus a precomputed mip chain,
+ * so a warm load is a memory-map and a level by level upload - no decode, no glGenerateMipmap.
+ * Entries are keyed by a hash of the encoded image, a changed file simply bakes a new entry.
+ * Disable with {@code -Dotome.noTextureCache=true}, images are then baked in memory on every load.
+ *
+ * <pre>
+ * OTEX container, big-endian header of 24 bytes:
+ *   "OTEX" | version | width | height | channels | levels
+ *   followed by the raw 8-bit levels, tightly packed, level 0 first
+ * </pre>
+ */
+public final class TextureBakeCache {
+    private static final Path CACHE_DIR = Paths.get("cache", "textures");
+    private static final String FILE_ENDING = ".otex";
+    private static final int MAGIC = 0x4F544558; //"OTEX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private static final AtomicInteger baked = new AtomicInteger();
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicLong bakeNanos = new AtomicLong();
+    private static final AtomicLong hitNanos = new AtomicLong();
+
+    private TextureBakeCache() { }
+
+    public static boolean isEnabled() {
+        return !Boolean.getBoolean("otome.noTextureCache");
+    }
+
+    /**
+     * Returns the baked Texture of an image resource, baking and storing it on first use.
+     * Safe to call from worker threads.
+     *
+     * @param path resource path of the encoded image
+     * @return baked Texture, release with {@link BakedTexture#free()}
+     */
+    public static BakedTexture load(String path) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer encoded = FileReaderUtil.readImage(path);
+
+        if(!isEnabled()) {
+            BakedTexture texture = bake(encoded);
+            bakeNanos.addAndGet(System.nanoTime() - start);
+            baked.incrementAndGet();
+            return texture;
+        }
+
+        String key = key(encoded);
+        Path file = CACHE_DIR.resolve(key + FILE_ENDING);
+
+        BakedTexture cached = map(file);
+        if(cached != null) {
+            hitNanos.addAndGet(System.nanoTime() - start);
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        BakedTexture texture = bake(encoded);
+        store(key, texture);
+        bakeNanos.addAndGet(System.nanoTime() - start);
+        baked.incrementAndGet();
+        return texture;
+    }
+
+    /** @return hex SHA-256 of the encoded image and the container version */
+    private static String key(ByteBuffer encoded) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(encoded.duplicate());
+            digest.update((byte) VERSION);
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available.", e);
+        }
+    }
+
+    /** Decodes the image and downsamples every level from the previous one */
+    private static BakedTexture bake(ByteBuffer encoded) {
+        DecodedImage image = DecodedImage.decode(encoded, 0);
+        try {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int channels = image.getChannels();
+            int levels = BakedTexture.fullChainLevels(width, height);
+
+            ByteBuffer data = MemoryUtil.memAlloc((int) BakedTexture.chainSize(width, height, channels, levels));
+            BakedTexture texture = new BakedTexture(width, height, channels, levels, data, true);
+            MemoryUtil.memCopy(image.getPixels(), data);
+
+            for (int level = 1; level < levels; level++) {
+                int sourceOffset = texture.getLevelOffset(level - 1);
+                int targetOffset = texture.getLevelOffset(level);
+                ByteBuffer source = MemoryUtil.memSlice(data, sourceOffset, targetOffset - sourceOffset);
+                ByteBuffer target = MemoryUtil.memSlice(data, targetOffset,
+                        texture.getLevelWidth(level) * texture.getLevelHeight(level) * channels);
+
+                stbir_resize_uint8(source, texture.getLevelWidth(level - 1), texture.getLevelHeight(level - 1), 0,
+                        target, texture.getLevelWidth(level), texture.getLevelHeight(level), 0, channels);
+            }
+            return texture;
+        } finally {
+            image.free();
+        }
+    }
+
+    /** @return the mapped entry, or null if there is none or it is damaged */
+    private static BakedTexture map(Path file) {
+        if(!Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_BYTES) return null;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int magic = mapped.getInt(0);
+            int version = mapped.getInt(4);
+            int width = mapped.getInt(8);
+            int height = mapped.getInt(12);
+            int channels = mapped.getInt(16);
+            int levels = mapped.getInt(20);
+
+            boolean valid = magic == MAGIC && version == VERSION
+                    && width > 0 && height > 0 && channels >= 1 && channels <= 4
+                    && levels == BakedTexture.fullChainLevels(width, height)
+                    && channel.size() == HEADER_BYTES + BakedTexture.chainSize(width, height, channels, levels);
+            if(!valid) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+
+            ByteBuffer data = mapped.slice(HEADER_BYTES, (int) (channel.size() - HEADER_BYTES));
+            return new BakedTexture(width, height, channels, levels, data, false);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Writes the entry, failures are ignored and the image is baked again next launch */
+    private static void store(String key, BakedTexture texture) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(texture.getWidth())
+                .putInt(texture.getHeight())
+                .putInt(texture.getChannels())
+                .putInt(texture.getLevels())
+                .flip();
+        ByteBuffer data = texture.getData().duplicate();
+
+        try {
+            Files.createDirectories(CACHE_DIR);
+            Path file = CACHE_DIR.resolve(key + FILE_ENDING);
+            //Unique per thread - two workers may bake the same image at once
+            Path tmp = CACHE_DIR.resolve(key + "." + Thread.currentThread().getId() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) channel.write(header);
+                while (data.hasRemaining()) channel.write(data);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Unable to write Texture cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints baked (cold) and cached (warm) loads with their total time - compare a run with an
+     * empty cache/textures folder against a second run
+     */
+    public static void printReport() {
+        System.out.printf("Texture cache ## Baked:%d in %.2f ms - From cache:%d in %.2f ms%n",
+                baked.get(), bakeNanos.get() / 1_000_000.0, hits.get(), hitNanos.get() / 1_000_000.0
+        );
+    }
+}
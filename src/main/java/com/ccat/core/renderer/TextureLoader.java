@@ -1,53 +1,255 @@
 package com.ccat.core.renderer;
 
-import org.lwjgl.system.MemoryStack;
+import com.ccat.core.util.FileReaderUtil;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.MemoryUtil;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL30.glGenerateMipmap;
-import static org.lwjgl.opengl.GL45.glBindTextureUnit;
-import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.opengl.GL21.GL_SRGB8;
+import static org.lwjgl.opengl.GL21.GL_SRGB8_ALPHA8;
+import static org.lwjgl.opengl.GL30.GL_R8;
+import static org.lwjgl.opengl.GL30.GL_RG8;
+import static org.lwjgl.opengl.GL33.glBindSampler;
+import static org.lwjgl.opengl.GL45.*;
 
+/**
+ * 2D Texture with immutable storage and a sized internal format.
+ * Filtering and wrapping come from a shared sampler of the {@link SamplerCache}, bound together with the Texture.
+ * Color textures use sRGB formats with {@code -Dotome.srgb=true}.
+ */
 public class TextureLoader {
-    private final int textureId;
+    static final boolean SRGB = Boolean.getBoolean("otome.srgb");
+    /** Shown by every streamed Texture until its image arrives, deleted by {@link #destroyPlaceholder()} */
+    private static int placeholderId;
+
+    private int textureId;
+    private final int samplerId;
+    private boolean ready;
+    private boolean failed;
+    private long sizeBytes;
 
     public TextureLoader(ByteBuffer imgBuffer, int internalFormat, int filter) {
-        //Generate Texture
-        this.textureId = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, textureId);
-
-        //Set Texture Params:
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT); //u
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT); //v
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, filter); // stretching
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, filter); // shrinking
-
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            IntBuffer width = stack.mallocInt(1);
-            IntBuffer height = stack.mallocInt(1);
-            IntBuffer channels = stack.mallocInt(1);
-
-            stbi_set_flip_vertically_on_load(true);
-            ByteBuffer data = stbi_load_from_memory(imgBuffer, width,height,channels,0);
-            if (data != null) {
-                //Upload Image
-                glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
-                glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width.get(), height.get(), 0, internalFormat, GL_UNSIGNED_BYTE, data);
-                glGenerateMipmap(GL_TEXTURE_2D);
+        this(DecodedImage.decode(imgBuffer, DecodedImage.channelsOf(internalFormat)), filter, true);
+    }
+
+    /**
+     * Creates a Texture keeping the channels stored in the image
+     *
+     * @param imgBuffer encoded image
+     * @param filter min/mag filter
+     */
+    public TextureLoader(ByteBuffer imgBuffer, int filter) {
+        this(DecodedImage.decode(imgBuffer, 0), filter, true);
+    }
+
+    /**
+     * Creates a Texture from already decoded pixels, the image is not freed
+     *
+     * @param image decoded pixels
+     * @param filter min/mag filter
+     */
+    public TextureLoader(DecodedImage image, int filter) {
+        this(image, filter, false);
+    }
+
+    private TextureLoader(DecodedImage image, int filter, boolean freeImage) {
+        this.samplerId = SamplerCache.get(filter);
+        try {
+            int levels = BakedTexture.fullChainLevels(image.getWidth(), image.getHeight());
+            this.textureId = createStorage(image.getWidth(), image.getHeight(), image.getChannels(), levels);
+
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTextureSubImage2D(textureId, 0, 0, 0, image.getWidth(), image.getHeight(),
+                    image.getFormat(), GL_UNSIGNED_BYTE, image.getPixels());
+            glGenerateTextureMipmap(textureId);
+
+            this.sizeBytes = storageBytes(image.getWidth(), image.getHeight(), image.getChannels(), levels);
+            this.ready = true;
+        } finally {
+            if(freeImage) image.free();
+        }
+    }
+
+    /**
+     * Creates a Texture showing a 2x2 magenta/black placeholder
+     * until {@link TextureStreamer} hands over the real image
+     */
+    TextureLoader(int filter) {
+        this.samplerId = SamplerCache.get(filter);
+        this.textureId = getPlaceholder();
+    }
+
+    private static int getPlaceholder() {
+        if(placeholderId == 0) {
+            placeholderId = createStorage(2, 2, 4, 1);
+
+            ByteBuffer checker = MemoryUtil.memAlloc(2 * 2 * 4);
+            checker.putInt(0, 0xFFFF00FF).putInt(4, 0xFF000000)
+                    .putInt(8, 0xFF000000).putInt(12, 0xFFFF00FF);
+            glTextureSubImage2D(placeholderId, 0, 0, 0, 2, 2, GL_RGBA, GL_UNSIGNED_BYTE, checker);
+            MemoryUtil.memFree(checker);
+        }
+        return placeholderId;
+    }
+
+    /**
+     * @param channels 8-bit channels of the source
+     * @param srgb true to decode the color channels from sRGB when sampling
+     * @return sized internal format
+     */
+    static int sizedFormat(int channels, boolean srgb) {
+        return switch (channels) {
+            case 1 -> GL_R8;
+            case 2 -> GL_RG8;
+            case 3 -> srgb ? GL_SRGB8 : GL_RGB8;
+            default -> srgb ? GL_SRGB8_ALPHA8 : GL_RGBA8;
+        };
+    }
+
+    /** @return new Texture with immutable storage for all levels */
+    private static int createStorage(int width, int height, int channels, int levels) {
+        int textureId = glCreateTextures(GL_TEXTURE_2D);
+        glTextureStorage2D(textureId, levels, sizedFormat(channels, SRGB), width, height);
+        return textureId;
+    }
+
+    /** @return true if streaming the image failed - the Texture shows the placeholder for good */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /** @return estimated video memory of the storage - drivers store RGB8 as RGBA8 */
+    private static long storageBytes(int width, int height, int channels, int levels) {
+        return BakedTexture.chainSize(width, height, channels == 3 ? 4 : channels, levels);
+    }
+
+    /**
+     * Creates a Texture from a baked mip chain, e.g. on a {@link GLLoaderThread}
+     *
+     * @param pixels level data in client memory, or null to read from the bound GL_PIXEL_UNPACK_BUFFER
+     * @param pixelBufferOffset offset of level 0 in the bound pixel buffer
+     * @return Texture-Id
+     */
+    static int createTexture(BakedTexture texture, ByteBuffer pixels, long pixelBufferOffset) {
+        int textureId = createStorage(texture.getWidth(), texture.getHeight(), texture.getChannels(), texture.getLevels());
+        int format = texture.getFormat();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        for (int level = 0; level < texture.getLevels(); level++) {
+            int width = texture.getLevelWidth(level);
+            int height = texture.getLevelHeight(level);
+            int levelOffset = texture.getLevelOffset(level);
+
+            if(pixels != null) {
+                ByteBuffer levelPixels = MemoryUtil.memSlice(pixels, levelOffset, width * height * texture.getChannels());
+                glTextureSubImage2D(textureId, level, 0, 0, width, height, format, GL_UNSIGNED_BYTE, levelPixels);
             } else {
-                String error = stbi_failure_reason();
-                throw new RuntimeException("Failed to load Texture - Reason:" + error);
+                glTextureSubImage2D(textureId, level, 0, 0, width, height, format, GL_UNSIGNED_BYTE, pixelBufferOffset + levelOffset);
             }
+        }
+        return textureId;
+    }
 
-            stbi_image_free(data);
+    /** Replaces the placeholder with a Texture created from the baked image, reading from client memory */
+    void specify(BakedTexture texture) {
+        adopt(createTexture(texture, texture.getData(), 0L), texture.getGpuBytes());
+    }
+
+    /** Replaces the placeholder with a Texture created from the bound GL_PIXEL_UNPACK_BUFFER, starting at the offset */
+    void specify(BakedTexture texture, long pixelBufferOffset) {
+        adopt(createTexture(texture, null, pixelBufferOffset), texture.getGpuBytes());
+    }
+
+    /** Replaces the placeholder with a loaded Texture, possibly created on another context that shares with this one */
+    void adopt(int loadedTextureId, long loadedBytes) {
+        if(ready) glDeleteTextures(textureId);
+        this.textureId = loadedTextureId;
+        this.sizeBytes = loadedBytes;
+        this.ready = true;
+    }
+
+    /** Marks a streamed Texture whose image could not be loaded - it keeps showing the placeholder */
+    void fail() {
+        this.failed = true;
+    }
+
+    /**
+     * Builds a TextureSet from an image list - objects then select their texture by index
+     * and the renderer binds the whole set once instead of one texture per draw.
+     * Uses ARB_bindless_texture when available (disable with {@code -Dotome.noBindless=true}),
+     * otherwise a GL_TEXTURE_2D_ARRAY.
+     *
+     * @param paths filepaths to the textures, index i in the list is texture index i
+     * @param filter min/mag filter
+     * @return the TextureSet
+     */
+    public static TextureSet createTextureSet(List<String> paths, int filter) {
+        List<DecodedImage> images = decodeAll(paths);
+        try {
+            return buildTextureSet(images, filter);
+        } finally {
+            images.forEach(DecodedImage::free);
         }
     }
 
-    /** Binds the Texture */
+    /**
+     * Builds a TextureSet from already decoded RGBA images, the images are not freed
+     *
+     * @param images decoded images, index i in the list is texture index i
+     * @param filter min/mag filter
+     * @return the TextureSet
+     */
+    public static TextureSet buildTextureSet(List<DecodedImage> images, int filter) {
+        boolean bindless = GL.getCapabilities().GL_ARB_bindless_texture
+                && !Boolean.getBoolean("otome.noBindless");
+
+        return bindless
+                ? new BindlessTextureSet(images, filter)
+                : new TextureArray(images, filter);
+    }
+
+    /**
+     * Packs small images into a TextureAtlas - region i is the image at index i
+     *
+     * @param paths filepaths to the textures
+     * @param pageSize width and height of an atlas page
+     * @param padding extruded border around each image in pixels
+     * @param filter min/mag filter
+     * @return the TextureAtlas
+     */
+    public static TextureAtlas createTextureAtlas(List<String> paths, int pageSize, int padding, int filter) {
+        List<DecodedImage> images = decodeAll(paths);
+        try {
+            return new TextureAtlas(images, pageSize, padding, filter);
+        } finally {
+            images.forEach(DecodedImage::free);
+        }
+    }
+
+    /** Decodes every image to RGBA */
+    private static List<DecodedImage> decodeAll(List<String> paths) {
+        List<DecodedImage> images = new ArrayList<>(paths.size());
+        try {
+            for (String path : paths) {
+                ByteBuffer bufferedImg = FileReaderUtil.readImage(path);
+                images.add(DecodedImage.decode(bufferedImg, 4));
+            }
+            return images;
+        } catch (IOException e) {
+            images.forEach(DecodedImage::free);
+            throw new RuntimeException("Unable to load Texture image from path.");
+        }
+    }
+
+    /** Binds the Texture and its sampler */
     public void bind(int textureSlot) {
         glBindTextureUnit(textureSlot, textureId);
+        glBindSampler(textureSlot, samplerId);
     }
 
     /** Unbinds the Texture */
@@ -55,7 +257,36 @@ public class TextureLoader {
         glBindTexture(GL_TEXTURE_2D, 0);
     }
 
+    /** @return false while a streamed Texture still shows its placeholder */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** @return estimated video memory of the Texture incl. mip levels, 0 while it shows the placeholder */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /** @return Texture-Id */
+    public int getTextureId() {
+        return textureId;
+    }
+
+    /** @return shared sampler the Texture is bound with */
+    public int getSamplerId() {
+        return samplerId;
+    }
+
     public void destroy() {
-        glDeleteTextures(textureId);
+        //The placeholder is shared by every streamed Texture
+        if(ready) glDeleteTextures(textureId);
+    }
+
+    /** Deletes the shared placeholder - call once every Texture is destroyed, before the context is */
+    public static void destroyPlaceholder() {
+        if(placeholderId == 0) return;
+
+        glDeleteTextures(placeholderId);
+        placeholderId = 0;
     }
 }
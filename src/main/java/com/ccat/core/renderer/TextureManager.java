@@ -0,0 +1,145 @@
+package com.ccat.core.renderer;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reference-counted owner of streamed Textures.
+ * Users acquire a shared Texture per image and filter and release it when done - only the manager destroys Textures.
+ * Unreferenced Textures stay resident for reuse until the video memory budget is exceeded,
+ * then the least recently released ones are evicted and streamed in again on their next acquire.
+ * Budget: {@code -Dotome.textureBudgetMB} (default 256).
+ */
+public final class TextureManager {
+    private static final long BUDGET_BYTES = Long.getLong("otome.textureBudgetMB", 256) * 1024 * 1024;
+
+    private static final Map<TextureKey, Entry> textures = new HashMap<>();
+    private static final Map<TextureLoader, Entry> entries = new IdentityHashMap<>();
+    /** Unreferenced entries, least recently released first */
+    private static final LinkedHashMap<TextureKey, Entry> unused = new LinkedHashMap<>();
+
+    private static int hits;
+    private static int misses;
+    private static int evictions;
+    private static int failures;
+    private static long peakResidentBytes;
+
+    private TextureManager() { }
+
+    private record TextureKey(String path, int filter) { }
+
+    private static final class Entry {
+        private final TextureKey key;
+        private final TextureLoader texture;
+        private int references;
+
+        private Entry(TextureKey key, TextureLoader texture) {
+            this.key = key;
+            this.texture = texture;
+        }
+    }
+
+    /**
+     * Returns the shared Texture of the image, streaming it in if it is not resident.
+     * The Texture shows a placeholder until {@link TextureLoader#isReady()}.
+     * Every acquire must be paired with a {@link #release(TextureLoader)}.
+     *
+     * @param path filepath of the image
+     * @param filter min/mag filter
+     * @return the shared Texture
+     */
+    public static TextureLoader acquire(String path, int filter) {
+        TextureKey key = new TextureKey(path, filter);
+        Entry entry = textures.get(key);
+
+        if(entry == null) {
+            misses++;
+            entry = new Entry(key, TextureStreamer.loadAsync(path, filter));
+            textures.put(key, entry);
+            entries.put(entry.texture, entry);
+        } else {
+            hits++;
+            unused.remove(key);
+        }
+
+        entry.references++;
+        return entry.texture;
+    }
+
+    /**
+     * Drops one reference - the Texture stays resident for reuse until the budget forces an eviction
+     *
+     * @param texture Texture obtained from {@link #acquire(String, int)}
+     */
+    public static void release(TextureLoader texture) {
+        Entry entry = entries.get(texture);
+        if(entry == null) {
+            throw new IllegalStateException("Texture was not acquired from the TextureManager.");
+        }
+        if(entry.references == 0) {
+            throw new IllegalStateException("Texture " + entry.key.path() + " was released more often than acquired.");
+        }
+
+        if(--entry.references == 0) {
+            unused.put(entry.key, entry);
+        }
+    }
+
+    /**
+     * Evicts unreferenced Textures while the resident Textures exceed the budget - call once per frame.
+     * Unreferenced Textures that failed to stream are dropped right away, so the next acquire retries them.
+     */
+    public static void update() {
+        long resident = getResidentBytes();
+        peakResidentBytes = Math.max(peakResidentBytes, resident);
+
+        Iterator<Entry> iterator = unused.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if(entry.texture.isFailed()) {
+                iterator.remove();
+                evict(entry);
+                failures++;
+                continue;
+            }
+            //Within budget, or still streaming - holds no memory yet and the streamer will write into it
+            if(resident <= BUDGET_BYTES || !entry.texture.isReady()) continue;
+            iterator.remove();
+
+            resident -= entry.texture.getSizeBytes();
+            evict(entry);
+            evictions++;
+        }
+    }
+
+    /** Destroys every unreferenced Texture, e.g. before shutdown */
+    public static void purge() {
+        unused.values().forEach(TextureManager::evict);
+        unused.clear();
+    }
+
+    private static void evict(Entry entry) {
+        textures.remove(entry.key);
+        entries.remove(entry.texture);
+        entry.texture.destroy();
+    }
+
+    /** @return estimated video memory of all managed Textures, referenced or not */
+    public static long getResidentBytes() {
+        long resident = 0;
+        for (Entry entry : textures.values()) {
+            resident += entry.texture.getSizeBytes();
+        }
+        return resident;
+    }
+
+    public static void printReport() {
+        System.out.printf("Texture manager ## Resident:%.2f MB (peak %.2f MB, budget %.0f MB) - Textures:%d (unused %d) - Hits:%d - Misses:%d - Evictions:%d - Failed:%d%n",
+                getResidentBytes() / (1024.0 * 1024.0), peakResidentBytes / (1024.0 * 1024.0), BUDGET_BYTES / (1024.0 * 1024.0),
+                textures.size(), unused.size(), hits, misses, evictions, failures
+        );
+    }
+}
@@ -0,0 +1,26 @@
+package com.ccat.core.renderer;
+
+/**
+ * A group of Textures that is bound once and addressed by index in the shaders,
+ * so no texture has to be rebound between draws.
+ * Shaders pick the matching sampling code through {@link #getShaderDefine()}.
+ */
+public interface TextureSet {
+    /** Texture unit a {@code sampler2DArray} set is bound to */
+    int TEXTURE_UNIT = 0;
+    /** Storage block binding of the bindless handle buffer */
+    int HANDLE_BINDING = 3;
+    /** Storage block binding of the atlas region buffer */
+    int REGION_BINDING = 4;
+
+    /** Makes every texture of the set available to the shaders */
+    void bind();
+
+    /** @return number of textures, valid indices are 0 until size - 1 */
+    int size();
+
+    /** @return define selecting the sampling path in the shaders, e.g. "TEXTURE_ARRAY" */
+    String getShaderDefine();
+
+    void destroy();
+}
@@ -0,0 +1,321 @@
+package com.ccat.core.renderer;
+
+import com.ccat.core.util.FileReaderUtil;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Loads Textures without blocking the render thread.
+ * A worker pool loads baked mip chains from the {@link TextureBakeCache} concurrently, baking on a miss;
+ * {@link #update()} then uploads the levels through a ring of persistently mapped pixel-buffer objects,
+ * limited to a byte and time budget per frame so loading never causes a long frame.
+ * Budgets: {@code -Dotome.textureUploadBytes} (default 8 MB) and {@code -Dotome.textureUploadMs} (default 2 ms).
+ * With a {@link GLLoaderThread} set, single Textures are uploaded on its shared context instead
+ * and the render thread only swaps in the finished Texture once its fence signaled.
+ */
+public final class TextureStreamer {
+    private static final int RING_SLOTS = 3;
+    private static final long SLOT_BYTES = 4L * 1024 * 1024;
+    private static final long FRAME_BYTES = Long.getLong("otome.textureUploadBytes", 8L * 1024 * 1024);
+    private static final long FRAME_NANOS = (long) (Double.parseDouble(System.getProperty("otome.textureUploadMs", "2")) * 1_000_000);
+
+    private static final ExecutorService decoders = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            runnable -> {
+                Thread thread = new Thread(runnable, "texture-decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** Filled by the decoders, drained by the render thread */
+    private static final Queue<Upload> decoded = new ConcurrentLinkedQueue<>();
+    /** Decoded uploads that did not fit into an earlier frame's budget */
+    private static final ArrayDeque<Upload> staged = new ArrayDeque<>();
+    private static int inFlight;
+
+    private static volatile GLLoaderThread loaderThread;
+
+    private static int[] pixelBuffers;
+    private static ByteBuffer[] mappedSlots;
+    private static long[] slotFences;
+    private static int nextSlot;
+
+    private static int streamedTextures;
+    private static int streamedSets;
+    private static long streamedBytes;
+    private static long maxFrameNanos;
+    private static int framesOverBudget;
+
+    private TextureStreamer() { }
+
+    private sealed interface Upload permits TextureUpload, SharedUpload, SetUpload, FailedUpload { }
+
+    private record TextureUpload(TextureLoader texture, BakedTexture baked) implements Upload { }
+
+    private record SharedUpload(TextureLoader texture, String path, long sizeBytes, LoadTask<Integer> task) implements Upload { }
+
+    private record SetUpload(List<DecodedImage> images, Function<List<DecodedImage>, ? extends TextureSet> factory,
+                             CompletableFuture<TextureSet> result) implements Upload { }
+
+    private record FailedUpload(String path, TextureLoader texture, RuntimeException error,
+                                CompletableFuture<TextureSet> result) implements Upload { }
+
+    /**
+     * Moves single Texture uploads onto the loader thread's shared context
+     *
+     * @param loader loader thread, or null to upload through the pixel-buffer ring again
+     */
+    public static void setLoaderThread(GLLoaderThread loader) {
+        loaderThread = loader;
+    }
+
+    /**
+     * Starts loading a Texture in the background.
+     * The returned Texture can be bound right away and shows a placeholder until
+     * {@link TextureLoader#isReady()} turns true inside a later {@link #update()}.
+     *
+     * @param path filepath of the image
+     * @param filter min/mag filter
+     * @return Texture showing the placeholder
+     */
+    public static TextureLoader loadAsync(String path, int filter) {
+        TextureLoader texture = new TextureLoader(filter);
+        inFlight++;
+
+        decoders.execute(() -> {
+            try {
+                BakedTexture baked = TextureBakeCache.load(path);
+
+                GLLoaderThread loader = loaderThread;
+                if(loader == null) {
+                    decoded.add(new TextureUpload(texture, baked));
+                    return;
+                }
+                LoadTask<Integer> task = loader.submit(() -> {
+                    try {
+                        return TextureLoader.createTexture(baked, baked.getData(), 0L);
+                    } finally {
+                        baked.free();
+                    }
+                });
+                decoded.add(new SharedUpload(texture, path, baked.getGpuBytes(), task));
+            } catch (Exception e) {
+                decoded.add(new FailedUpload(path, texture, new RuntimeException("Unable to load Texture image from path.", e), null));
+            }
+        });
+        return texture;
+    }
+
+    /**
+     * Decodes all images in the background and builds a TextureSet from them on the render thread.
+     * The future completes inside {@link #update()}, so GL work in its callbacks is safe.
+     *
+     * @param paths filepaths of the images, decoded to RGBA
+     * @param factory builds the set from the decoded images, which are freed afterwards
+     * @return future of the TextureSet
+     */
+    public static CompletableFuture<TextureSet> loadTextureSetAsync(List<String> paths,
+                                                                    Function<List<DecodedImage>, ? extends TextureSet> factory) {
+        CompletableFuture<TextureSet> result = new CompletableFuture<>();
+        inFlight++;
+
+        List<CompletableFuture<DecodedImage>> images = new ArrayList<>();
+        for (String path : paths) {
+            images.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return DecodedImage.decode(FileReaderUtil.readImage(path), 4);
+                } catch (Exception e) {
+                    throw new RuntimeException("Unable to load Texture image " + path, e);
+                }
+            }, decoders));
+        }
+
+        CompletableFuture.allOf(images.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+            if(error == null) {
+                decoded.add(new SetUpload(images.stream().map(CompletableFuture::join).toList(), factory, result));
+                return;
+            }
+            images.stream()
+                    .filter(image -> !image.isCompletedExceptionally())
+                    .forEach(image -> image.join().free());
+            RuntimeException cause = error.getCause() instanceof RuntimeException runtime
+                    ? runtime : new RuntimeException(error);
+            decoded.add(new FailedUpload(String.join(", ", paths), null, cause, result));
+        });
+        return result;
+    }
+
+    /**
+     * Uploads decoded images - call once per frame on the render thread.
+     * Stops once the frame's byte or time budget is spent; at least one upload runs per frame.
+     */
+    public static void update() {
+        Upload next;
+        while ((next = decoded.poll()) != null) {
+            staged.add(next);
+        }
+        if(staged.isEmpty()) return;
+
+        if(pixelBuffers == null) createRing();
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        int uploads = 0;
+
+        while (!staged.isEmpty()) {
+            Upload upload = staged.peek();
+            long size = sizeOf(upload);
+            boolean overBudget = bytes + size > FRAME_BYTES || System.nanoTime() - start > FRAME_NANOS;
+            if(uploads > 0 && overBudget) break;
+
+            if(!process(upload)) break;
+            staged.poll();
+            inFlight--;
+            bytes += size;
+            uploads++;
+        }
+
+        long frameNanos = System.nanoTime() - start;
+        maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+        if(frameNanos > FRAME_NANOS) framesOverBudget++;
+        streamedBytes += bytes;
+    }
+
+    /** @return false if the upload has to wait for a free ring slot */
+    private static boolean process(Upload upload) {
+        if(upload instanceof TextureUpload textureUpload) {
+            BakedTexture baked = textureUpload.baked();
+            ByteBuffer data = baked.getData();
+
+            if(data.remaining() <= SLOT_BYTES) {
+                int slot = nextSlot;
+                if(!claimSlot(slot)) return false;
+
+                MemoryUtil.memCopy(data, mappedSlots[slot]);
+                glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffers[slot]);
+                textureUpload.texture().specify(baked, 0L);
+                glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+
+                //The slot may be rewritten once the GPU has consumed the copy
+                slotFences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+                nextSlot = (slot + 1) % RING_SLOTS;
+            } else {
+                textureUpload.texture().specify(baked);
+            }
+            baked.free();
+            streamedTextures++;
+        } else if(upload instanceof SharedUpload sharedUpload) {
+            if(!sharedUpload.task().isReady()) return false;
+            try {
+                sharedUpload.texture().adopt(sharedUpload.task().get(), sharedUpload.sizeBytes());
+                streamedTextures++;
+            } catch (RuntimeException e) {
+                sharedUpload.texture().fail();
+                System.err.println("Failed to stream Texture " + sharedUpload.path() + " - " + e.getMessage());
+            }
+        } else if(upload instanceof SetUpload setUpload) {
+            try {
+                TextureSet set = setUpload.factory().apply(setUpload.images());
+                //Cancelled while decoding - nobody will ever destroy it
+                if(!setUpload.result().complete(set)) set.destroy();
+                streamedSets++;
+            } catch (RuntimeException e) {
+                setUpload.result().completeExceptionally(e);
+            } finally {
+                setUpload.images().forEach(DecodedImage::free);
+            }
+        } else if(upload instanceof FailedUpload failed) {
+            System.err.println("Failed to stream Texture " + failed.path() + " - " + failed.error().getMessage());
+            if(failed.texture() != null) failed.texture().fail();
+            if(failed.result() != null) failed.result().completeExceptionally(failed.error());
+        }
+        return true;
+    }
+
+    private static long sizeOf(Upload upload) {
+        if(upload instanceof TextureUpload textureUpload) {
+            return textureUpload.baked().getData().remaining();
+        }
+        if(upload instanceof SetUpload setUpload) {
+            return setUpload.images().stream().mapToLong(image -> image.getPixels().remaining()).sum();
+        }
+        return 0;
+    }
+
+    /** @return true if the GPU is done reading the slot */
+    private static boolean claimSlot(int slot) {
+        if(slotFences[slot] == 0) return true;
+
+        int status = glClientWaitSync(slotFences[slot], 0, 0);
+        if(status == GL_TIMEOUT_EXPIRED) return false;
+
+        glDeleteSync(slotFences[slot]);
+        slotFences[slot] = 0;
+        return true;
+    }
+
+    private static void createRing() {
+        int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+
+        pixelBuffers = new int[RING_SLOTS];
+        mappedSlots = new ByteBuffer[RING_SLOTS];
+        slotFences = new long[RING_SLOTS];
+        for (int slot = 0; slot < RING_SLOTS; slot++) {
+            pixelBuffers[slot] = glCreateBuffers();
+            glNamedBufferStorage(pixelBuffers[slot], SLOT_BYTES, flags);
+            mappedSlots[slot] = glMapNamedBufferRange(pixelBuffers[slot], 0, SLOT_BYTES, flags);
+        }
+    }
+
+    /** @return true if no Texture is being decoded or waiting for upload */
+    public static boolean isIdle() {
+        return inFlight == 0;
+    }
+
+    /** Prints the streamed totals and the worst upload time spent in a single frame */
+    public static void printReport() {
+        System.out.printf("Textures ## Streamed:%d - Sets:%d - Uploaded:%.2f MB - Max upload per frame:%.2f ms (budget %.2f ms) - Frames over budget:%d%n",
+                streamedTextures, streamedSets, streamedBytes / (1024.0 * 1024.0),
+                maxFrameNanos / 1_000_000.0, FRAME_NANOS / 1_000_000.0, framesOverBudget
+        );
+    }
+
+    /** Releases the pixel buffers and stops the decoders - call before the context is destroyed */
+    public static void shutdown() {
+        decoders.shutdownNow();
+        try {
+            //Decoders still reading hold FileReaderUtil's pooled buffers
+            decoders.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(pixelBuffers == null) return;
+
+        for (int slot = 0; slot < RING_SLOTS; slot++) {
+            if(slotFences[slot] != 0) glDeleteSync(slotFences[slot]);
+            glUnmapNamedBuffer(pixelBuffers[slot]);
+            glDeleteBuffers(pixelBuffers[slot]);
+        }
+        pixelBuffers = null;
+    }
+}
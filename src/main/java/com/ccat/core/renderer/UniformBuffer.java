@@ -0,0 +1,57 @@
+package com.ccat.core.renderer;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL45.*;
+
+public class UniformBuffer {
+    private final int ubo;
+    private final int bindingPoint;
+    private final int size;
+
+    /**
+     * Creates a Uniform Buffer Object and binds it to a fixed binding point,
+     * matching a {@code layout(std140, binding = n)} block in the shaders
+     *
+     * @param bindingPoint Uniform block binding point
+     * @param size Size of the block in bytes
+     */
+    public UniformBuffer(int bindingPoint, int size) {
+        this.bindingPoint = bindingPoint;
+        this.size = size;
+
+        this.ubo = glCreateBuffers();
+        glNamedBufferData(ubo, size, GL_DYNAMIC_DRAW);
+        glBindBufferBase(GL_UNIFORM_BUFFER, bindingPoint, ubo);
+    }
+
+    /**
+     * Replaces the contents of the Buffer
+     *
+     * @param data std140 packed block data, starting at offset 0
+     */
+    public void upload(ByteBuffer data) {
+        glNamedBufferSubData(ubo, 0, data);
+    }
+
+    /** Re-binds the Buffer to its binding point */
+    public void bind() {
+        glBindBufferBase(GL_UNIFORM_BUFFER, bindingPoint, ubo);
+    }
+
+    public int getBindingPoint() {
+        return bindingPoint;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void destroy() {
+        glDeleteBuffers(ubo);
+    }
+}
@@ -0,0 +1,295 @@
+package com.ccat.core.scene;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.Arrays;
+
+/**
+ * Scene entities as structure-of-arrays: every component lives in its own primitive array, indexed by a
+ * dense slot, so updates and render extraction walk memory sequentially and no object exists per entity.
+ * Entity ids stay stable while slots do not - destroying an entity moves the last one into its slot.
+ * Freed ids are reused by later entities.
+ * Every entity has a position, a velocity, an axis-aligned box given by its half extent, mesh and
+ * material ids and {@link #FLAG_VISIBLE}/{@link #FLAG_MOVING} flags.
+ */
+public class EntityStore {
+    /** Drawn by render extraction */
+    public static final int FLAG_VISIBLE = 1;
+    /** Integrated by {@link #update} - set by a non-zero velocity */
+    public static final int FLAG_MOVING = 1 << 1;
+    /** Per instance in {@link #extractInstances}: vec3 position + uint material */
+    public static final int INSTANCE_BYTES = 4 * Integer.BYTES;
+
+    //Components by slot
+    private float[] positionX;
+    private float[] positionY;
+    private float[] positionZ;
+    private float[] velocityX;
+    private float[] velocityY;
+    private float[] velocityZ;
+    private float[] halfExtent;
+    private int[] mesh;
+    private int[] material;
+    private int[] flags;
+    private int[] entityOf;
+    private int count;
+
+    //Slots by entity id, -1 for destroyed ids
+    private int[] slotOf;
+    private int idCount;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    /** Entities moved by the last update, e.g. to refit their bounds */
+    private int[] moved = new int[16];
+    private int movedCount;
+
+    public EntityStore() {
+        this(16);
+    }
+
+    /** @param capacity entities before the arrays grow */
+    public EntityStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.positionX = new float[capacity];
+        this.positionY = new float[capacity];
+        this.positionZ = new float[capacity];
+        this.velocityX = new float[capacity];
+        this.velocityY = new float[capacity];
+        this.velocityZ = new float[capacity];
+        this.halfExtent = new float[capacity];
+        this.mesh = new int[capacity];
+        this.material = new int[capacity];
+        this.flags = new int[capacity];
+        this.entityOf = new int[capacity];
+        this.slotOf = new int[capacity];
+    }
+
+    /**
+     * Creates a visible, resting entity
+     *
+     * @param halfExtent half edge length of its box
+     * @return id of the new entity
+     */
+    public int create(float x, float y, float z, float halfExtent, int mesh, int material) {
+        if(count == positionX.length) grow(count * 2);
+
+        int entity;
+        if(freeCount > 0) {
+            entity = freeIds[--freeCount];
+        } else {
+            if(idCount == slotOf.length) slotOf = Arrays.copyOf(slotOf, idCount * 2);
+            entity = idCount++;
+        }
+
+        int slot = count++;
+        positionX[slot] = x;
+        positionY[slot] = y;
+        positionZ[slot] = z;
+        velocityX[slot] = 0f;
+        velocityY[slot] = 0f;
+        velocityZ[slot] = 0f;
+        this.halfExtent[slot] = halfExtent;
+        this.mesh[slot] = mesh;
+        this.material[slot] = material;
+        flags[slot] = FLAG_VISIBLE;
+        entityOf[slot] = entity;
+        slotOf[entity] = slot;
+        return entity;
+    }
+
+    /** Destroys an entity, the last entity takes over its slot */
+    public void destroy(int entity) {
+        int slot = slotOf(entity);
+        int last = --count;
+        if(slot != last) {
+            positionX[slot] = positionX[last];
+            positionY[slot] = positionY[last];
+            positionZ[slot] = positionZ[last];
+            velocityX[slot] = velocityX[last];
+            velocityY[slot] = velocityY[last];
+            velocityZ[slot] = velocityZ[last];
+            halfExtent[slot] = halfExtent[last];
+            mesh[slot] = mesh[last];
+            material[slot] = material[last];
+            flags[slot] = flags[last];
+            entityOf[slot] = entityOf[last];
+            slotOf[entityOf[slot]] = slot;
+        }
+        slotOf[entity] = -1;
+
+        if(freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = entity;
+    }
+
+    public void clear() {
+        count = 0;
+        idCount = 0;
+        freeCount = 0;
+        movedCount = 0;
+    }
+
+    private void grow(int capacity) {
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        positionZ = Arrays.copyOf(positionZ, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        velocityZ = Arrays.copyOf(velocityZ, capacity);
+        halfExtent = Arrays.copyOf(halfExtent, capacity);
+        mesh = Arrays.copyOf(mesh, capacity);
+        material = Arrays.copyOf(material, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        entityOf = Arrays.copyOf(entityOf, capacity);
+    }
+
+    /** @return slot of a living entity - its index into the component arrays until the next destroy */
+    public int slotOf(int entity) {
+        int slot = entity >= 0 && entity < idCount ? slotOf[entity] : -1;
+        if(slot < 0) {
+            throw new IllegalArgumentException("No entity with id " + entity);
+        }
+        return slot;
+    }
+
+    public boolean isAlive(int entity) {
+        return entity >= 0 && entity < idCount && slotOf[entity] >= 0;
+    }
+
+    public void setPosition(int entity, float x, float y, float z) {
+        int slot = slotOf(entity);
+        positionX[slot] = x;
+        positionY[slot] = y;
+        positionZ[slot] = z;
+    }
+
+    /** A non-zero velocity lets {@link #update} move the entity */
+    public void setVelocity(int entity, float x, float y, float z) {
+        int slot = slotOf(entity);
+        velocityX[slot] = x;
+        velocityY[slot] = y;
+        velocityZ[slot] = z;
+        boolean moving = x != 0f || y != 0f || z != 0f;
+        flags[slot] = moving ? flags[slot] | FLAG_MOVING : flags[slot] & ~FLAG_MOVING;
+    }
+
+    public void setVisible(int entity, boolean visible) {
+        int slot = slotOf(entity);
+        flags[slot] = visible ? flags[slot] | FLAG_VISIBLE : flags[slot] & ~FLAG_VISIBLE;
+    }
+
+    public void setMaterial(int entity, int material) {
+        this.material[slotOf(entity)] = material;
+    }
+
+    /**
+     * Moves every moving entity by its velocity in one pass over the slots
+     *
+     * @param delta seconds since the last update
+     * @return entities moved, listed by {@link #getMoved}
+     */
+    public int update(float delta) {
+        movedCount = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if((flags[slot] & FLAG_MOVING) == 0) continue;
+
+            positionX[slot] += velocityX[slot] * delta;
+            positionY[slot] += velocityY[slot] * delta;
+            positionZ[slot] += velocityZ[slot] * delta;
+            if(movedCount == moved.length) moved = Arrays.copyOf(moved, movedCount * 2);
+            moved[movedCount++] = entityOf[slot];
+        }
+        return movedCount;
+    }
+
+    /**
+     * Writes vec3 position + uint material of entities back to back, the instance layout of the cube batches
+     *
+     * @param entities entity ids, e.g. the result of a culling query
+     * @param entityCount number of valid entries in entities
+     * @param address target of at least entityCount * {@link #INSTANCE_BYTES} bytes
+     * @return instances written - entities without {@link #FLAG_VISIBLE} are skipped
+     */
+    public int extractInstances(int[] entities, int entityCount, long address) {
+        int written = 0;
+        for (int i = 0; i < entityCount; i++) {
+            int slot = slotOf[entities[i]];
+            if((flags[slot] & FLAG_VISIBLE) == 0) continue;
+
+            long target = address + (long) written++ * INSTANCE_BYTES;
+            MemoryUtil.memPutFloat(target, positionX[slot]);
+            MemoryUtil.memPutFloat(target + 4, positionY[slot]);
+            MemoryUtil.memPutFloat(target + 8, positionZ[slot]);
+            MemoryUtil.memPutInt(target + 12, material[slot]);
+        }
+        return written;
+    }
+
+    /**
+     * Writes the instances of all visible entities in slot order
+     *
+     * @see #extractInstances(int[], int, long)
+     */
+    public int extractInstances(long address) {
+        int written = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if((flags[slot] & FLAG_VISIBLE) == 0) continue;
+
+            long target = address + (long) written++ * INSTANCE_BYTES;
+            MemoryUtil.memPutFloat(target, positionX[slot]);
+            MemoryUtil.memPutFloat(target + 4, positionY[slot]);
+            MemoryUtil.memPutFloat(target + 8, positionZ[slot]);
+            MemoryUtil.memPutInt(target + 12, material[slot]);
+        }
+        return written;
+    }
+
+    /** @return living entities, the slots 0 until size() are valid */
+    public int size() {
+        return count;
+    }
+
+    /** @return entity ids moved by the last update */
+    public int[] getMoved() {
+        return moved;
+    }
+
+    public int getMovedCount() {
+        return movedCount;
+    }
+
+    //Component arrays by slot for dense iteration - reallocated when the store grows, do not keep them
+
+    public float[] getPositionX() {
+        return positionX;
+    }
+
+    public float[] getPositionY() {
+        return positionY;
+    }
+
+    public float[] getPositionZ() {
+        return positionZ;
+    }
+
+    public float[] getHalfExtent() {
+        return halfExtent;
+    }
+
+    public int[] getMesh() {
+        return mesh;
+    }
+
+    public int[] getMaterial() {
+        return material;
+    }
+
+    public int[] getFlags() {
+        return flags;
+    }
+
+    /** @return entity id by slot */
+    public int[] getEntities() {
+        return entityOf;
+    }
+}
@@ -0,0 +1,187 @@
+package com.ccat.core.terrain;
+
+import com.ccat.core.renderer.RenderStats;
+import com.ccat.core.renderer.ShaderLibrary;
+import com.ccat.core.renderer.ShaderProgram;
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Terrain drawn from a {@link TerrainQuadtree}: one shared grid patch, instanced once per selected node.
+ * The node selection is redone every frame on the CPU - its cost grows with the number of levels,
+ * the drawn vertices stay roughly constant however large the terrain is.
+ */
+public class CdlodTerrain {
+    private static final int FLOAT_SIZE = Float.BYTES;
+
+    private final TerrainQuadtree quadtree;
+    private final int gridSize;
+    private final int indexCount;
+
+    private final CompletableFuture<ShaderProgram> pendingProgram;
+    private ShaderProgram shaderProgram;
+
+    private final int vao;
+    private final int patchVbo;
+    private final int patchEbo;
+    private final int nodeVbo;
+    private long nodeBufferSize = 0;
+
+    private long selectNanos;
+
+    /**
+     * @param quadtree node selection, owned by the terrain from now on
+     * @param gridSize quads per patch edge, a power of two
+     */
+    public CdlodTerrain(TerrainQuadtree quadtree, int gridSize) {
+        if(Integer.bitCount(gridSize) != 1 || gridSize < 2) {
+            throw new IllegalArgumentException("Patch grid size must be a power of two: " + gridSize);
+        }
+        this.quadtree = quadtree;
+        this.gridSize = gridSize;
+
+        final String vertexShaderFilepath = "shaders/vertex/vertex_shader_terrain_cdlod.glsl";
+        final String fragmentShaderFilepath = "shaders/fragment/terrain_fragment_shader.glsl";
+        this.pendingProgram = ShaderLibrary.acquireAsync(vertexShaderFilepath, fragmentShaderFilepath, "GRID_SIZE " + gridSize);
+        pendingProgram.thenAccept(program -> this.shaderProgram = program);
+
+        float[] vertexArray = createPatchVertices(gridSize);
+        int[] elementArray = createPatchElements(gridSize);
+        this.indexCount = elementArray.length;
+
+        int patchBindingPoint = 0;
+        int nodeBindingPoint = 1;
+        int gridPositionSize = 2;
+
+        this.vao = glCreateVertexArrays();
+
+        this.patchVbo = glCreateBuffers();
+        glNamedBufferStorage(patchVbo, vertexArray, 0);
+        glVertexArrayVertexBuffer(vao, patchBindingPoint, patchVbo, 0, gridPositionSize * FLOAT_SIZE);
+
+        this.patchEbo = glCreateBuffers();
+        glNamedBufferStorage(patchEbo, elementArray, 0);
+        glVertexArrayElementBuffer(vao, patchEbo);
+
+        this.nodeVbo = glCreateBuffers();
+        glVertexArrayVertexBuffer(vao, nodeBindingPoint, nodeVbo, 0, TerrainQuadtree.NODE_BYTES);
+        glVertexArrayBindingDivisor(vao, nodeBindingPoint, 1);
+
+        int gridPositionAttribSlot = 0;
+        glVertexArrayAttribFormat(vao, gridPositionAttribSlot, gridPositionSize, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, gridPositionAttribSlot, patchBindingPoint);
+        glEnableVertexArrayAttrib(vao, gridPositionAttribSlot);
+
+        int nodeAttribSlot = 1;
+        glVertexArrayAttribFormat(vao, nodeAttribSlot, 4, GL_FLOAT, false, 0);
+        glVertexArrayAttribBinding(vao, nodeAttribSlot, nodeBindingPoint);
+        glEnableVertexArrayAttrib(vao, nodeAttribSlot);
+
+        int morphAttribSlot = 2;
+        glVertexArrayAttribFormat(vao, morphAttribSlot, 2, GL_FLOAT, false, 4 * FLOAT_SIZE);
+        glVertexArrayAttribBinding(vao, morphAttribSlot, nodeBindingPoint);
+        glEnableVertexArrayAttrib(vao, morphAttribSlot);
+    }
+
+    /** @return (gridSize + 1)^2 patch coordinates from 0 to 1, row by row */
+    private static float[] createPatchVertices(int gridSize) {
+        float[] vertices = new float[(gridSize + 1) * (gridSize + 1) * 2];
+        int i = 0;
+        for (int z = 0; z <= gridSize; z++) {
+            for (int x = 0; x <= gridSize; x++) {
+                vertices[i++] = (float) x / gridSize;
+                vertices[i++] = (float) z / gridSize;
+            }
+        }
+        return vertices;
+    }
+
+    /** @return two triangles per quad */
+    private static int[] createPatchElements(int gridSize) {
+        int[] elements = new int[gridSize * gridSize * 6];
+        int rowLength = gridSize + 1;
+        int i = 0;
+        for (int z = 0; z < gridSize; z++) {
+            for (int x = 0; x < gridSize; x++) {
+                int topLeft = z * rowLength + x;
+                int bottomLeft = topLeft + rowLength;
+
+                elements[i++] = bottomLeft + 1;
+                elements[i++] = topLeft;
+                elements[i++] = bottomLeft;
+
+                elements[i++] = bottomLeft + 1;
+                elements[i++] = topLeft + 1;
+                elements[i++] = topLeft;
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Selects the nodes for the camera and uploads them - call once per frame before drawing
+     *
+     * @param frustum view frustum, null selects nodes in every direction
+     */
+    public void update(Vector3f camera, FrustumIntersection frustum) {
+        long start = System.nanoTime();
+        int nodeCount = quadtree.select(camera, frustum);
+        RenderStats.countCulling(nodeCount, quadtree.getCulledCount());
+        selectNanos = System.nanoTime() - start;
+
+        FloatBuffer nodes = quadtree.getNodes();
+        long size = (long) nodeCount * TerrainQuadtree.NODE_BYTES;
+        if(size > nodeBufferSize) {
+            nodeBufferSize = (long) nodes.capacity() * FLOAT_SIZE;
+            glNamedBufferData(nodeVbo, nodeBufferSize, GL_DYNAMIC_DRAW);
+        }
+        glNamedBufferSubData(nodeVbo, 0, nodes);
+    }
+
+    /** Draws every selected node with a single instanced call */
+    public void draw() {
+        //Program still compiling - nothing to draw yet
+        if(shaderProgram == null || quadtree.getNodeCount() == 0) return;
+
+        shaderProgram.bind();
+        glBindVertexArray(vao);
+
+        glDrawElementsInstanced(GL_TRIANGLES, indexCount, GL_UNSIGNED_INT, 0, quadtree.getNodeCount());
+        RenderStats.countDrawCall();
+    }
+
+    public TerrainQuadtree getQuadtree() {
+        return quadtree;
+    }
+
+    /** @return vertices processed by the last draw */
+    public long getVertexCount() {
+        return (long) quadtree.getNodeCount() * (gridSize + 1) * (gridSize + 1);
+    }
+
+    /** @return CPU time of the last node selection */
+    public long getSelectNanos() {
+        return selectNanos;
+    }
+
+    public void destroy() {
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(patchVbo);
+        glDeleteBuffers(patchEbo);
+        glDeleteBuffers(nodeVbo);
+        quadtree.destroy();
+
+        ShaderLibrary.release(pendingProgram);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ccat.core.terrain;
+
+import com.ccat.core.renderer.ShaderProgram;
+import com.ccat.core.renderer.StorageBuffer;
+
+import static org.lwjgl.opengl.GL42.glMemoryBarrier;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BARRIER_BIT;
+import static org.lwjgl.opengl.GL43.glDispatchCompute;
+
+/**
+ * Terrain grid generated by {@code terrain_compute_shader.glsl} into a shader storage buffer:
+ * position and normal per vertex, dispatched only when the grid or the scroll offset changed.
+ * The vertex shader fetches its vertex from the buffer instead of evaluating the noise itself.
+ */
+public class ComputeHeightField {
+    /** Binding point of the {@code TerrainVertices} block */
+    public static final int VERTEX_BINDING = 5;
+    /** Per vertex: vec4 position + vec4 normal */
+    private static final int VERTEX_BYTES = 8 * Float.BYTES;
+    private static final int GROUP_SIZE = 16;
+
+    private final float size;
+    private final ShaderProgram computeProgram;
+    private final int subdivisionsLocation;
+    private final int sizeLocation;
+    private final int scrollLocation;
+
+    private int subdivisions;
+    private StorageBuffer vertices;
+    private float scroll;
+    private boolean dirty = true;
+
+    /**
+     * @param subdivisions quads per grid edge
+     * @param size edge length of the grid, centered on the origin
+     */
+    public ComputeHeightField(int subdivisions, float size) {
+        this.size = size;
+        this.computeProgram = ShaderProgram.compute("shaders/compute/terrain_compute_shader.glsl");
+        this.subdivisionsLocation = computeProgram.getUniformLocation("uSubdivisions");
+        this.sizeLocation = computeProgram.getUniformLocation("uSize");
+        this.scrollLocation = computeProgram.getUniformLocation("uScroll");
+        setSubdivisions(subdivisions);
+    }
+
+    /** Reallocates the storage buffer for a new grid, generated on the next {@link #update(float)} */
+    public void setSubdivisions(int subdivisions) {
+        if(subdivisions == this.subdivisions) return;
+        this.subdivisions = subdivisions;
+
+        if(vertices != null) vertices.destroy();
+        int side = subdivisions + 1;
+        this.vertices = new StorageBuffer((long) side * side * VERTEX_BYTES);
+        dirty = true;
+    }
+
+    /**
+     * Dispatches the generation if the grid or the scroll offset changed.
+     * Leaves the compute Program bound - bind the draw Program afterwards.
+     *
+     * @param scroll offset of the noise, the vertex shader terrain uses uTime / 3
+     * @return true if the vertices were regenerated
+     */
+    public boolean update(float scroll) {
+        if(!dirty && scroll == this.scroll) return false;
+        this.scroll = scroll;
+
+        computeProgram.bind();
+        computeProgram.uploadInt(subdivisionsLocation, subdivisions);
+        computeProgram.uploadFloat(sizeLocation, size);
+        computeProgram.uploadFloat(scrollLocation, scroll);
+        vertices.bind(VERTEX_BINDING);
+
+        int groups = (subdivisions + 1 + GROUP_SIZE - 1) / GROUP_SIZE;
+        glDispatchCompute(groups, groups, 1);
+        //Vertex shaders read what the dispatch wrote
+        glMemoryBarrier(GL_SHADER_STORAGE_BARRIER_BIT);
+
+        dirty = false;
+        return true;
+    }
+
+    /** Binds the generated vertices for the vertex shader */
+    public void bind() {
+        vertices.bind(VERTEX_BINDING);
+    }
+
+    public void destroy() {
+        vertices.destroy();
+        computeProgram.destroy();
+    }
+}
@@ -0,0 +1,225 @@
+package com.ccat.core.terrain;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Terrain heights and normals computed on the CPU, the same fbm noise {@code vertex_shader_terrain.glsl}
+ * evaluates per vertex and frame. Rows are generated in parallel on a ForkJoinPool into off-heap buffers,
+ * and only when the grid or the scroll offset changed. Each height is evaluated once - normals come from
+ * the neighbouring heights instead of four extra noise evaluations per vertex.
+ */
+public class HeightField {
+    /** Per vertex: height + normal */
+    public static final int VERTEX_FLOATS = 4;
+    public static final int VERTEX_BYTES = VERTEX_FLOATS * Float.BYTES;
+
+    private static final float RESOLUTION = 5f;
+    private static final int OCTAVES = 6;
+    /** Minimum samples per fork/join task */
+    private static final int GRAIN = 4096;
+
+    private final float size;
+    private final ForkJoinPool pool;
+
+    private int subdivisions;
+    /** Heights of the grid plus a border of one vertex for the normals, (subdivisions + 3)^2 */
+    private FloatBuffer heights;
+    private FloatBuffer vertices;
+
+    private float scroll;
+    private boolean dirty = true;
+    private long generateNanos;
+
+    /**
+     * @param subdivisions quads per grid edge, the field holds (subdivisions + 1)^2 vertices
+     * @param size edge length of the grid, centered on the origin
+     * @param pool pool generating the rows
+     */
+    public HeightField(int subdivisions, float size, ForkJoinPool pool) {
+        this.size = size;
+        this.pool = pool;
+        setSubdivisions(subdivisions);
+    }
+
+    /** Reallocates the buffers for a new grid, generated on the next {@link #update(float)} */
+    public void setSubdivisions(int subdivisions) {
+        if(subdivisions == this.subdivisions) return;
+        this.subdivisions = subdivisions;
+
+        int vertexCount = getVertexCount();
+        int borderedSide = subdivisions + 3;
+        heights = heights == null
+                ? MemoryUtil.memAllocFloat(borderedSide * borderedSide)
+                : MemoryUtil.memRealloc(heights, borderedSide * borderedSide);
+        vertices = vertices == null
+                ? MemoryUtil.memAllocFloat(vertexCount * VERTEX_FLOATS)
+                : MemoryUtil.memRealloc(vertices, vertexCount * VERTEX_FLOATS);
+        dirty = true;
+    }
+
+    /**
+     * Regenerates the field if the grid or the scroll offset changed
+     *
+     * @param scroll offset of the noise, the shader uses uTime / 3
+     * @return true if the vertices changed and must be uploaded again
+     */
+    public boolean update(float scroll) {
+        if(!dirty && scroll == this.scroll) return false;
+        this.scroll = scroll;
+
+        long start = System.nanoTime();
+        int borderedSide = subdivisions + 3;
+        int side = subdivisions + 1;
+        float interval = size / subdivisions;
+
+        //Heights first, the normal pass reads neighbours written by other tasks
+        pool.invoke(new Rows(0, borderedSide, borderedSide, (from, to) -> generateHeights(from, to, interval)));
+        pool.invoke(new Rows(0, side, side, (from, to) -> generateNormals(from, to, interval)));
+
+        generateNanos = System.nanoTime() - start;
+        dirty = false;
+        return true;
+    }
+
+    private void generateHeights(int fromRow, int toRow, float interval) {
+        int borderedSide = subdivisions + 3;
+        float offset = size / 2f;
+
+        for (int y = fromRow; y < toRow; y++) {
+            float zPos = (y - 1) * interval - offset;
+            for (int x = 0; x < borderedSide; x++) {
+                float xPos = (x - 1) * interval - offset;
+                heights.put(y * borderedSide + x, height(xPos, zPos));
+            }
+        }
+    }
+
+    private void generateNormals(int fromRow, int toRow, float interval) {
+        int borderedSide = subdivisions + 3;
+        int side = subdivisions + 1;
+
+        for (int y = fromRow; y < toRow; y++) {
+            for (int x = 0; x < side; x++) {
+                int center = (y + 1) * borderedSide + (x + 1);
+                float left = heights.get(center - 1);
+                float right = heights.get(center + 1);
+                float back = heights.get(center - borderedSide);
+                float front = heights.get(center + borderedSide);
+
+                float nx = left - right;
+                float ny = 2f * interval;
+                float nz = back - front;
+                float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+                int vertex = (y * side + x) * VERTEX_FLOATS;
+                vertices.put(vertex, heights.get(center))
+                        .put(vertex + 1, nx / length)
+                        .put(vertex + 2, ny / length)
+                        .put(vertex + 3, nz / length);
+            }
+        }
+    }
+
+    /** @return height above the grid at a world position */
+    private float height(float xPos, float zPos) {
+        float stX = (xPos + 0.5f) / RESOLUTION + scroll;
+        float stY = (zPos + 0.5f) / RESOLUTION + scroll;
+        return fbm(stX, stY) * 2f;
+    }
+
+    private static float fbm(float stX, float stY) {
+        float value = 0f;
+        float amplitude = 1.5f;
+        for (int i = 0; i < OCTAVES; i++) {
+            value += amplitude * noise(stX, stY);
+            stX *= 2f;
+            stY *= 2f;
+            amplitude *= 0.5f;
+        }
+        return value;
+    }
+
+    private static float noise(float stX, float stY) {
+        float iX = (float) Math.floor(stX);
+        float iY = (float) Math.floor(stY);
+        float fX = stX - iX;
+        float fY = stY - iY;
+
+        float a = random(iX, iY);
+        float b = random(iX + 1f, iY);
+        float c = random(iX, iY + 1f);
+        float d = random(iX + 1f, iY + 1f);
+
+        float uX = fX * fX * (3f - 2f * fX);
+        float uY = fY * fY * (3f - 2f * fY);
+
+        return a + (b - a) * uX
+                + (c - a) * uY * (1f - uX)
+                + (d - b) * uX * uY;
+    }
+
+    private static float random(float x, float y) {
+        float value = (float) Math.sin(x * 12.9898f + y * 78.233f) * 43758.5453123f;
+        return value - (float) Math.floor(value);
+    }
+
+    private interface RowPass {
+        void rows(int from, int to);
+    }
+
+    /** Splits a row range in halves until a task covers about {@link #GRAIN} samples */
+    private static final class Rows extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int rowLength;
+        private final RowPass pass;
+
+        private Rows(int from, int to, int rowLength, RowPass pass) {
+            this.from = from;
+            this.to = to;
+            this.rowLength = rowLength;
+            this.pass = pass;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= 1 || (long) (to - from) * rowLength <= GRAIN) {
+                pass.rows(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Rows(from, middle, rowLength, pass), new Rows(middle, to, rowLength, pass));
+        }
+    }
+
+    /** @return height + normal per vertex, row by row like the grid */
+    public FloatBuffer getVertices() {
+        return vertices;
+    }
+
+    public int getVertexCount() {
+        return (subdivisions + 1) * (subdivisions + 1);
+    }
+
+    public int getSubdivisions() {
+        return subdivisions;
+    }
+
+    /** @return duration of the last generation */
+    public long getGenerateNanos() {
+        return generateNanos;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void destroy() {
+        MemoryUtil.memFree(heights);
+        MemoryUtil.memFree(vertices);
+    }
+}
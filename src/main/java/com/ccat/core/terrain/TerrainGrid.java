@@ -0,0 +1,384 @@
+package com.ccat.core.terrain;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Flat terrain grid: (subdivisions + 1)^2 positions and their indices, written straight into
+ * off-heap buffers that are reused and only ever grow - rebuilding allocates nothing once a grid
+ * of the size was built, and the size is only limited by the int indices.
+ * <p>
+ * The mesh is drawn as chunks of whole rows, each one starting at its own base vertex.
+ * Chunks of the same height share their indices, so the index buffer only holds the first chunk.
+ * 16-bit modes size the chunks to fit 65535 vertices, 32-bit modes draw the grid as a single chunk.
+ * The post-transform cache statistics are simulated on their first query after a build, not by the build.
+ * Not thread-safe: build on one thread, read once the build has completed.
+ */
+public class TerrainGrid {
+    public static final int POSITION_SIZE = 3;
+    /** FIFO size of the simulated post-transform vertex cache */
+    public static final int VERTEX_CACHE_SIZE = 32;
+
+    /** Index encoding - {@code -Dotome.terrainIndices} */
+    public enum IndexMode {
+        /** Six 32-bit indices per quad */
+        TRIANGLES_32(false, false),
+        /** Six 16-bit indices per quad, chunked */
+        TRIANGLES_16(false, true),
+        /** One strip per row with 32-bit indices, rows separated by primitive restart */
+        STRIP_32(true, false),
+        /** One strip per row with 16-bit indices, chunked */
+        STRIP_16(true, true),
+        /** STRIP_16 where a row fits into 16-bit indices, else STRIP_32 */
+        AUTO(true, true);
+
+        private final boolean strip;
+        private final boolean shortIndices;
+
+        IndexMode(boolean strip, boolean shortIndices) {
+            this.strip = strip;
+            this.shortIndices = shortIndices;
+        }
+    }
+
+    /** Highest 16-bit value, reserved as restart index */
+    private static final int MAX_SHORT_VERTICES = 0xFFFF;
+
+    private FloatBuffer positions = MemoryUtil.memAllocFloat(POSITION_SIZE);
+    private ByteBuffer indices = MemoryUtil.memAlloc(6 * Integer.BYTES);
+    private IntBuffer chunkCounts = MemoryUtil.memAllocInt(1);
+    private IntBuffer chunkBaseVertices = MemoryUtil.memAllocInt(1);
+
+    private int subdivisions;
+    private IndexMode indexMode;
+    private long drawnIndices;
+    private long buildNanos;
+
+    /** Vertices the cache simulation tracks, its insertion times are reused between builds */
+    private int chunkVertices;
+    private int[] inserted = new int[0];
+    private boolean cacheSimulated;
+    private long cacheMisses;
+    private long cacheReferences;
+    private long triangles;
+
+    public void build(int subdivisions, float size, float height) {
+        build(subdivisions, size, height, IndexMode.TRIANGLES_32);
+    }
+
+    /**
+     * Rebuilds the grid
+     *
+     * @param subdivisions quads per edge
+     * @param size edge length, centered on the origin
+     * @param height y of every vertex
+     * @param requestedMode index encoding, AUTO chooses per grid
+     */
+    public void build(int subdivisions, float size, float height, IndexMode requestedMode) {
+        IndexMode mode = resolve(requestedMode, subdivisions);
+        String unsupported = checkSize(subdivisions, mode);
+        if(unsupported != null) {
+            throw new IllegalArgumentException(unsupported);
+        }
+
+        int rowLength = subdivisions + 1;
+        int rowsPerChunk = getRowsPerChunk(subdivisions, mode);
+        int indicesPerRow = getIndicesPerRow(subdivisions, mode);
+        int indexBytes = mode.shortIndices ? Short.BYTES : Integer.BYTES;
+
+        long vertexCount = (long) rowLength * rowLength;
+        long chunkIndexBytes = (long) rowsPerChunk * indicesPerRow * indexBytes;
+
+        long start = System.nanoTime();
+        this.subdivisions = subdivisions;
+        this.indexMode = mode;
+        positions = ensureCapacity(positions, (int) (vertexCount * POSITION_SIZE));
+
+        float offset = size / 2f;
+        float interval = size / subdivisions;
+        int p = 0;
+        for (int y = 0; y <= subdivisions; y++) {
+            float zPos = y * interval - offset;
+            for (int x = 0; x <= subdivisions; x++) {
+                positions.put(p++, x * interval - offset);
+                positions.put(p++, height);
+                positions.put(p++, zPos);
+            }
+        }
+        positions.limit(p);
+
+        //Indices of the first chunk, relative to its base vertex
+        indices = ensureCapacity(indices, (int) chunkIndexBytes);
+        int i = 0;
+        for (int y = 0; y < rowsPerChunk; y++) {
+            i = mode.strip
+                    ? writeStripRow(y, rowLength, i, indexBytes)
+                    : writeTriangleRow(y, rowLength, i, indexBytes);
+        }
+        indices.limit(i * indexBytes);
+
+        int chunks = (subdivisions + rowsPerChunk - 1) / rowsPerChunk;
+        chunkCounts = ensureCapacity(chunkCounts, chunks);
+        chunkBaseVertices = ensureCapacity(chunkBaseVertices, chunks);
+        drawnIndices = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int rows = Math.min(rowsPerChunk, subdivisions - chunk * rowsPerChunk);
+            chunkCounts.put(chunk, rows * indicesPerRow);
+            chunkBaseVertices.put(chunk, chunk * rowsPerChunk * rowLength);
+            drawnIndices += (long) rows * indicesPerRow;
+        }
+        chunkCounts.limit(chunks);
+        chunkBaseVertices.limit(chunks);
+
+        buildNanos = System.nanoTime() - start;
+        chunkVertices = rowsPerChunk * rowLength + rowLength;
+        cacheSimulated = false;
+    }
+
+    private static int getRowsPerChunk(int subdivisions, IndexMode mode) {
+        return mode.shortIndices ? Math.min(subdivisions, MAX_SHORT_VERTICES / (subdivisions + 1) - 1) : subdivisions;
+    }
+
+    private static int getIndicesPerRow(int subdivisions, IndexMode mode) {
+        return mode.strip ? 2 * (subdivisions + 1) + 1 : subdivisions * 6;
+    }
+
+    /** @return why a grid cannot be built, null if it can */
+    private static String checkSize(int subdivisions, IndexMode mode) {
+        if(subdivisions < 1) {
+            return "Unsupported terrain subdivisions: " + subdivisions;
+        }
+        if(mode.shortIndices && subdivisions + 1 > MAX_SHORT_VERTICES / 2) {
+            return "Rows of " + subdivisions + " subdivisions do not fit 16-bit indices.";
+        }
+        long vertexCount = (long) (subdivisions + 1) * (subdivisions + 1);
+        long chunkIndexBytes = (long) getRowsPerChunk(subdivisions, mode) * getIndicesPerRow(subdivisions, mode)
+                * (mode.shortIndices ? Short.BYTES : Integer.BYTES);
+        if(vertexCount * POSITION_SIZE > Integer.MAX_VALUE || chunkIndexBytes > Integer.MAX_VALUE) {
+            return "Terrain of " + subdivisions + " subdivisions exceeds the buffer size.";
+        }
+        return null;
+    }
+
+    /** @return largest subdivisions {@link #build} accepts for an index mode */
+    public static int getMaxSubdivisions(IndexMode requestedMode) {
+        //Every limit grows with the subdivisions - search the last size that fits
+        int low = 1;
+        int high = MAX_SHORT_VERTICES;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(checkSize(middle, resolve(requestedMode, middle)) == null) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static IndexMode resolve(IndexMode mode, int subdivisions) {
+        if(mode != IndexMode.AUTO) return mode;
+        return subdivisions + 1 <= MAX_SHORT_VERTICES / 2 ? IndexMode.STRIP_16 : IndexMode.STRIP_32;
+    }
+
+    /** Two triangles per quad of the row */
+    private int writeTriangleRow(int y, int rowLength, int i, int indexBytes) {
+        for (int x = 0; x < rowLength - 1; x++) {
+            int topLeft = y * rowLength + x;
+            int bottomLeft = topLeft + rowLength;
+
+            //First Tris
+            i = putIndex(i, bottomLeft + 1, indexBytes);
+            i = putIndex(i, topLeft, indexBytes);
+            i = putIndex(i, bottomLeft, indexBytes);
+
+            //Second Tris
+            i = putIndex(i, bottomLeft + 1, indexBytes);
+            i = putIndex(i, topLeft + 1, indexBytes);
+            i = putIndex(i, topLeft, indexBytes);
+        }
+        return i;
+    }
+
+    /** Zig-zag between the row and the next one, then a restart index */
+    private int writeStripRow(int y, int rowLength, int i, int indexBytes) {
+        for (int x = 0; x < rowLength; x++) {
+            int top = y * rowLength + x;
+            i = putIndex(i, top, indexBytes);
+            i = putIndex(i, top + rowLength, indexBytes);
+        }
+        return putIndex(i, -1, indexBytes);
+    }
+
+    /** -1 writes the restart index of the type, the maximum value */
+    private int putIndex(int i, int index, int indexBytes) {
+        if(indexBytes == Short.BYTES) {
+            indices.putShort(i * Short.BYTES, (short) index);
+        } else {
+            indices.putInt(i * Integer.BYTES, index);
+        }
+        return i + 1;
+    }
+
+    private int getIndex(int i) {
+        return indexMode.shortIndices
+                ? Short.toUnsignedInt(indices.getShort(i * Short.BYTES))
+                : indices.getInt(i * Integer.BYTES);
+    }
+
+    /**
+     * Replays the first chunk through a FIFO post-transform cache of {@link #VERTEX_CACHE_SIZE} entries -
+     * all full chunks share its indices, so its ratios hold for the whole grid
+     */
+    private void simulateVertexCache() {
+        if(cacheSimulated) return;
+        cacheSimulated = true;
+        int restart = indexMode.shortIndices ? MAX_SHORT_VERTICES : -1;
+        int count = indices.limit() / (indexMode.shortIndices ? Short.BYTES : Integer.BYTES);
+
+        //Insertion time per vertex, a vertex is cached while fewer than the cache size were inserted after it
+        if(chunkVertices > inserted.length) {
+            inserted = new int[chunkVertices];
+        } else {
+            Arrays.fill(inserted, 0, chunkVertices, 0);
+        }
+        int insertions = 0;
+        cacheMisses = 0;
+        cacheReferences = 0;
+        triangles = 0;
+
+        int stripLength = 0;
+        for (int i = 0; i < count; i++) {
+            int index = getIndex(i);
+            if(index == restart) {
+                stripLength = 0;
+                continue;
+            }
+
+            cacheReferences++;
+            if(inserted[index] == 0 || insertions - inserted[index] >= VERTEX_CACHE_SIZE) {
+                inserted[index] = ++insertions;
+                cacheMisses++;
+            }
+
+            if(indexMode.strip) {
+                if(++stripLength >= 3) triangles++;
+            } else if(i % 3 == 2) {
+                triangles++;
+            }
+        }
+    }
+
+    private static FloatBuffer ensureCapacity(FloatBuffer buffer, int capacity) {
+        if(capacity > buffer.capacity()) {
+            buffer = MemoryUtil.memRealloc(buffer, (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, buffer.capacity() * 3L / 2)));
+        }
+        return buffer.clear();
+    }
+
+    private static IntBuffer ensureCapacity(IntBuffer buffer, int capacity) {
+        if(capacity > buffer.capacity()) {
+            buffer = MemoryUtil.memRealloc(buffer, (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, buffer.capacity() * 3L / 2)));
+        }
+        return buffer.clear();
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int capacity) {
+        if(capacity > buffer.capacity()) {
+            buffer = MemoryUtil.memRealloc(buffer, (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, buffer.capacity() * 3L / 2)));
+        }
+        return buffer.clear();
+    }
+
+    /** @return positions of the last build, 3 floats per vertex */
+    public FloatBuffer getPositions() {
+        return positions;
+    }
+
+    /** @return indices of the first chunk, shared by every chunk */
+    public ByteBuffer getIndices() {
+        return indices;
+    }
+
+    /** @return index count per chunk, for glMultiDrawElementsBaseVertex */
+    public IntBuffer getChunkCounts() {
+        return chunkCounts;
+    }
+
+    /** @return first vertex per chunk, for glMultiDrawElementsBaseVertex */
+    public IntBuffer getChunkBaseVertices() {
+        return chunkBaseVertices;
+    }
+
+    public int getChunkCount() {
+        return chunkCounts.limit();
+    }
+
+    /** @return index encoding of the last build, never AUTO */
+    public IndexMode getIndexMode() {
+        return indexMode;
+    }
+
+    /** @return GL_TRIANGLES or GL_TRIANGLE_STRIP */
+    public int getPrimitiveType() {
+        return indexMode.strip ? GL_TRIANGLE_STRIP : GL_TRIANGLES;
+    }
+
+    /** @return GL_UNSIGNED_SHORT or GL_UNSIGNED_INT */
+    public int getIndexType() {
+        return indexMode.shortIndices ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+    }
+
+    /** @return true if the draw needs primitive restart at the maximum index */
+    public boolean usesPrimitiveRestart() {
+        return indexMode.strip;
+    }
+
+    public int getSubdivisions() {
+        return subdivisions;
+    }
+
+    public int getVertexCount() {
+        return positions.limit() / POSITION_SIZE;
+    }
+
+    /** @return indices fetched by a draw of all chunks */
+    public long getDrawnIndexCount() {
+        return drawnIndices;
+    }
+
+    /** @return index bytes fetched by a draw of all chunks */
+    public long getDrawnIndexBytes() {
+        return drawnIndices * (indexMode.shortIndices ? Short.BYTES : Integer.BYTES);
+    }
+
+    /** @return average vertex shader invocations per triangle in the simulated cache - simulates it on the first call */
+    public float getAcmr() {
+        simulateVertexCache();
+        return triangles == 0 ? 0f : (float) cacheMisses / triangles;
+    }
+
+    /** @return share of vertex references served by the simulated cache - simulates it on the first call */
+    public float getCacheHitRate() {
+        simulateVertexCache();
+        return cacheReferences == 0 ? 0f : 1f - (float) cacheMisses / cacheReferences;
+    }
+
+    /** @return duration of the last build, without the cache simulation */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    public void destroy() {
+        MemoryUtil.memFree(positions);
+        MemoryUtil.memFree(indices);
+        MemoryUtil.memFree(chunkCounts);
+        MemoryUtil.memFree(chunkBaseVertices);
+    }
+}
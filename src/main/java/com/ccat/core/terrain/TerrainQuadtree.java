@@ -0,0 +1,189 @@
+package com.ccat.core.terrain;
+
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Implicit quadtree over a square terrain for CDLOD (continuous distance-dependent level of detail).
+ * LOD 0 holds the smallest nodes, every coarser level doubles node size and view range.
+ * A node is subdivided while the camera is within the range of the next finer level, every selected
+ * node is drawn as one instance of the shared patch mesh. Vertices approaching the end of their range
+ * morph onto the grid of the next coarser level, so neighbouring levels meet without cracks.
+ * Nodes outside the view frustum are skipped with their whole subtree.
+ */
+public class TerrainQuadtree {
+    /** Per node: vec4 (origin x, origin z, size, lod) + vec2 (morph start, morph end) */
+    public static final int NODE_FLOATS = 6;
+    public static final int NODE_BYTES = NODE_FLOATS * Float.BYTES;
+
+    /** Fraction of a level's range after which its vertices start morphing to the coarser grid */
+    private static final float MORPH_START = 0.75f;
+    /** Morph range of the coarsest level - it has no coarser grid to morph to */
+    private static final float NO_MORPH = 1e30f;
+
+    private final float size;
+    private final float leafSize;
+    private final int lodCount;
+    private final float minHeight;
+    private final float maxHeight;
+    private final float[] ranges;
+
+    private FloatBuffer nodes = MemoryUtil.memAllocFloat(64 * NODE_FLOATS);
+    private int nodeCount;
+    private final int[] nodesPerLod;
+    private int culledCount;
+
+    /**
+     * @param size edge length of the terrain, centered on the origin
+     * @param leafSize requested edge length of the finest nodes, rounded so the levels tile the terrain
+     * @param minHeight lowest terrain height
+     * @param maxHeight highest terrain height
+     * @param detail multiplier of all view ranges, at least 1
+     */
+    public TerrainQuadtree(float size, float leafSize, float minHeight, float maxHeight, float detail) {
+        this.size = size;
+        this.lodCount = Math.max(1, 1 + (int) Math.floor(Math.log(size / leafSize) / Math.log(2)));
+        this.leafSize = size / (1 << (lodCount - 1));
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        this.nodesPerLod = new int[lodCount];
+
+        //Vertices where a node borders a finer level lie within a subdivided node of its own level,
+        //so up to that node's diagonal beyond the finer range - they must not have started morphing:
+        //range > diagonal / (2 * MORPH_START - 1), checked at level 1 where height dominates the diagonal most
+        float heightRange = maxHeight - minHeight;
+        float diagonal = (float) Math.sqrt(8 * this.leafSize * this.leafSize + heightRange * heightRange);
+        float leafRange = Math.max(1f, detail) * diagonal / (2 * MORPH_START - 1) * 1.05f;
+
+        this.ranges = new float[lodCount];
+        for (int lod = 0; lod < lodCount; lod++) {
+            ranges[lod] = leafRange * (1 << lod);
+        }
+    }
+
+    /**
+     * Selects the nodes to draw for the camera position
+     *
+     * @return number of selected nodes, read them from {@link #getNodes()}
+     */
+    public int select(Vector3f camera) {
+        return select(camera, null);
+    }
+
+    /**
+     * Selects the nodes to draw for the camera position within the frustum
+     *
+     * @param frustum view frustum, null selects nodes in every direction
+     * @return number of selected nodes, read them from {@link #getNodes()}
+     */
+    public int select(Vector3f camera, FrustumIntersection frustum) {
+        nodeCount = 0;
+        culledCount = 0;
+        Arrays.fill(nodesPerLod, 0);
+
+        float origin = -size / 2f;
+        select(origin, origin, lodCount - 1, camera, frustum);
+
+        nodes.limit(nodeCount * NODE_FLOATS);
+        return nodeCount;
+    }
+
+    /** @param frustum null once a parent was found fully inside */
+    private void select(float x, float z, int lod, Vector3f camera, FrustumIntersection frustum) {
+        float nodeSize = leafSize * (1 << lod);
+
+        if(frustum != null) {
+            int result = frustum.intersectAab(x, minHeight, z, x + nodeSize, maxHeight, z + nodeSize);
+            if(result == FrustumIntersection.INSIDE) {
+                frustum = null;
+            } else if(result != FrustumIntersection.INTERSECT) {
+                culledCount++;
+                return;
+            }
+        }
+
+        if(lod == 0 || distanceSquared(x, z, nodeSize, camera) > ranges[lod - 1] * ranges[lod - 1]) {
+            add(x, z, nodeSize, lod);
+            return;
+        }
+
+        //Children outside their own range are still drawn at their level -
+        //all their vertices are fully morphed and match this level's grid
+        float half = nodeSize / 2f;
+        select(x, z, lod - 1, camera, frustum);
+        select(x + half, z, lod - 1, camera, frustum);
+        select(x, z + half, lod - 1, camera, frustum);
+        select(x + half, z + half, lod - 1, camera, frustum);
+    }
+
+    /** @return squared distance from the camera to the bounding box of the node */
+    private float distanceSquared(float x, float z, float nodeSize, Vector3f camera) {
+        float dx = Math.max(Math.max(x - camera.x, camera.x - (x + nodeSize)), 0f);
+        float dy = Math.max(Math.max(minHeight - camera.y, camera.y - maxHeight), 0f);
+        float dz = Math.max(Math.max(z - camera.z, camera.z - (z + nodeSize)), 0f);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void add(float x, float z, float nodeSize, int lod) {
+        int offset = nodeCount * NODE_FLOATS;
+        if(offset + NODE_FLOATS > nodes.capacity()) {
+            nodes = MemoryUtil.memRealloc(nodes, nodes.capacity() * 2);
+        }
+        nodes.limit(nodes.capacity());
+
+        boolean coarsest = lod == lodCount - 1;
+        nodes.put(offset, x)
+                .put(offset + 1, z)
+                .put(offset + 2, nodeSize)
+                .put(offset + 3, lod)
+                .put(offset + 4, coarsest ? NO_MORPH : ranges[lod] * MORPH_START)
+                .put(offset + 5, coarsest ? NO_MORPH * 2f : ranges[lod]);
+
+        nodesPerLod[lod]++;
+        nodeCount++;
+    }
+
+    /** @return selected nodes of the last {@link #select(Vector3f)}, {@link #NODE_FLOATS} per node */
+    public FloatBuffer getNodes() {
+        return nodes;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /** @return nodes skipped outside the frustum in the last selection, each with its subtree */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /** @return selected nodes of the level in the last selection */
+    public int getNodeCount(int lod) {
+        return nodesPerLod[lod];
+    }
+
+    public int getLodCount() {
+        return lodCount;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public float getLeafSize() {
+        return leafSize;
+    }
+
+    /** @return distance up to which the level is drawn */
+    public float getRange(int lod) {
+        return ranges[lod];
+    }
+
+    public void destroy() {
+        MemoryUtil.memFree(nodes);
+    }
+}
@@ -0,0 +1,108 @@
+package com.ccat.core.util;
+
+import com.ccat.core.culling.BoundingVolumeHierarchy;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+
+import java.util.Random;
+
+/**
+ * Frustum culling of randomly placed boxes: {@link BoundingVolumeHierarchy} queries against testing
+ * every box, then the cost of refitting while a part of the objects moves each frame.
+ * Needs no GL context: run the main method directly, optionally with the object count as argument.
+ */
+public class CullingBenchmark {
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+    private static final int FRAMES = 120;
+    /** Objects are spread over a cube of this edge length around the origin */
+    private static final float WORLD_SIZE = 2000f;
+    private static final float MAX_OBJECT_SIZE = 4f;
+
+    public static void main(String[] args) {
+        int objects = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        float[] centers = new float[objects * 3];
+        float[] halfSizes = new float[objects];
+
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy();
+        for (int id = 0; id < objects; id++) {
+            centers[id * 3] = (random.nextFloat() - 0.5f) * WORLD_SIZE;
+            centers[id * 3 + 1] = (random.nextFloat() - 0.5f) * WORLD_SIZE;
+            centers[id * 3 + 2] = (random.nextFloat() - 0.5f) * WORLD_SIZE;
+            halfSizes[id] = random.nextFloat() * MAX_OBJECT_SIZE / 2f;
+            bvh.add(centers[id * 3] - halfSizes[id], centers[id * 3 + 1] - halfSizes[id], centers[id * 3 + 2] - halfSizes[id],
+                    centers[id * 3] + halfSizes[id], centers[id * 3 + 1] + halfSizes[id], centers[id * 3 + 2] + halfSizes[id]);
+        }
+
+        long start = System.nanoTime();
+        bvh.update();
+        System.out.printf("Culling ## Objects:%d - Nodes:%d - Build:%.2f ms%n",
+                objects, bvh.getNodeCount(), (System.nanoTime() - start) / 1_000_000.0);
+
+        //Same projection as the CameraController, looking from inside the world and from outside onto it
+        Matrix4f projection = new Matrix4f().perspective(45f, 16f / 9f, 0.01f, 10000f);
+        float[][] views = {
+                { 0f, 0f, 0f, 1f, 0f, 0f },
+                { 0f, 0f, 0f, 0f, -1f, 1f },
+                { 0f, 0f, 3000f, 0f, 0f, 0f },
+                { 3000f, 3000f, 3000f, 0f, 0f, 0f },
+        };
+        FrustumIntersection frustum = new FrustumIntersection();
+        Matrix4f viewProjection = new Matrix4f();
+        for (float[] view : views) {
+            projection.lookAt(view[0], view[1], view[2], view[3], view[4], view[5], 0f, 1f, 0f, viewProjection);
+            frustum.set(viewProjection);
+
+            double linear = measure(() -> bvh.queryLinear(frustum));
+            int linearVisible = bvh.queryLinear(frustum);
+            double tree = measure(() -> bvh.query(frustum));
+            int visible = bvh.query(frustum);
+            if(visible != linearVisible) {
+                throw new IllegalStateException("BVH found " + visible + " visible objects, the linear test " + linearVisible);
+            }
+
+            System.out.printf("Culling ## Eye:(%.0f, %.0f, %.0f) - Visible:%d - Culled:%d - Nodes tested:%d - Linear:%.3f ms - BVH:%.3f ms (%.1fx)%n",
+                    view[0], view[1], view[2], visible, bvh.getCulledCount(), bvh.getTestedNodes(), linear, tree, linear / tree);
+        }
+
+        //Every frame one object in a hundred jitters a bit, the tree is refitted until it got too loose
+        projection.lookAt(0f, 0f, 3000f, 0f, 0f, 0f, 0f, 1f, 0f, viewProjection);
+        frustum.set(viewProjection);
+        int moving = objects / 100;
+        int rebuildsBefore = bvh.getRebuilds();
+        long updateNanos = 0;
+        long queryNanos = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            for (int i = 0; i < moving; i++) {
+                int id = random.nextInt(objects);
+                int c = id * 3;
+                centers[c] += random.nextFloat() - 0.5f;
+                centers[c + 1] += random.nextFloat() - 0.5f;
+                centers[c + 2] += random.nextFloat() - 0.5f;
+                bvh.move(id, centers[c] - halfSizes[id], centers[c + 1] - halfSizes[id], centers[c + 2] - halfSizes[id],
+                        centers[c] + halfSizes[id], centers[c + 1] + halfSizes[id], centers[c + 2] + halfSizes[id]);
+            }
+
+            start = System.nanoTime();
+            bvh.update();
+            updateNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            bvh.query(frustum);
+            queryNanos += System.nanoTime() - start;
+        }
+        System.out.printf("Culling ## Moving:%d per frame - Refit:%.3f ms - Query:%.3f ms - Cost:%.2f - Rebuilds:%d in %d frames%n",
+                moving, updateNanos / 1_000_000.0 / FRAMES, queryNanos / 1_000_000.0 / FRAMES,
+                bvh.getCost(), bvh.getRebuilds() - rebuildsBefore, FRAMES);
+    }
+
+    /** @return average milliseconds per query after warmup */
+    private static double measure(Runnable query) {
+        for (int i = 0; i < WARMUP; i++) query.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) query.run();
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+}
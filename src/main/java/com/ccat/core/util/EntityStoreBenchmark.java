@@ -0,0 +1,95 @@
+package com.ccat.core.util;
+
+import com.ccat.core.scene.EntityStore;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Update and render extraction of many moving entities: the {@link EntityStore} arrays against one object
+ * per entity holding Vector3f components, the layout the cubes used before.
+ * The objects are shuffled once, as a long-running scene scatters them over the heap.
+ * Needs no GL context: run the main method directly, optionally with the entity count as argument.
+ */
+public class EntityStoreBenchmark {
+    private static final int WARMUP = 10;
+    private static final int FRAMES = 100;
+    private static final float DELTA = 1f / 60f;
+
+    /** Per-entity object as the scene kept it before */
+    private static class SceneObject {
+        final Vector3f position = new Vector3f();
+        final Vector3f velocity = new Vector3f();
+        int material;
+        boolean visible = true;
+    }
+
+    public static void main(String[] args) {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Random random = new Random(42);
+
+        EntityStore store = new EntityStore(entities);
+        List<SceneObject> objects = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            float x = random.nextFloat() * 1000f;
+            float y = random.nextFloat() * 1000f;
+            float z = random.nextFloat() * 1000f;
+            float vx = random.nextFloat() - 0.5f;
+            float vy = random.nextFloat() - 0.5f;
+            float vz = random.nextFloat() - 0.5f;
+            int material = random.nextInt(8);
+
+            int entity = store.create(x, y, z, 0.5f, 0, material);
+            store.setVelocity(entity, vx, vy, vz);
+
+            SceneObject object = new SceneObject();
+            object.position.set(x, y, z);
+            object.velocity.set(vx, vy, vz);
+            object.material = material;
+            objects.add(object);
+        }
+        Collections.shuffle(objects, random);
+
+        ByteBuffer instances = MemoryUtil.memAlloc(entities * EntityStore.INSTANCE_BYTES);
+        long address = MemoryUtil.memAddress(instances);
+        try {
+            double storeMs = measure(() -> {
+                store.update(DELTA);
+                store.extractInstances(address);
+            });
+            double objectMs = measure(() -> {
+                Vector3f step = new Vector3f();
+                int written = 0;
+                for (SceneObject object : objects) {
+                    object.position.add(object.velocity.mul(DELTA, step));
+                    if(!object.visible) continue;
+
+                    long target = address + (long) written++ * EntityStore.INSTANCE_BYTES;
+                    MemoryUtil.memPutFloat(target, object.position.x);
+                    MemoryUtil.memPutFloat(target + 4, object.position.y);
+                    MemoryUtil.memPutFloat(target + 8, object.position.z);
+                    MemoryUtil.memPutInt(target + 12, object.material);
+                }
+            });
+
+            System.out.printf("Entities ## Count:%d - Objects:%.3f ms - EntityStore:%.3f ms (%.1fx) per update and extraction%n",
+                    entities, objectMs, storeMs, objectMs / storeMs);
+        } finally {
+            MemoryUtil.memFree(instances);
+        }
+    }
+
+    /** @return average milliseconds per frame after warmup */
+    private static double measure(Runnable frame) {
+        for (int i = 0; i < WARMUP; i++) frame.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) frame.run();
+        return (System.nanoTime() - start) / 1_000_000.0 / FRAMES;
+    }
+}
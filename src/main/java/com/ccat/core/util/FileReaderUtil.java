@@ -1,13 +1,35 @@
 package com.ccat.core.util;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_info_from_memory;
 
 public class FileReaderUtil {
+    private static final int INITIAL_POOL_SIZE = 256 * 1024;
+
+    /** Per-thread direct buffer for resources that cannot be mapped (e.g. inside a jar), allocated on first use */
+    private static final ThreadLocal<PooledBuffer> POOL = ThreadLocal.withInitial(PooledBuffer::new);
+    /** Every thread's pooled buffer, freed by {@link #shutdown()} */
+    private static final Set<PooledBuffer> pooled = ConcurrentHashMap.newKeySet();
+
+    private static final class PooledBuffer {
+        private ByteBuffer buffer;
+    }
+
     public static String readFile(String filepath) throws IOException {
         try(InputStream inStream = FileReaderUtil.class.getClassLoader().getResourceAsStream(filepath)) {
 
@@ -17,30 +39,75 @@ public class FileReaderUtil {
         }
     }
 
+    /**
+     * Reads the encoded bytes of an image resource without decoding them, ready for stb_image.
+     * Resources on the file system are memory-mapped, everything else is streamed into a
+     * per-thread pooled direct buffer - that buffer is only valid until the next call on the same thread,
+     * so decode it right away.
+     * The format is detected from the content, not the file ending.
+     *
+     * @param filepath resource path of the image
+     * @return direct buffer holding the encoded image
+     */
     public static ByteBuffer readImage(String filepath) throws IOException {
-        try(InputStream inStream = FileReaderUtil.class.getClassLoader().getResourceAsStream(filepath)) {
-            if(inStream == null) throw new RuntimeException("Stream cannot be empty");
+        URL resource = FileReaderUtil.class.getClassLoader().getResource(filepath);
+        if(resource == null) throw new RuntimeException("Stream cannot be empty");
 
-            BufferedImage bufferedImage = ImageIO.read(inStream);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteBuffer encoded = "file".equals(resource.getProtocol())
+                ? mapFile(resource)
+                : readPooled(resource);
 
-            String fileEnding = filepath.split("\\.")[1];
-            if(fileEnding.equalsIgnoreCase("jpg")) {
-                ImageIO.write(bufferedImage, "jpg", baos);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+            if(!stbi_info_from_memory(encoded, width, height, channels)) {
+                throw new RuntimeException("Invalid file-format for file:" + filepath + " - " + stbi_failure_reason());
             }
-            else if(fileEnding.equalsIgnoreCase("png")) {
-                ImageIO.write(bufferedImage, "png", baos);
-            } else {
-                throw new RuntimeException("Invalid file-format:" + fileEnding + " for file:"+filepath);
-            }
-            baos.flush();
-            byte[] bytes = baos.toByteArray();
+        }
+        return encoded;
+    }
 
-            baos.close();
+    private static ByteBuffer mapFile(URL resource) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(resource.toURI()), StandardOpenOption.READ)) {
+            //The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid resource location: " + resource, e);
+        }
+    }
+
+    private static ByteBuffer readPooled(URL resource) throws IOException {
+        PooledBuffer pool = POOL.get();
+        if(pool.buffer == null) {
+            pool.buffer = MemoryUtil.memAlloc(INITIAL_POOL_SIZE);
+            pooled.add(pool);
+        }
+        ByteBuffer buffer = pool.buffer;
+        buffer.clear();
+
+        try (InputStream inStream = resource.openStream()) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = inStream.read(chunk)) != -1) {
+                if(buffer.remaining() < read) {
+                    int position = buffer.position();
+                    buffer = MemoryUtil.memRealloc(buffer, Math.max(buffer.capacity() * 2, position + read));
+                    buffer.clear().position(position);
+                    pool.buffer = buffer;
+                }
+                buffer.put(chunk, 0, read);
+            }
+        }
+        return buffer.flip();
+    }
 
-            return ByteBuffer.allocateDirect(bytes.length)
-                    .put(bytes)
-                    .flip();
+    /** Frees the pooled buffers of all threads - call once no thread reads images anymore, e.g. before exit */
+    public static void shutdown() {
+        for (PooledBuffer pool : pooled) {
+            if(pool.buffer != null) MemoryUtil.memFree(pool.buffer);
+            pool.buffer = null;
         }
+        pooled.clear();
     }
 }
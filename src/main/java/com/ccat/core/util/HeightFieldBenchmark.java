@@ -0,0 +1,52 @@
+package com.ccat.core.util;
+
+import com.ccat.core.terrain.HeightField;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures {@link HeightField} generation time against grid size and fork/join parallelism.
+ * Needs no GL context: run the main method directly.
+ */
+public class HeightFieldBenchmark {
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+    private static final float SIZE = 12f;
+
+    private static final int[] subdivisions = { 64, 128, 256, 512, 1024, 2048 };
+
+    public static void main(String[] args) {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int grid : subdivisions) {
+            double singleThreaded = 0;
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                double millis = measure(grid, threads);
+                if(threads == 1) singleThreaded = millis;
+
+                System.out.printf("HeightField ## Grid:%dx%d (%d vertices) - Threads:%d - %.2f ms - Speedup:%.1fx%n",
+                        grid, grid, (grid + 1) * (grid + 1), threads, millis, singleThreaded / millis);
+            }
+        }
+    }
+
+    /** @return average milliseconds per generation after warmup, every run with a new scroll offset */
+    private static double measure(int grid, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        HeightField field = new HeightField(grid, SIZE, pool);
+        try {
+            float scroll = 0f;
+            for (int i = 0; i < WARMUP; i++) field.update(scroll += 0.01f);
+
+            long total = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                field.update(scroll += 0.01f);
+                total += field.getGenerateNanos();
+            }
+            return total / 1_000_000.0 / ITERATIONS;
+        } finally {
+            field.destroy();
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ccat.core.util;
+
+import org.lwjgl.system.MemoryStack;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load_from_memory;
+
+/**
+ * Compares the old ImageIO decode/re-encode path against {@link FileReaderUtil#readImage}
+ * on the bundled textures, both followed by the stb_image decode the TextureLoader does.
+ * Needs no GL context: run the main method directly.
+ */
+public class ImageLoadBenchmark {
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    private static final List<String> paths = List.of(
+            "textures/test_texture_02.jpg",
+            "textures/test_texture_03.png",
+            "textures/test_texture_04.jpg",
+            "textures/awesomeface.png"
+    );
+
+    public static void main(String[] args) throws IOException {
+        try {
+            for (String path : paths) {
+                double imageIo = measure(() -> decode(readImageIO(path)));
+                double direct = measure(() -> decode(FileReaderUtil.readImage(path)));
+                System.out.printf("Image ## %s - ImageIO round trip:%.3f ms - Direct:%.3f ms - Speedup:%.1fx%n",
+                        path, imageIo, direct, imageIo / direct);
+            }
+        } finally {
+            FileReaderUtil.shutdown();
+        }
+    }
+
+    private interface Load {
+        void run() throws IOException;
+    }
+
+    /** @return average milliseconds per load after warmup */
+    private static double measure(Load load) throws IOException {
+        for (int i = 0; i < WARMUP; i++) load.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) load.run();
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    private static void decode(ByteBuffer encoded) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            ByteBuffer data = stbi_load_from_memory(encoded, width, height, channels, 0);
+            if(data == null) throw new RuntimeException("Failed to decode image");
+            stbi_image_free(data);
+        }
+    }
+
+    /** The previous FileReaderUtil.readImage: decode with ImageIO, re-encode, copy to a direct buffer */
+    private static ByteBuffer readImageIO(String filepath) throws IOException {
+        try(InputStream inStream = ImageLoadBenchmark.class.getClassLoader().getResourceAsStream(filepath)) {
+            if(inStream == null) throw new RuntimeException("Stream cannot be empty");
+
+            BufferedImage bufferedImage = ImageIO.read(inStream);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            String fileEnding = filepath.substring(filepath.lastIndexOf('.') + 1);
+            ImageIO.write(bufferedImage, fileEnding, baos);
+            byte[] bytes = baos.toByteArray();
+
+            return ByteBuffer.allocateDirect(bytes.length)
+                    .put(bytes)
+                    .flip();
+        }
+    }
+}
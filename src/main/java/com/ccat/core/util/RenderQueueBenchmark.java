@@ -0,0 +1,102 @@
+package com.ccat.core.util;
+
+import com.ccat.core.renderer.RenderQueue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Checks and times the {@link RenderQueue} radix sort.
+ * Random opaque and translucent keys over all passes - the ones from 8 up set the sign bit - and
+ * out-of-range depths are sorted and compared against a stable sort by {@link Long#compareUnsigned}:
+ * keys and payloads must match exactly, the benchmark fails otherwise.
+ * The time is compared with {@link Arrays#sort(long[])} on sign-flipped keys, the same unsigned order.
+ * Needs no GL context: run the main method directly, optionally with the draw count as argument.
+ */
+public class RenderQueueBenchmark {
+    private static final int WARMUP = 20;
+    private static final int FRAMES = 200;
+    private static final float MAX_DEPTH = 100f;
+
+    public static void main(String[] args) {
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random random = new Random(42);
+
+        long[] keys = new long[draws];
+        for (int i = 0; i < draws; i++) {
+            int pass = random.nextInt(RenderQueue.MAX_PASS + 1);
+            int program = random.nextInt(RenderQueue.MAX_PROGRAM + 1);
+            int material = random.nextInt(RenderQueue.MAX_MATERIAL + 1);
+            int mesh = random.nextInt(RenderQueue.MAX_MESH + 1);
+            //Behind the viewer and beyond the range clamp
+            float depth = random.nextFloat() * MAX_DEPTH * 1.5f - MAX_DEPTH * 0.25f;
+            keys[i] = random.nextBoolean()
+                    ? RenderQueue.opaqueKey(pass, program, material, mesh, depth, MAX_DEPTH)
+                    : RenderQueue.translucentKey(pass, program, material, mesh, depth, MAX_DEPTH);
+        }
+        //Duplicates check that equal keys keep their submission order
+        for (int i = 0; i < draws / 10; i++) {
+            keys[random.nextInt(draws)] = keys[random.nextInt(draws)];
+        }
+
+        RenderQueue queue = new RenderQueue();
+        submit(queue, keys);
+        queue.sort();
+        verify(queue, keys);
+
+        double radixMs = measure(() -> {
+            submit(queue, keys);
+            queue.sort();
+        });
+        long[] flipped = new long[draws];
+        double arraysMs = measure(() -> {
+            for (int i = 0; i < draws; i++) flipped[i] = keys[i] ^ Long.MIN_VALUE;
+            Arrays.sort(flipped);
+        });
+
+        System.out.printf("Render queue ## Draws:%d - Radix sort:%.3f ms - Arrays.sort:%.3f ms (%.1fx) - State changes:%d (unsorted %d)%n",
+                draws, radixMs, arraysMs, arraysMs / radixMs, queue.getSortedChanges(), queue.getUnsortedChanges());
+    }
+
+    /** Submits every key with its index as payload */
+    private static void submit(RenderQueue queue, long[] keys) {
+        queue.clear();
+        for (int i = 0; i < keys.length; i++) {
+            queue.submit(keys[i], i);
+        }
+    }
+
+    /** Compares the sorted queue with a stable unsigned sort of the submitted keys */
+    private static void verify(RenderQueue queue, long[] keys) {
+        Integer[] expected = IntStream.range(0, keys.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(expected, Comparator.comparing((Integer i) -> keys[i], Long::compareUnsigned));
+
+        if(queue.size() != keys.length) {
+            throw new IllegalStateException("Sorted " + queue.size() + " of " + keys.length + " draws.");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if(queue.getKey(i) != keys[expected[i]] || queue.getPayload(i) != expected[i]) {
+                throw new IllegalStateException(String.format(
+                        "Draw %d is %016x (payload %d), expected %016x (payload %d).",
+                        i, queue.getKey(i), queue.getPayload(i), keys[expected[i]], expected[i]));
+            }
+        }
+        for (int i = 1; i < keys.length; i++) {
+            if(RenderQueue.passOf(queue.getKey(i)) < RenderQueue.passOf(queue.getKey(i - 1))) {
+                throw new IllegalStateException("Pass " + RenderQueue.passOf(queue.getKey(i)) + " sorted after pass "
+                        + RenderQueue.passOf(queue.getKey(i - 1)) + " at draw " + i + ".");
+            }
+        }
+    }
+
+    /** @return average milliseconds per frame after warmup */
+    private static double measure(Runnable frame) {
+        for (int i = 0; i < WARMUP; i++) frame.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) frame.run();
+        return (System.nanoTime() - start) / 1_000_000.0 / FRAMES;
+    }
+}
@@ -62,6 +62,140 @@ public class ShapeUtil {
                 1f,1f,0f,1f,    -0.5f,  0.1f, 0f  // 3 - Top Left       | 8
         };
     }
+    public static int[] getCubeElementArray() {
+        return new int[] {
+                1, 3, 2,    1, 2, 0,    //BACK
+                5, 7, 6,    5, 6, 4,    //FRONT
+                7, 3, 2,    7, 2, 6,    //TOP
+                5, 1, 0,    5, 0, 4,    //BOTTOM
+                4, 6, 2,    4, 2, 0,    //LEFT
+                5, 7, 3,    5, 3, 1     //RIGHT
+        };
+    }
+
+    /**
+     * Unit cube expanded to 36 non-indexed vertices, each face mapping the full texture
+     *
+     * @return interleaved vertex data: position(x,y,z), texCoords(u,v)
+     */
+    public static float[] getTexturedCubeVertexArray() {
+        final float[] corners = {
+                -0.5f, -0.5f, -0.5f,
+                 0.5f, -0.5f, -0.5f,
+                -0.5f,  0.5f, -0.5f,
+                 0.5f,  0.5f, -0.5f,
+
+                -0.5f, -0.5f,  0.5f,
+                 0.5f, -0.5f,  0.5f,
+                -0.5f,  0.5f,  0.5f,
+                 0.5f,  0.5f,  0.5f
+        };
+        final float[] texCoords = {
+                1f, 0f,     1f, 1f,     0f, 1f,
+                1f, 0f,     0f, 1f,     0f, 0f
+        };
+        final int[] elements = getCubeElementArray();
+
+        float[] vertices = new float[elements.length * 5];
+        for (int i = 0; i < elements.length; i++) {
+            int corner = elements[i] * 3;
+            int texCoord = (i % 6) * 2;
+
+            vertices[i * 5] = corners[corner];
+            vertices[i * 5 + 1] = corners[corner + 1];
+            vertices[i * 5 + 2] = corners[corner + 2];
+            vertices[i * 5 + 3] = texCoords[texCoord];
+            vertices[i * 5 + 4] = texCoords[texCoord + 1];
+        }
+        return vertices;
+    }
+
+    public static float[] getTexturedQuadVertexArray() {
+        return new float[] {
+                // pos                      texCoords(u,v)
+                -0.5f, -0.5f, 0.0f,         0.0f, 0.0f,     //bottom-left
+                 0.5f, -0.5f, 0.0f,         1.0f, 0.0f,     //bottom-right
+                -0.5f,  0.5f, 0.0f,         0.0f, 1.0f,     //top-left
+                 0.5f,  0.5f, 0.0f,         1.0f, 1.0f      //top-right
+        };
+    }
+    public static int[] getTexturedQuadElementArray() {
+        return new int[] {
+                1, 3, 2,
+                1, 2, 0
+        };
+    }
+
+    /**
+     * Flat grid on the xz-plane, centered on the origin
+     *
+     * @param size Edge length of the grid
+     * @param subdivisions Quads per edge
+     * @return interleaved vertex data: position(x,y,z), texCoords(u,v)
+     */
+    public static float[] getGridVertexArray(float size, int subdivisions) {
+        float offset = size / 2f;
+        float interval = size / subdivisions;
+
+        float[] vertices = new float[(subdivisions + 1) * (subdivisions + 1) * 5];
+        int i = 0;
+        for (int z = 0; z <= subdivisions; z++) {
+            for (int x = 0; x <= subdivisions; x++) {
+                vertices[i++] = x * interval - offset;
+                vertices[i++] = 0f;
+                vertices[i++] = z * interval - offset;
+                vertices[i++] = (float) x / subdivisions;
+                vertices[i++] = (float) z / subdivisions;
+            }
+        }
+        return vertices;
+    }
+    public static int[] getGridElementArray(int subdivisions) {
+        int[] elements = new int[subdivisions * subdivisions * 6];
+        int row = subdivisions + 1;
+        int i = 0;
+        for (int z = 0; z < subdivisions; z++) {
+            for (int x = 0; x < subdivisions; x++) {
+                int topLeft = z * row + x;
+                int bottomLeft = topLeft + row;
+
+                elements[i++] = bottomLeft + 1;
+                elements[i++] = topLeft;
+                elements[i++] = bottomLeft;
+
+                elements[i++] = bottomLeft + 1;
+                elements[i++] = topLeft + 1;
+                elements[i++] = topLeft;
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Converts one of the color+position arrays above into position+texCoords,
+     * deriving the texCoords from the xy position
+     *
+     * @param colorPositionArray interleaved color(r,g,b,a), position(x,y,z)
+     * @return interleaved position(x,y,z), texCoords(u,v)
+     */
+    public static float[] toTexturedVertexArray(float[] colorPositionArray) {
+        int vertexCount = colorPositionArray.length / 7;
+        float[] vertices = new float[vertexCount * 5];
+
+        for (int i = 0; i < vertexCount; i++) {
+            float x = colorPositionArray[i * 7 + 4];
+            float y = colorPositionArray[i * 7 + 5];
+            float z = colorPositionArray[i * 7 + 6];
+
+            vertices[i * 5] = x;
+            vertices[i * 5 + 1] = y;
+            vertices[i * 5 + 2] = z;
+            vertices[i * 5 + 3] = x + 0.5f;
+            vertices[i * 5 + 4] = y + 0.5f;
+        }
+        return vertices;
+    }
+
     public static int[] getStarElementArray() {
         return new int[] {
                 7, 1, 5,
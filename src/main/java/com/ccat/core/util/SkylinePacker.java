@@ -0,0 +1,117 @@
+package com.ccat.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bottom-left skyline rectangle packer for a single fixed-size page.
+ * The skyline is the upper outline of everything placed so far, stored as horizontal segments;
+ * a rectangle goes where its top edge ends lowest.
+ */
+public class SkylinePacker {
+    private record Segment(int x, int y, int width) { }
+
+    private final int width;
+    private final int height;
+    private final List<Segment> skyline = new ArrayList<>();
+    private long usedArea;
+
+    public SkylinePacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        skyline.add(new Segment(0, 0, width));
+    }
+
+    /**
+     * Places a rectangle on the page
+     *
+     * @param rectWidth width of the rectangle
+     * @param rectHeight height of the rectangle
+     * @return {x, y} of the lower left corner, or null if the rectangle does not fit anymore
+     */
+    public int[] insert(int rectWidth, int rectHeight) {
+        int bestIndex = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestSegmentWidth = Integer.MAX_VALUE;
+        int bestY = 0;
+
+        for (int i = 0; i < skyline.size(); i++) {
+            int y = fit(i, rectWidth, rectHeight);
+            if(y < 0) continue;
+
+            int top = y + rectHeight;
+            int segmentWidth = skyline.get(i).width();
+            if(top < bestTop || (top == bestTop && segmentWidth < bestSegmentWidth)) {
+                bestIndex = i;
+                bestTop = top;
+                bestSegmentWidth = segmentWidth;
+                bestY = y;
+            }
+        }
+        if(bestIndex < 0) return null;
+
+        int x = skyline.get(bestIndex).x();
+        place(bestIndex, x, bestY, rectWidth, rectHeight);
+        usedArea += (long) rectWidth * rectHeight;
+        return new int[]{x, bestY};
+    }
+
+    /** @return y the rectangle would rest at when its left edge starts at segment index, or -1 */
+    private int fit(int index, int rectWidth, int rectHeight) {
+        int x = skyline.get(index).x();
+        if(x + rectWidth > width) return -1;
+
+        int y = 0;
+        int remaining = rectWidth;
+        for (int i = index; remaining > 0; i++) {
+            Segment segment = skyline.get(i);
+            y = Math.max(y, segment.y());
+            if(y + rectHeight > height) return -1;
+            remaining -= segment.width();
+        }
+        return y;
+    }
+
+    /** Raises the skyline under the placed rectangle and merges segments of equal height */
+    private void place(int index, int x, int y, int rectWidth, int rectHeight) {
+        skyline.add(index, new Segment(x, y + rectHeight, rectWidth));
+
+        int right = x + rectWidth;
+        for (int i = index + 1; i < skyline.size(); ) {
+            Segment segment = skyline.get(i);
+            if(segment.x() >= right) break;
+
+            int segmentRight = segment.x() + segment.width();
+            if(segmentRight <= right) {
+                skyline.remove(i);
+            } else {
+                skyline.set(i, new Segment(right, segment.y(), segmentRight - right));
+                break;
+            }
+        }
+
+        for (int i = 0; i < skyline.size() - 1; ) {
+            Segment current = skyline.get(i);
+            Segment next = skyline.get(i + 1);
+            if(current.y() == next.y()) {
+                skyline.set(i, new Segment(current.x(), current.y(), current.width() + next.width()));
+                skyline.remove(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /** @return fraction of the page covered by placed rectangles */
+    public float getOccupancy() {
+        return (float) usedArea / ((long) width * height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
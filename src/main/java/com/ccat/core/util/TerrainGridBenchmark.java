@@ -0,0 +1,105 @@
+package com.ccat.core.util;
+
+import com.ccat.core.terrain.TerrainGrid;
+
+import java.util.LinkedList;
+
+/**
+ * Compares rebuilding the terrain grid through the old boxed {@code LinkedList<Float>} against
+ * {@link TerrainGrid}, which writes into reused off-heap buffers, then compares the index encodings
+ * by fetched index bytes and post-transform cache efficiency (simulated FIFO cache).
+ * Needs no GL context: run the main method directly. GL upload times are printed by TerrainChallenge.
+ */
+public class TerrainGridBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 10;
+    private static final float SIZE = 12f;
+    /** The boxed path needs gigabytes of heap beyond this */
+    private static final int LINKED_LIST_LIMIT = 1000;
+
+    private static final int[] subdivisions = { 10, 50, 100, 250, 500, 1000, 2000 };
+
+    public static void main(String[] args) {
+        TerrainGrid grid = new TerrainGrid();
+        try {
+            for (int gridSubdivisions : subdivisions) {
+                double direct = measureBuild(grid, () -> grid.build(gridSubdivisions, SIZE, -2f, TerrainGrid.IndexMode.TRIANGLES_32));
+                String linkedList = gridSubdivisions <= LINKED_LIST_LIMIT
+                        ? String.format("%.2f ms", measure(() -> createGridLinkedList(gridSubdivisions)))
+                        : "skipped";
+
+                System.out.printf("Terrain grid ## Subdivisions:%d - Vertices:%d - LinkedList:%s - Direct:%.2f ms%n",
+                        gridSubdivisions, grid.getVertexCount(), linkedList, direct);
+            }
+            for (int gridSubdivisions : subdivisions) {
+                for (TerrainGrid.IndexMode mode : TerrainGrid.IndexMode.values()) {
+                    if(mode == TerrainGrid.IndexMode.AUTO) continue;
+
+                    double build = measureBuild(grid, () -> grid.build(gridSubdivisions, SIZE, -2f, mode));
+                    System.out.printf("Terrain indices ## Subdivisions:%d - Mode:%s - Chunks:%d - Fetched:%.2f MB - ACMR:%.3f - Cache hits:%.1f%% - Build:%.2f ms%n",
+                            gridSubdivisions, mode, grid.getChunkCount(), grid.getDrawnIndexBytes() / (1024.0 * 1024.0),
+                            grid.getAcmr(), grid.getCacheHitRate() * 100f, build);
+                }
+            }
+        } finally {
+            grid.destroy();
+        }
+    }
+
+    /** @return average milliseconds per rebuild after warmup */
+    private static double measure(Runnable rebuild) {
+        for (int i = 0; i < WARMUP; i++) rebuild.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) rebuild.run();
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    /** @return average milliseconds per rebuild after warmup, as timed by the grid itself */
+    private static double measureBuild(TerrainGrid grid, Runnable rebuild) {
+        for (int i = 0; i < WARMUP; i++) rebuild.run();
+
+        long nanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            rebuild.run();
+            nanos += grid.getBuildNanos();
+        }
+        return nanos / 1_000_000.0 / ITERATIONS;
+    }
+
+    /** The previous TerrainChallenge.createGrid, without the MemoryStack upload */
+    private static void createGridLinkedList(int subdivisions) {
+        float offset = (SIZE / 2f);
+
+        LinkedList<Float> floats = new LinkedList<>();
+        float interval = SIZE / subdivisions;
+        for (int y = 0; y <= subdivisions; y++) {
+            for (int x = 0; x <= subdivisions; x++) {
+                floats.add(x * interval - offset);
+                floats.add(-2f);
+                floats.add(y * interval - offset);
+            }
+        }
+
+        Object[] v = floats.toArray();
+        float[] vert = new float[v.length];
+        for (int i = 0; i < v.length; i++) {
+            vert[i] = (float) v[i];
+        }
+
+        int[] elements = new int[(subdivisions * subdivisions) * 6];
+        int quad = 1;
+        int row = 0;
+        for (int i = 0; i < (subdivisions * subdivisions); i++) {
+            elements[i * 6] = (row + i + subdivisions + 2);
+            elements[i * 6 + 1] = (row + i);
+            elements[i * 6 + 2] = (row + i + subdivisions + 1);
+            elements[i * 6 + 3] = (row + i + subdivisions + 2);
+            elements[i * 6 + 4] = (row + i + 1);
+            elements[i * 6 + 5] = (row + i);
+
+            if(quad % subdivisions == 0) row++;
+            quad++;
+        }
+    }
+}
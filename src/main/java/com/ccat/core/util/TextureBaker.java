@@ -0,0 +1,69 @@
+package com.ccat.core.util;
+
+import com.ccat.core.renderer.BakedTexture;
+import com.ccat.core.renderer.TextureBakeCache;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Offline bake step: writes every image of the textures/ resource folder into the {@link TextureBakeCache}
+ * and reports the cold (bake) and warm (mapped) load time per image.
+ * Needs no GL context. Pass {@code --clean} to drop existing entries first for a true cold run.
+ */
+public class TextureBaker {
+    private static final String TEXTURE_FOLDER = "textures";
+    /** Keeps the page reads of the warm run from being optimized away */
+    private static long sink;
+
+    public static void main(String[] args) throws IOException, URISyntaxException {
+        if(List.of(args).contains("--clean")) {
+            Path cacheDir = Paths.get("cache", "textures");
+            if(Files.isDirectory(cacheDir)) {
+                try (Stream<Path> entries = Files.list(cacheDir)) {
+                    for (Path entry : entries.toList()) Files.delete(entry);
+                }
+            }
+        }
+
+        URL folder = TextureBaker.class.getClassLoader().getResource(TEXTURE_FOLDER);
+        if(folder == null || !"file".equals(folder.getProtocol())) {
+            throw new RuntimeException("Resource folder " + TEXTURE_FOLDER + " must be on the file system to bake it.");
+        }
+
+        List<String> paths;
+        try (Stream<Path> files = Files.list(Path.of(folder.toURI()))) {
+            paths = files.filter(Files::isRegularFile)
+                    .map(file -> TEXTURE_FOLDER + "/" + file.getFileName())
+                    .sorted()
+                    .toList();
+        }
+
+        double coldTotal = 0;
+        double warmTotal = 0;
+        for (String path : paths) {
+            double cold = time(path);
+            double warm = time(path);
+            coldTotal += cold;
+            warmTotal += warm;
+            System.out.printf("Bake ## %s - Cold:%.2f ms - Warm:%.2f ms%n", path, cold, warm);
+        }
+        System.out.printf("Bake ## %d textures - Cold:%.2f ms - Warm:%.2f ms%n", paths.size(), coldTotal, warmTotal);
+        TextureBakeCache.printReport();
+    }
+
+    private static double time(String path) throws IOException {
+        long start = System.nanoTime();
+        BakedTexture texture = TextureBakeCache.load(path);
+        //Touch every page so the warm time includes reading the mapped file
+        for (int i = 0; i < texture.getData().limit(); i += 4096) sink += texture.getData().get(i);
+        texture.free();
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+}
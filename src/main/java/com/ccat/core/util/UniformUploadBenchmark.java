@@ -0,0 +1,152 @@
+package com.ccat.core.util;
+
+import com.ccat.core.renderer.ShaderProgram;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.Configuration;
+import org.lwjgl.system.MemoryUtil;
+
+import java.lang.management.ManagementFactory;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Drives the per-frame {@link ShaderProgram} uniform uploads and reports the heap bytes they allocate,
+ * through handles resolved once and through name lookups, and the native memory they leave allocated -
+ * LWJGL's debug allocator tracks every MemoryUtil allocation that was not freed.
+ * The handle path must allocate no heap, neither path may leak native memory - the benchmark fails otherwise.
+ * Needs a GL context: opens a hidden window, run the main method directly.
+ */
+public class UniformUploadBenchmark {
+    private static final int WARMUP = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final String VERTEX_SOURCE = """
+            #version 450 core
+            layout (location = 0) in vec3 aPos;
+            uniform mat4 uTransform;
+            uniform mat3 uNormal;
+            uniform vec3 uOffset;
+            uniform vec2 uScale;
+            void main() {
+                gl_Position = uTransform * vec4(uNormal * aPos + uOffset, 1.0) * vec4(uScale, 1.0, 1.0);
+            }""";
+    private static final String FRAGMENT_SOURCE = """
+            #version 450 core
+            uniform vec4 uColor;
+            uniform float uTime;
+            uniform int uCount;
+            uniform bool uFlag;
+            out vec4 fColor;
+            void main() {
+                fColor = uColor * uTime * float(uCount) * (uFlag ? 1.0 : 0.5);
+            }""";
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        //Only takes effect before LWJGL allocates anything
+        Configuration.DEBUG_MEMORY_ALLOCATOR.set(true);
+        if(!glfwInit()) {
+            throw new IllegalStateException("Unable to initialize GLFW.");
+        }
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 5);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        long window = glfwCreateWindow(1, 1, "Uniform upload benchmark", NULL, NULL);
+        if(window == NULL) {
+            glfwTerminate();
+            throw new RuntimeException("Failed to create the GLFW window");
+        }
+        glfwMakeContextCurrent(window);
+        GL.createCapabilities();
+
+        ShaderProgram program = ShaderProgram.fromSources(VERTEX_SOURCE, FRAGMENT_SOURCE);
+        program.bind();
+        try {
+            Matrix4f transform = new Matrix4f();
+            Matrix3f normal = new Matrix3f();
+            Vector4f color = new Vector4f(1f);
+            Vector3f offset = new Vector3f();
+            Vector2f scale = new Vector2f(1f);
+
+            int transformLocation = program.getUniformLocation("uTransform");
+            int normalLocation = program.getUniformLocation("uNormal");
+            int colorLocation = program.getUniformLocation("uColor");
+            int offsetLocation = program.getUniformLocation("uOffset");
+            int scaleLocation = program.getUniformLocation("uScale");
+            int timeLocation = program.getUniformLocation("uTime");
+            int countLocation = program.getUniformLocation("uCount");
+            int flagLocation = program.getUniformLocation("uFlag");
+
+            long nativeBefore = outstandingNativeBytes();
+            long handleBytes = measure(i -> {
+                transform.translation(i, 0f, 0f);
+                program.uploadMat4(transformLocation, transform);
+                program.uploadMat3(normalLocation, normal);
+                program.uploadVec4(colorLocation, color);
+                program.uploadVec3(offsetLocation, offset);
+                program.uploadVec2(scaleLocation, scale);
+                program.uploadFloat(timeLocation, i);
+                program.uploadInt(countLocation, i);
+                program.uploadBool(flagLocation, (i & 1) == 0);
+            });
+            long handleNativeBytes = outstandingNativeBytes() - nativeBefore;
+            long nameBytes = measure(i -> {
+                transform.translation(i, 0f, 0f);
+                program.uploadMat4("uTransform", transform);
+                program.uploadMat3("uNormal", normal);
+                program.uploadVec4("uColor", color);
+                program.uploadVec3("uOffset", offset);
+                program.uploadVec2("uScale", scale);
+                program.uploadFloat("uTime", i);
+                program.uploadInt("uCount", i);
+                program.uploadBool("uFlag", (i & 1) == 0);
+            });
+            long nameNativeBytes = outstandingNativeBytes() - nativeBefore - handleNativeBytes;
+
+            System.out.printf("Uniforms ## Frames:%d - Handles:%d bytes (%.3f per frame, native leaked %d) - Names:%d bytes (%.3f per frame, native leaked %d)%n",
+                    ITERATIONS, handleBytes, (double) handleBytes / ITERATIONS, handleNativeBytes,
+                    nameBytes, (double) nameBytes / ITERATIONS, nameNativeBytes);
+            if(handleBytes > 0) {
+                throw new IllegalStateException("Uniform uploads through handles allocated " + handleBytes + " bytes.");
+            }
+            if(handleNativeBytes != 0 || nameNativeBytes != 0) {
+                throw new IllegalStateException("Uniform uploads leaked " + (handleNativeBytes + nameNativeBytes) + " native bytes.");
+            }
+        } finally {
+            program.unbind();
+            program.destroy();
+            glfwDestroyWindow(window);
+            glfwTerminate();
+        }
+    }
+
+    private interface Frame {
+        void run(int frame);
+    }
+
+    /** @return native bytes allocated through MemoryUtil and not freed yet */
+    private static long outstandingNativeBytes() {
+        long[] bytes = new long[1];
+        MemoryUtil.memReport((address, memory, threadId, threadName, stacktrace) -> bytes[0] += memory);
+        return bytes[0];
+    }
+
+    /** @return heap bytes allocated by the current thread over all iterations after warmup */
+    private static long measure(Frame frame) {
+        for (int i = 0; i < WARMUP; i++) frame.run(i);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) frame.run(i);
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,36 @@
+#version 460 core
+layout (local_size_x = 16, local_size_y = 16) in;
+
+// One level of the depth pyramid: the farthest depth of all texels it covers in the level below,
+// or in the copied depth buffer for level 0
+layout (r32f, binding = 0) uniform writeonly image2D uTarget;
+
+#ifdef FROM_DEPTH
+uniform sampler2D uDepth;
+#else
+layout (r32f, binding = 1) uniform readonly image2D uSource;
+#endif
+
+uniform ivec2 uSourceSize;
+
+void main() {
+    ivec2 texel = ivec2(gl_GlobalInvocationID.xy);
+    ivec2 targetSize = imageSize(uTarget);
+    if(any(greaterThanEqual(texel, targetSize))) return;
+
+    // More than 2x2 source texels where the sizes are not exactly halved, e.g. odd sizes
+    ivec2 first = texel * uSourceSize / targetSize;
+    ivec2 last = min(((texel + 1) * uSourceSize + targetSize - 1) / targetSize, uSourceSize) - 1;
+
+    float depth = 0.0;
+    for (int y = first.y; y <= last.y; y++) {
+        for (int x = first.x; x <= last.x; x++) {
+#ifdef FROM_DEPTH
+            depth = max(depth, texelFetch(uDepth, ivec2(x, y), 0).r);
+#else
+            depth = max(depth, imageLoad(uSource, ivec2(x, y)).r);
+#endif
+        }
+    }
+    imageStore(uTarget, texel, vec4(depth));
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+#version 460 core
+layout (local_size_x = 256) in;
+
+// Tests the bounds of every instance against the view frustum and the depth pyramid of the last frame,
+// appends the visible ones for an indirect draw
+struct Instance {
+    vec3 offset;
+    uint textureIndex;
+};
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+layout (std430, binding = 6) readonly buffer SourceInstances {
+    Instance sourceInstances[];
+};
+
+layout (std430, binding = 7) writeonly buffer VisibleInstances {
+    Instance visibleInstances[];
+};
+
+// DrawArraysIndirectCommand followed by the occlusion stats, all counters are reset before every dispatch
+layout (std430, binding = 8) buffer DrawCommand {
+    uint count;
+    uint instanceCount;
+    uint first;
+    uint baseInstance;
+    uint occludedCount;
+    uint occludedFragments;
+};
+
+// Farthest depth per texel, level 0 at half the screen resolution
+layout (binding = 15) uniform sampler2D uDepthPyramid;
+
+uniform uint uInstanceCount;
+uniform vec3 uHalfExtent;
+uniform bool uCull;
+uniform bool uOcclusion;
+uniform mat4 uPreviousViewProjection;
+uniform vec2 uScreenSize;
+
+// Counts of the work group - one global atomic per group instead of one per instance
+shared uint groupCount;
+shared uint groupBase;
+shared uint groupOccluded;
+shared uint groupFragments;
+
+// Box against the clip planes taken from the rows of the view-projection, no normalization needed for the sign
+bool isVisible(vec3 center) {
+    mat4 m = uViewProjection;
+    vec4 rowX = vec4(m[0][0], m[1][0], m[2][0], m[3][0]);
+    vec4 rowY = vec4(m[0][1], m[1][1], m[2][1], m[3][1]);
+    vec4 rowZ = vec4(m[0][2], m[1][2], m[2][2], m[3][2]);
+    vec4 rowW = vec4(m[0][3], m[1][3], m[2][3], m[3][3]);
+    vec4 planes[6] = vec4[6](rowW + rowX, rowW - rowX, rowW + rowY, rowW - rowY, rowW + rowZ, rowW - rowZ);
+
+    for (int i = 0; i < 6; i++) {
+        vec4 plane = planes[i];
+        if(dot(plane.xyz, center) + plane.w + dot(abs(plane.xyz), uHalfExtent) < 0.0) return false;
+    }
+    return true;
+}
+
+// Box reprojected into the last frame: hidden if its nearest depth lies behind the farthest depth
+// of the pyramid texels under its screen rectangle. Boxes reaching off screen or behind the camera
+// have no complete depth to test against and count as visible.
+bool isOccluded(vec3 center, out float area) {
+    area = 0.0;
+    vec2 rectMin = vec2(1.0);
+    vec2 rectMax = vec2(0.0);
+    float nearest = 1.0;
+    for (int i = 0; i < 8; i++) {
+        vec3 corner = center + uHalfExtent * vec3((i & 1) == 0 ? -1.0 : 1.0, (i & 2) == 0 ? -1.0 : 1.0, (i & 4) == 0 ? -1.0 : 1.0);
+        vec4 clip = uPreviousViewProjection * vec4(corner, 1.0);
+        if(clip.w <= 0.0) return false;
+
+        vec3 ndc = clip.xyz / clip.w;
+        rectMin = min(rectMin, ndc.xy * 0.5 + 0.5);
+        rectMax = max(rectMax, ndc.xy * 0.5 + 0.5);
+        nearest = min(nearest, ndc.z * 0.5 + 0.5);
+    }
+    if(any(lessThan(rectMin, vec2(0.0))) || any(greaterThan(rectMax, vec2(1.0)))) return false;
+
+    // Level where the rectangle spans at most two texels per axis
+    vec2 baseSize = vec2(textureSize(uDepthPyramid, 0));
+    vec2 extent = (rectMax - rectMin) * baseSize;
+    int level = int(ceil(log2(max(max(extent.x, extent.y), 1.0))));
+    level = min(level, textureQueryLevels(uDepthPyramid) - 1);
+
+    ivec2 levelSize = textureSize(uDepthPyramid, level);
+    ivec2 first = ivec2(rectMin * vec2(levelSize));
+    ivec2 last = min(ivec2(rectMax * vec2(levelSize)), levelSize - 1);
+    float farthest = 0.0;
+    for (int y = first.y; y <= last.y; y++) {
+        for (int x = first.x; x <= last.x; x++) {
+            farthest = max(farthest, texelFetch(uDepthPyramid, ivec2(x, y), level).r);
+        }
+    }
+
+    vec2 pixels = (rectMax - rectMin) * uScreenSize;
+    area = pixels.x * pixels.y;
+    return nearest > farthest;
+}
+
+void main() {
+    if(gl_LocalInvocationIndex == 0u) {
+        groupCount = 0u;
+        groupOccluded = 0u;
+        groupFragments = 0u;
+    }
+    barrier();
+
+    uint index = gl_GlobalInvocationID.x;
+    bool visible = false;
+    Instance instance;
+    uint slot;
+    if(index < uInstanceCount) {
+        instance = sourceInstances[index];
+        visible = !uCull || isVisible(instance.offset);
+
+        float area;
+        if(visible && uOcclusion && isOccluded(instance.offset, area)) {
+            visible = false;
+            atomicAdd(groupOccluded, 1u);
+            atomicAdd(groupFragments, uint(area));
+        }
+        if(visible) slot = atomicAdd(groupCount, 1u);
+    }
+    barrier();
+
+    if(gl_LocalInvocationIndex == 0u) {
+        groupBase = atomicAdd(instanceCount, groupCount);
+        atomicAdd(occludedCount, groupOccluded);
+        atomicAdd(occludedFragments, groupFragments);
+    }
+    barrier();
+
+    if(visible) visibleInstances[groupBase + slot] = instance;
+}
\ No newline at end of file
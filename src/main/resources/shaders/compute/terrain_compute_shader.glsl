@@ -0,0 +1,99 @@
+#version 460 core
+layout (local_size_x = 16, local_size_y = 16) in;
+
+// Writes position + normal of every terrain grid vertex, only dispatched when the grid or scroll changed
+struct TerrainVertex {
+    vec4 position;
+    vec4 normal;
+};
+
+layout (std430, binding = 5) writeonly buffer TerrainVertices {
+    TerrainVertex vertices[];
+};
+
+uniform int uSubdivisions;
+uniform float uSize;
+uniform float uScroll;
+
+const vec2 uResolution = vec2(5.0);
+const float BASE_HEIGHT = -2.0;
+const uint TILE = 16u + 2u;
+
+// Heights of the work group plus a border of one vertex, shared for the normals
+shared float heights[TILE][TILE];
+
+float random (in vec2 st) {
+    return fract(sin(dot(st.xy,
+    vec2(12.9898,78.233)))*
+    43758.5453123);
+}
+
+float noise (in vec2 st) {
+    vec2 i = floor(st);
+    vec2 f = fract(st);
+
+    // Four corners in 2D of a tile
+    float a = random(i);
+    float b = random(i + vec2(1.0, 0.0));
+    float c = random(i + vec2(0.0, 1.0));
+    float d = random(i + vec2(1.0, 1.0));
+
+    vec2 u = f * f * (3.0 - 2.0 * f);
+
+    return mix(a, b, u.x) +
+    (c - a)* u.y * (1.0 - u.x) +
+    (d - b) * u.x * u.y;
+}
+
+    #define OCTAVES 6
+float fbm (in vec2 st) {
+    // Initial values
+    float value = 0.0;
+    float amplitude = 1.5;
+    float frequency = 0.05;
+    //
+    // Loop of octaves
+    for (int i = 0; i < OCTAVES; i++) {
+        value += amplitude * noise(st);
+        st *= 2.;
+        amplitude *= .5;
+    }
+    return value;
+}
+
+vec2 worldPosition(in ivec2 grid) {
+    float interval = uSize / float(uSubdivisions);
+    return vec2(grid) * interval - vec2(uSize / 2.0);
+}
+
+float height(in ivec2 grid) {
+    vec2 st = (worldPosition(grid) + vec2(0.5)) / uResolution;
+    st += vec2(uScroll);
+    return fbm(st) * 2.0;
+}
+
+void main() {
+    ivec2 tileOrigin = ivec2(gl_WorkGroupID.xy) * 16 - ivec2(1);
+    for (uint i = gl_LocalInvocationIndex; i < TILE * TILE; i += gl_WorkGroupSize.x * gl_WorkGroupSize.y) {
+        ivec2 tile = ivec2(i % TILE, i / TILE);
+        heights[tile.y][tile.x] = height(tileOrigin + tile);
+    }
+    barrier();
+
+    int side = uSubdivisions + 1;
+    ivec2 grid = ivec2(gl_GlobalInvocationID.xy);
+    if (grid.x >= side || grid.y >= side) return;
+
+    ivec2 tile = ivec2(gl_LocalInvocationID.xy) + ivec2(1);
+    float interval = uSize / float(uSubdivisions);
+    float leftHeight = heights[tile.y][tile.x - 1];
+    float rightHeight = heights[tile.y][tile.x + 1];
+    float backHeight = heights[tile.y - 1][tile.x];
+    float frontHeight = heights[tile.y + 1][tile.x];
+    vec3 normal = normalize(vec3(leftHeight - rightHeight, 2.0 * interval, backHeight - frontHeight));
+
+    vec2 world = worldPosition(grid);
+    vertices[grid.y * side + grid.x] = TerrainVertex(
+        vec4(world.x, BASE_HEIGHT + heights[tile.y][tile.x], world.y, 1.0),
+        vec4(normal, 0.0));
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+#version 460 core
+
+out vec4 FragColor;
+
+in vec2 fTexCoords;
+flat in vec4 fColor;
+
+void main() {
+    vec2 cell = floor(fTexCoords * 4.0);
+    float checker = mod(cell.x + cell.y, 2.0);
+
+    FragColor = vec4(fColor.rgb * (0.75 + 0.25 * checker), fColor.a);
+}
\ No newline at end of file
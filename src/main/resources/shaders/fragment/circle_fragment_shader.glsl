@@ -8,7 +8,14 @@ out vec4 FragColor;
 
 uniform vec2 uResolution;
 uniform vec2 uMouse;
-uniform float uTime;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
 
 float circle(in vec2 _st, in float _radius){
     vec2 dist = _st-vec2(0.5);
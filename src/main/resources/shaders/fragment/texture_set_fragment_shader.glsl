@@ -0,0 +1,26 @@
+#version 460 core
+#ifdef TEXTURE_BINDLESS
+#extension GL_ARB_bindless_texture : require
+#endif
+
+out vec4 FragColor;
+
+in vec2 fTexCoords;
+flat in uint fTextureIndex;
+
+#ifdef TEXTURE_BINDLESS
+layout (std430, binding = 3) readonly buffer TextureHandles {
+    uvec2 handles[];
+};
+#else
+// TEXTURE_ARRAY: index is the layer - TEXTURE_ATLAS: index is the page, uv already remapped
+layout (binding = 0) uniform sampler2DArray uTextures;
+#endif
+
+void main() {
+#ifdef TEXTURE_BINDLESS
+    FragColor = texture(sampler2D(handles[fTextureIndex]), fTexCoords);
+#else
+    FragColor = texture(uTextures, vec3(fTexCoords, float(fTextureIndex)));
+#endif
+}
\ No newline at end of file
@@ -5,10 +5,16 @@ layout(location = 0) in vec3 aPosition;
 layout (location = 0) out vec2 fragCoord;
 
 uniform mat4 uTransform;
-uniform mat4 uProjection;
-uniform mat4 uView;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
 
 void main() {
     fragCoord = aPosition.xy + vec2(0.5);
-    gl_Position = uProjection * uView * (uTransform * vec4(aPosition, 1.0));
+    gl_Position = uViewProjection * (uTransform * vec4(aPosition, 1.0));
 }
\ No newline at end of file
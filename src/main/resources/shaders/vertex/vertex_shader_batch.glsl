@@ -0,0 +1,32 @@
+#version 460 core
+layout (location = 0) in vec3 aPosition;
+layout (location = 1) in vec2 aTexCoords;
+
+out vec2 fTexCoords;
+flat out vec4 fColor;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+// per instance: gl_BaseInstance + gl_InstanceID
+layout (std430, binding = 1) readonly buffer InstanceData {
+    mat4 transforms[];
+};
+
+// per draw command: gl_DrawID
+layout (std430, binding = 2) readonly buffer DrawData {
+    vec4 colors[];
+};
+
+void main() {
+    mat4 transform = transforms[gl_BaseInstance + gl_InstanceID];
+    gl_Position = uViewProjection * (transform * vec4(aPosition, 1.0));
+
+    fTexCoords = aTexCoords;
+    fColor = colors[gl_DrawID];
+}
\ No newline at end of file
@@ -4,9 +4,13 @@ layout (location = 0) in vec3 aPosition;
 layout (location = 0) out vec3 fragCoord;
 layout (location = 1) out vec3 fNormal;
 
-layout (location = 0) uniform mat4 uProjection;
-uniform mat4 uView;
-uniform float uTime;
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
 
 const vec2 uResolution = vec2(5.0);
 
@@ -66,6 +70,6 @@ void main() {
     float rightHeight = height(st + vec2(1, 0));
     fNormal = normalize(vec3(leftHeight - rightHeight, 2.0, frontHeight - backHeight));
 
-    gl_Position = uProjection * uView * (vec4(aPosition, 1.0) + myHeight);
+    gl_Position = uViewProjection * (vec4(aPosition, 1.0) + myHeight);
     fragCoord = aPosition + myHeight.xyz;
 }
\ No newline at end of file
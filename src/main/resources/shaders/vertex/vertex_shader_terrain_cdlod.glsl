@@ -0,0 +1,86 @@
+#version 460 core
+layout (location = 0) in vec2 aGridPosition; // 0..1 inside the patch
+layout (location = 1) in vec4 aNode;         // xy = origin (x, z), z = size, w = lod
+layout (location = 2) in vec2 aMorph;        // distance range in which the vertex moves onto the coarser grid
+
+layout (location = 0) out vec3 fragCoord;
+layout (location = 1) out vec3 fNormal;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+#ifndef GRID_SIZE
+#define GRID_SIZE 16
+#endif
+
+const vec2 uResolution = vec2(5.0);
+const float BASE_HEIGHT = -2.0;
+
+float random (in vec2 st) {
+    return fract(sin(dot(st.xy,
+    vec2(12.9898,78.233)))*
+    43758.5453123);
+}
+
+float noise (in vec2 st) {
+    vec2 i = floor(st);
+    vec2 f = fract(st);
+
+    // Four corners in 2D of a tile
+    float a = random(i);
+    float b = random(i + vec2(1.0, 0.0));
+    float c = random(i + vec2(0.0, 1.0));
+    float d = random(i + vec2(1.0, 1.0));
+
+    vec2 u = f * f * (3.0 - 2.0 * f);
+
+    return mix(a, b, u.x) +
+    (c - a)* u.y * (1.0 - u.x) +
+    (d - b) * u.x * u.y;
+}
+
+    #define OCTAVES 6
+float fbm (in vec2 st) {
+    float value = 0.0;
+    float amplitude = 1.5;
+    for (int i = 0; i < OCTAVES; i++) {
+        value += amplitude * noise(st);
+        st *= 2.;
+        amplitude *= .5;
+    }
+    return value;
+}
+
+// Same terrain as vertex_shader_terrain.glsl, sampled at a world position
+float height(in vec2 world) {
+    vec2 st = (world + vec2(0.5)) / uResolution;
+    st += vec2(uTime/3.0);
+    return BASE_HEIGHT + fbm(st) * 2.0;
+}
+
+void main() {
+    vec2 world = aNode.xy + aGridPosition * aNode.z;
+    float distanceToCamera = distance(vec3(world.x, height(world), world.y), uCameraPosition);
+
+    // Odd grid vertices slide onto their even neighbours towards the end of the range
+    float morph = clamp((distanceToCamera - aMorph.x) / (aMorph.y - aMorph.x), 0.0, 1.0);
+    vec2 oddOffset = fract(aGridPosition * GRID_SIZE * 0.5) * 2.0 / GRID_SIZE;
+    world = aNode.xy + (aGridPosition - oddOffset * morph) * aNode.z;
+
+    // Normal from the neighbours at the node's own vertex spacing
+    float spacing = aNode.z / GRID_SIZE;
+    float leftHeight = height(world - vec2(spacing, 0));
+    float rightHeight = height(world + vec2(spacing, 0));
+    float backHeight = height(world - vec2(0, spacing));
+    float frontHeight = height(world + vec2(0, spacing));
+    fNormal = normalize(vec3(leftHeight - rightHeight, 2.0 * spacing, backHeight - frontHeight));
+
+    vec3 position = vec3(world.x, height(world), world.y);
+    gl_Position = uViewProjection * vec4(position, 1.0);
+    fragCoord = position;
+}
\ No newline at end of file
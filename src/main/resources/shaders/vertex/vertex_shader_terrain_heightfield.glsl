@@ -0,0 +1,22 @@
+#version 460 core
+layout (location = 0) in vec3 aPosition;
+layout (location = 1) in vec4 aHeightNormal; // height + normal from the CPU HeightField
+
+layout (location = 0) out vec3 fragCoord;
+layout (location = 1) out vec3 fNormal;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+void main() {
+    vec3 position = aPosition + vec3(0.0, aHeightNormal.x, 0.0);
+    fNormal = aHeightNormal.yzw;
+
+    gl_Position = uViewProjection * vec4(position, 1.0);
+    fragCoord = position;
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+#version 460 core
+layout (location = 0) out vec3 fragCoord;
+layout (location = 1) out vec3 fNormal;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+// Filled by terrain_compute_shader.glsl, indexed by the grid element indices
+struct TerrainVertex {
+    vec4 position;
+    vec4 normal;
+};
+
+layout (std430, binding = 5) readonly buffer TerrainVertices {
+    TerrainVertex vertices[];
+};
+
+void main() {
+    TerrainVertex vertex = vertices[gl_VertexID];
+    fNormal = vertex.normal.xyz;
+
+    gl_Position = uViewProjection * vertex.position;
+    fragCoord = vertex.position.xyz;
+}
\ No newline at end of file
@@ -4,11 +4,17 @@ in vec2 aTexCoords;
 
 out vec2 fTexCoords;
 
-layout (location = 0) uniform mat4 uProjection;
 uniform mat4 uTransform;
-uniform mat4 uView;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
 
 void main() {
-    gl_Position = uProjection * uView * (uTransform * vec4(aPosition, 1.0));
+    gl_Position = uViewProjection * (uTransform * vec4(aPosition, 1.0));
     fTexCoords = aTexCoords;
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+#version 460 core
+layout (location = 0) in vec3 aPosition;
+layout (location = 1) in vec2 aTexCoords;
+layout (location = 2) in vec3 aOffset;
+layout (location = 3) in uint aTextureIndex;
+
+out vec2 fTexCoords;
+flat out uint fTextureIndex;
+
+layout (std140, binding = 0) uniform Camera {
+    mat4 uView;
+    mat4 uProjection;
+    mat4 uViewProjection;
+    vec3 uCameraPosition;
+    float uTime;
+};
+
+#ifdef TEXTURE_ATLAS
+struct AtlasRegion {
+    vec4 uvRect; // xy = origin, zw = size
+    uint page;
+};
+
+layout (std430, binding = 4) readonly buffer AtlasRegions {
+    AtlasRegion regions[];
+};
+#endif
+
+void main() {
+    gl_Position = uViewProjection * vec4(aPosition + aOffset, 1.0);
+#ifdef TEXTURE_ATLAS
+    AtlasRegion region = regions[aTextureIndex];
+    fTexCoords = region.uvRect.xy + aTexCoords * region.uvRect.zw;
+    fTextureIndex = region.page;
+#else
+    fTexCoords = aTexCoords;
+    fTextureIndex = aTextureIndex;
+#endif
+}
\ No newline at end of file